@@ -0,0 +1,187 @@
+package com.google.ar.sceneform.ux.benchmarks;
+
+import android.os.SystemClock;
+import android.util.DisplayMetrics;
+import android.view.InputDevice;
+import android.view.MotionEvent;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Builds deterministic, synthetic {@link MotionEvent} streams used to drive the gesture pipeline
+ * in benchmarks. Every stream starts with an ACTION_DOWN and ends with the last ACTION_UP so that
+ * it can be replayed in a loop.
+ */
+final class GestureStreams {
+
+    enum Kind {
+        /** One finger dragged one inch to the right. */
+        DRAG,
+        /** Two fingers spreading from one to two inches apart. */
+        PINCH,
+        /** Two fingers rotating by 90 degrees around their center. */
+        TWIST,
+        /** Five fingers going down, jittering and going up in a scrambled order. */
+        CHAOS
+    }
+
+    private static final int MOVE_EVENT_COUNT = 60;
+    private static final int MAX_POINTERS = 5;
+    // Roughly the sampling period of a 120 Hz touch panel.
+    private static final long EVENT_INTERVAL_MS = 8;
+    private static final long CHAOS_SEED = 0x5CE4EF0L;
+
+    private GestureStreams() {}
+
+    static MotionEvent[] create(Kind kind, DisplayMetrics displayMetrics) {
+        float inch = displayMetrics.xdpi;
+        float centerX = displayMetrics.widthPixels * 0.5f;
+        float centerY = displayMetrics.heightPixels * 0.5f;
+        Recorder recorder = new Recorder();
+
+        switch (kind) {
+            case DRAG:
+                recorder.down(0, centerX, centerY);
+                for (int i = 1; i <= MOVE_EVENT_COUNT; i++) {
+                    recorder.moveTo(0, centerX + inch * i / MOVE_EVENT_COUNT, centerY);
+                    recorder.move();
+                }
+                recorder.up(0);
+                break;
+            case PINCH:
+                recorder.down(0, centerX - inch * 0.5f, centerY);
+                recorder.down(1, centerX + inch * 0.5f, centerY);
+                for (int i = 1; i <= MOVE_EVENT_COUNT; i++) {
+                    float halfGap = inch * (0.5f + 0.5f * i / MOVE_EVENT_COUNT);
+                    recorder.moveTo(0, centerX - halfGap, centerY);
+                    recorder.moveTo(1, centerX + halfGap, centerY);
+                    recorder.move();
+                }
+                recorder.up(1);
+                recorder.up(0);
+                break;
+            case TWIST:
+                recorder.down(0, centerX - inch * 0.5f, centerY);
+                recorder.down(1, centerX + inch * 0.5f, centerY);
+                for (int i = 1; i <= MOVE_EVENT_COUNT; i++) {
+                    double angle = 0.5 * Math.PI * i / MOVE_EVENT_COUNT;
+                    float dx = (float) Math.cos(angle) * inch * 0.5f;
+                    float dy = (float) Math.sin(angle) * inch * 0.5f;
+                    recorder.moveTo(0, centerX - dx, centerY - dy);
+                    recorder.moveTo(1, centerX + dx, centerY + dy);
+                    recorder.move();
+                }
+                recorder.up(1);
+                recorder.up(0);
+                break;
+            case CHAOS:
+                Random random = new Random(CHAOS_SEED);
+                for (int id = 0; id < MAX_POINTERS; id++) {
+                    recorder.down(id, centerX + (id - 2) * inch * 0.4f, centerY);
+                }
+                for (int i = 0; i < MOVE_EVENT_COUNT; i++) {
+                    for (int id = 0; id < MAX_POINTERS; id++) {
+                        float jitterX = (random.nextFloat() - 0.5f) * inch * 0.2f;
+                        float jitterY = (random.nextFloat() - 0.5f) * inch * 0.2f;
+                        recorder.moveBy(id, jitterX, jitterY);
+                    }
+                    recorder.move();
+                }
+                recorder.up(2);
+                recorder.up(0);
+                recorder.up(4);
+                recorder.up(1);
+                recorder.up(3);
+                break;
+        }
+
+        return recorder.events.toArray(new MotionEvent[0]);
+    }
+
+    static void recycle(MotionEvent[] events) {
+        for (MotionEvent event : events) {
+            event.recycle();
+        }
+    }
+
+    /** Keeps track of the pointers currently down and emits the matching MotionEvents. */
+    private static final class Recorder {
+        private final ArrayList<MotionEvent> events = new ArrayList<>();
+        private final int[] ids = new int[MAX_POINTERS];
+        private final float[] xs = new float[MAX_POINTERS];
+        private final float[] ys = new float[MAX_POINTERS];
+        private final long downTime = SystemClock.uptimeMillis();
+        private long eventTime = downTime;
+        private int count = 0;
+
+        void down(int id, float x, float y) {
+            int index = count++;
+            ids[index] = id;
+            xs[index] = x;
+            ys[index] = y;
+            emit(index == 0
+                    ? MotionEvent.ACTION_DOWN
+                    : MotionEvent.ACTION_POINTER_DOWN | (index << MotionEvent.ACTION_POINTER_INDEX_SHIFT));
+        }
+
+        void moveTo(int id, float x, float y) {
+            int index = indexOf(id);
+            xs[index] = x;
+            ys[index] = y;
+        }
+
+        void moveBy(int id, float dx, float dy) {
+            int index = indexOf(id);
+            xs[index] += dx;
+            ys[index] += dy;
+        }
+
+        void move() {
+            emit(MotionEvent.ACTION_MOVE);
+        }
+
+        void up(int id) {
+            int index = indexOf(id);
+            emit(count == 1
+                    ? MotionEvent.ACTION_UP
+                    : MotionEvent.ACTION_POINTER_UP | (index << MotionEvent.ACTION_POINTER_INDEX_SHIFT));
+
+            for (int i = index; i < count - 1; i++) {
+                ids[i] = ids[i + 1];
+                xs[i] = xs[i + 1];
+                ys[i] = ys[i + 1];
+            }
+            count--;
+        }
+
+        private int indexOf(int id) {
+            for (int i = 0; i < count; i++) {
+                if (ids[i] == id) {
+                    return i;
+                }
+            }
+            throw new IllegalArgumentException("Pointer " + id + " is not down.");
+        }
+
+        private void emit(int action) {
+            MotionEvent.PointerProperties[] properties = new MotionEvent.PointerProperties[count];
+            MotionEvent.PointerCoords[] coords = new MotionEvent.PointerCoords[count];
+            for (int i = 0; i < count; i++) {
+                properties[i] = new MotionEvent.PointerProperties();
+                properties[i].id = ids[i];
+                properties[i].toolType = MotionEvent.TOOL_TYPE_FINGER;
+                coords[i] = new MotionEvent.PointerCoords();
+                coords[i].x = xs[i];
+                coords[i].y = ys[i];
+                coords[i].pressure = 1.0f;
+                coords[i].size = 1.0f;
+            }
+
+            events.add(MotionEvent.obtain(
+                    downTime, eventTime, action, count, properties, coords,
+                    0, 0, 1.0f, 1.0f, 0, 0, InputDevice.SOURCE_TOUCHSCREEN, 0));
+            eventTime += EVENT_INTERVAL_MS;
+        }
+    }
+}
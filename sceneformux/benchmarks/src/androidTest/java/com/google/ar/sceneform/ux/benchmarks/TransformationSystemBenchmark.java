@@ -0,0 +1,138 @@
+package com.google.ar.sceneform.ux.benchmarks;
+
+import android.os.Debug;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.view.MotionEvent;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.annotation.UiThreadTest;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.ar.sceneform.HitTestResult;
+import com.google.ar.sceneform.ux.BaseTransformableNode;
+import com.google.ar.sceneform.ux.DetectedARPlanes;
+import com.google.ar.sceneform.ux.SelectionVisualizer;
+import com.google.ar.sceneform.ux.TransformableNode;
+import com.google.ar.sceneform.ux.TransformationSystem;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures the cost of {@link TransformationSystem#onTouch(HitTestResult, MotionEvent)} for
+ * synthetic gesture streams with 1, 100 and 1000 registered {@link TransformableNode}s.
+ *
+ * <p>Each benchmark iteration dispatches exactly one event, so the reported time is ns/event.
+ * Allocations are measured separately over a fixed number of stream replays and logged as
+ * bytes/event under the {@value #TAG} tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TransformationSystemBenchmark {
+    private static final String TAG = "GestureBenchmark";
+    private static final int ALLOCATION_REPLAY_COUNT = 200;
+    private static final String BYTES_ALLOCATED_STAT = "art.gc.bytes-allocated";
+
+    private static final SelectionVisualizer NO_OP_SELECTION_VISUALIZER = new SelectionVisualizer() {
+        @Override
+        public void applySelectionVisual(BaseTransformableNode node) {}
+
+        @Override
+        public void removeSelectionVisual(BaseTransformableNode node) {}
+    };
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    @Test @UiThreadTest public void drag_1() { benchmark(GestureStreams.Kind.DRAG, 1); }
+    @Test @UiThreadTest public void drag_100() { benchmark(GestureStreams.Kind.DRAG, 100); }
+    @Test @UiThreadTest public void drag_1000() { benchmark(GestureStreams.Kind.DRAG, 1000); }
+
+    @Test @UiThreadTest public void pinch_1() { benchmark(GestureStreams.Kind.PINCH, 1); }
+    @Test @UiThreadTest public void pinch_100() { benchmark(GestureStreams.Kind.PINCH, 100); }
+    @Test @UiThreadTest public void pinch_1000() { benchmark(GestureStreams.Kind.PINCH, 1000); }
+
+    @Test @UiThreadTest public void twist_1() { benchmark(GestureStreams.Kind.TWIST, 1); }
+    @Test @UiThreadTest public void twist_100() { benchmark(GestureStreams.Kind.TWIST, 100); }
+    @Test @UiThreadTest public void twist_1000() { benchmark(GestureStreams.Kind.TWIST, 1000); }
+
+    @Test @UiThreadTest public void chaos_1() { benchmark(GestureStreams.Kind.CHAOS, 1); }
+    @Test @UiThreadTest public void chaos_100() { benchmark(GestureStreams.Kind.CHAOS, 100); }
+    @Test @UiThreadTest public void chaos_1000() { benchmark(GestureStreams.Kind.CHAOS, 1000); }
+
+    private void benchmark(GestureStreams.Kind kind, int nodeCount) {
+        DisplayMetrics displayMetrics =
+                InstrumentationRegistry.getInstrumentation().getTargetContext().getResources().getDisplayMetrics();
+        TransformationSystem transformationSystem =
+                new TransformationSystem(displayMetrics, NO_OP_SELECTION_VISUALIZER);
+
+        HitTestResult hitTestResult = new HitTestResult();
+        hitTestResult.setNode(createNodes(transformationSystem, nodeCount));
+
+        MotionEvent[] events = GestureStreams.create(kind, displayMetrics);
+        try {
+            BenchmarkState state = benchmarkRule.getState();
+            int index = 0;
+            while (state.keepRunning()) {
+                transformationSystem.onTouch(hitTestResult, events[index]);
+                index = (index + 1) % events.length;
+            }
+
+            // Finish the stream in flight so that the allocation pass starts from a clean state.
+            while (index != 0) {
+                transformationSystem.onTouch(hitTestResult, events[index]);
+                index = (index + 1) % events.length;
+            }
+
+            long bytesBefore = getBytesAllocated();
+            for (int replay = 0; replay < ALLOCATION_REPLAY_COUNT; replay++) {
+                for (MotionEvent event : events) {
+                    transformationSystem.onTouch(hitTestResult, event);
+                }
+            }
+            long bytesAfter = getBytesAllocated();
+
+            double bytesPerEvent =
+                    (double) (bytesAfter - bytesBefore) / (ALLOCATION_REPLAY_COUNT * events.length);
+            Log.i(TAG, String.format(
+                    "%s nodes=%d events=%d bytes/event=%.1f",
+                    kind, nodeCount, events.length, bytesPerEvent));
+        } finally {
+            GestureStreams.recycle(events);
+        }
+    }
+
+    /**
+     * Creates the requested amount of nodes and returns the one that is used as touch target.
+     *
+     * <p>The nodes are not attached to a scene, so they never get activated. Their controllers are
+     * connected to the recognizers explicitly, the same way an active node would be.
+     */
+    private static BaseTransformableNode createNodes(
+            TransformationSystem transformationSystem, int nodeCount) {
+        DetectedARPlanes detectedARPlanes = new DetectedARPlanes();
+        BaseTransformableNode target = null;
+        for (int i = 0; i < nodeCount; i++) {
+            TransformableNode node = new TransformableNode(transformationSystem, detectedARPlanes);
+            transformationSystem.getDragRecognizer().addOnGestureStartedListener(node, node.getTranslationController());
+            transformationSystem.getPinchRecognizer().addOnGestureStartedListener(node, node.getScaleController());
+            transformationSystem.getTwistRecognizer().addOnGestureStartedListener(node, node.getRotationController());
+            if (i == nodeCount / 2) {
+                target = node;
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Bytes allocated by the runtime since it started. This is process wide, so the benchmark
+     * should be run on an otherwise idle test process.
+     */
+    private static long getBytesAllocated() {
+        String value = Debug.getRuntimeStat(BYTES_ALLOCATED_STAT);
+        return value != null ? Long.parseLong(value) : 0;
+    }
+}
@@ -0,0 +1,377 @@
+/*
+ * Copyright 2018 Google LLC All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.ux;
+
+import androidx.annotation.Nullable;
+import com.google.ar.core.Anchor;
+import com.google.ar.core.Plane;
+import com.google.ar.core.Pose;
+import com.google.ar.core.TrackingState;
+import com.google.ar.sceneform.AnchorNode;
+import com.google.ar.sceneform.Scene;
+import com.google.ar.sceneform.math.Quaternion;
+import com.google.ar.sceneform.math.Vector3;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Shares ARCore anchors between the {@link BaseTransformableNode nodes} placed on planes, owned by
+ * a {@link TransformationSystem}.
+ *
+ * <p>Nodes placed with {@link #place(Scene, BaseTransformableNode, Plane, Pose)} become children of
+ * a shared {@link AnchorNode}, the one of the closest cluster on the same plane whose anchor is
+ * within {@link #getClusterRadius()}, or of a new cluster with its own anchor. When the number of
+ * anchors goes over {@link #getBudget()}, the two closest clusters of a plane are merged into one.
+ * The budget is exceeded only when no plane has two clusters left to merge.
+ *
+ * <p>The translation and fling controllers move managed nodes between clusters with {@link
+ * #reanchor(BaseTransformableNode, Plane)} instead of moving the anchor of their parent, which is
+ * shared with other nodes. Nodes keep their world pose whenever their cluster changes. Nodes the
+ * app removes from their anchor node leave their cluster, releasing its anchor once it is unused.
+ *
+ * <p>Must only be used on the thread that updates the scene.
+ */
+public class AnchorManager {
+  public static final int DEFAULT_BUDGET = 32;
+  public static final float DEFAULT_CLUSTER_RADIUS_METERS = 0.5f;
+
+  /** Anchor shared by the nodes placed close to each other on a plane. */
+  private static class Cluster {
+    final AnchorNode anchorNode;
+    final Anchor anchor;
+    final Plane plane;
+    final ArrayList<BaseTransformableNode> nodes = new ArrayList<>();
+
+    Cluster(AnchorNode anchorNode, Anchor anchor, Plane plane) {
+      this.anchorNode = anchorNode;
+      this.anchor = anchor;
+      this.plane = plane;
+    }
+  }
+
+  private final TransformationSystem transformationSystem;
+  private int budget = DEFAULT_BUDGET;
+  private float clusterRadius = DEFAULT_CLUSTER_RADIUS_METERS;
+
+  private final ArrayList<Cluster> clusters = new ArrayList<>();
+  private final HashMap<BaseTransformableNode, Cluster> nodeClusters = new HashMap<>();
+  private long mergeCount = 0;
+  // True while the manager itself moves a node between anchor nodes.
+  private boolean isReparenting = false;
+
+  AnchorManager(TransformationSystem transformationSystem) {
+    this.transformationSystem = transformationSystem;
+  }
+
+  /**
+   * Sets the number of anchors the manager tries not to exceed, {@link #DEFAULT_BUDGET} by default.
+   * Clusters are merged right away if there are more anchors.
+   */
+  public void setBudget(int budget) {
+    if (budget < 1) {
+      throw new IllegalArgumentException("The budget must be at least 1.");
+    }
+    this.budget = budget;
+    enforceBudget();
+  }
+
+  public int getBudget() {
+    return budget;
+  }
+
+  /**
+   * Sets the largest distance in meters between a node and the anchor of the cluster it joins,
+   * {@link #DEFAULT_CLUSTER_RADIUS_METERS} by default.
+   */
+  public void setClusterRadius(float clusterRadius) {
+    if (clusterRadius < 0.0f) {
+      throw new IllegalArgumentException("The cluster radius must not be negative.");
+    }
+    this.clusterRadius = clusterRadius;
+  }
+
+  public float getClusterRadius() {
+    return clusterRadius;
+  }
+
+  /**
+   * Places the node on the plane at the pose, as a child of the anchor node of the closest cluster.
+   *
+   * @return the anchor node the node was added to
+   */
+  public AnchorNode place(Scene scene, BaseTransformableNode node, Plane plane, Pose pose) {
+    detach(node);
+
+    Vector3 position = new Vector3(pose.tx(), pose.ty(), pose.tz());
+    Cluster cluster = findOrCreateCluster(scene, plane, position, pose);
+    addNode(cluster, node);
+    node.setWorldPosition(position);
+    node.setWorldRotation(new Quaternion(pose.qx(), pose.qy(), pose.qz(), pose.qw()));
+
+    enforceBudget();
+    return getAnchorNodeOrDie(node);
+  }
+
+  /**
+   * Moves a managed node that ended on the plane into the right cluster, keeping its world pose.
+   * The node stays in its cluster if it is still close enough to its anchor.
+   */
+  public void reanchor(BaseTransformableNode node, Plane plane) {
+    Cluster current = nodeClusters.get(node);
+    Scene scene = node.getScene();
+    if (current == null || scene == null || plane.getTrackingState() != TrackingState.TRACKING) {
+      return;
+    }
+
+    Vector3 position = node.getWorldPosition();
+    if (canJoin(current, plane, position)) {
+      transformationSystem.getAnchorReusePolicy().onAnchorReused();
+      return;
+    }
+
+    Quaternion rotation = node.getWorldRotation();
+    Pose pose =
+        new Pose(
+            new float[] {position.x, position.y, position.z},
+            plane.getCenterPose().getRotationQuaternion());
+    Cluster cluster = findOrCreateCluster(scene, plane, position, pose);
+    moveNode(current, cluster, node);
+    node.setWorldPosition(position);
+    node.setWorldRotation(rotation);
+
+    enforceBudget();
+  }
+
+  /** Removes the node from its cluster and from the scene, detaching the anchor if unused. */
+  public void detach(BaseTransformableNode node) {
+    Cluster cluster = nodeClusters.get(node);
+    if (cluster == null) {
+      return;
+    }
+
+    removeNode(cluster, node);
+    node.setParent(null);
+  }
+
+  /** Returns true if the node was placed by this manager and wasn't detached since. */
+  public boolean isManaged(BaseTransformableNode node) {
+    Cluster cluster = nodeClusters.get(node);
+    return cluster != null && node.getParent() == cluster.anchorNode;
+  }
+
+  /** Returns the shared anchor node of a managed node, or null if it isn't managed. */
+  @Nullable
+  public AnchorNode getAnchorNode(BaseTransformableNode node) {
+    return isManaged(node) ? getAnchorNodeOrDie(node) : null;
+  }
+
+  /** Returns the number of anchors held by the manager. */
+  public int getAnchorCount() {
+    return clusters.size();
+  }
+
+  /** Returns the number of nodes sharing the anchors of the manager. */
+  public int getNodeCount() {
+    return nodeClusters.size();
+  }
+
+  /** Returns the number of clusters merged to stay within the budget. */
+  public long getMergeCount() {
+    return mergeCount;
+  }
+
+  /**
+   * Called when the node leaves the scene or is disabled. A node removed from its anchor node by
+   * the app is dropped from its cluster, whose anchor is detached if unused.
+   */
+  void onNodeDeactivated(BaseTransformableNode node) {
+    Cluster cluster = nodeClusters.get(node);
+    if (cluster == null || isReparenting) {
+      return;
+    }
+
+    if (node.getParent() != cluster.anchorNode || node.getScene() == null) {
+      removeNode(cluster, node);
+    }
+  }
+
+  private AnchorNode getAnchorNodeOrDie(BaseTransformableNode node) {
+    Cluster cluster = nodeClusters.get(node);
+    if (cluster == null) {
+      throw new IllegalStateException("The node isn't managed by the AnchorManager.");
+    }
+    return cluster.anchorNode;
+  }
+
+  private Cluster findOrCreateCluster(Scene scene, Plane plane, Vector3 position, Pose pose) {
+    Cluster closest = null;
+    float closestDistance = Float.MAX_VALUE;
+    for (int i = 0; i < clusters.size(); i++) {
+      Cluster cluster = clusters.get(i);
+      if (!canJoin(cluster, plane, position)) {
+        continue;
+      }
+
+      float distance = distanceSquared(cluster.anchor.getPose(), position);
+      if (distance < closestDistance) {
+        closest = cluster;
+        closestDistance = distance;
+      }
+    }
+
+    if (closest != null) {
+      transformationSystem.getAnchorReusePolicy().onAnchorReused();
+      return closest;
+    }
+
+    Anchor anchor = plane.createAnchor(pose);
+    transformationSystem.getAnchorReusePolicy().onAnchorCreated(anchor, plane);
+    AnchorNode anchorNode = new AnchorNode(anchor);
+    anchorNode.setParent(scene);
+
+    Cluster cluster = new Cluster(anchorNode, anchor, plane);
+    clusters.add(cluster);
+    return cluster;
+  }
+
+  private boolean canJoin(Cluster cluster, Plane plane, Vector3 position) {
+    return cluster.anchor.getTrackingState() == TrackingState.TRACKING
+        && getTopPlane(cluster.plane) == getTopPlane(plane)
+        && distanceSquared(cluster.anchor.getPose(), position) <= clusterRadius * clusterRadius;
+  }
+
+  private void addNode(Cluster cluster, BaseTransformableNode node) {
+    cluster.nodes.add(node);
+    nodeClusters.put(node, cluster);
+    isReparenting = true;
+    try {
+      node.setParent(cluster.anchorNode);
+    } finally {
+      isReparenting = false;
+    }
+  }
+
+  /**
+   * Moves the node to another cluster. The node is reparented before its former cluster is
+   * disposed, so that it doesn't leave the scene with the anchor node of that cluster.
+   */
+  private void moveNode(Cluster source, Cluster target, BaseTransformableNode node) {
+    addNode(target, node);
+    source.nodes.remove(node);
+    if (source.nodes.isEmpty()) {
+      disposeCluster(source);
+    }
+  }
+
+  private void removeNode(Cluster cluster, BaseTransformableNode node) {
+    cluster.nodes.remove(node);
+    nodeClusters.remove(node);
+    if (cluster.nodes.isEmpty()) {
+      disposeCluster(cluster);
+    }
+  }
+
+  private void disposeCluster(Cluster cluster) {
+    clusters.remove(cluster);
+    cluster.anchorNode.setParent(null);
+    cluster.anchorNode.setAnchor(null);
+    transformationSystem.releaseAnchor(cluster.anchor);
+  }
+
+  /** Drops the nodes moved out of their anchor node without the manager noticing. */
+  private void dropRemovedNodes() {
+    for (int i = clusters.size() - 1; i >= 0; i--) {
+      Cluster cluster = clusters.get(i);
+      for (int j = cluster.nodes.size() - 1; j >= 0; j--) {
+        BaseTransformableNode node = cluster.nodes.get(j);
+        if (node.getParent() != cluster.anchorNode) {
+          removeNode(cluster, node);
+        }
+      }
+    }
+  }
+
+  /** Merges the closest clusters of a plane until the anchors fit in the budget. */
+  private void enforceBudget() {
+    dropRemovedNodes();
+    while (clusters.size() > budget) {
+      Cluster closestA = null;
+      Cluster closestB = null;
+      float closestDistance = Float.MAX_VALUE;
+      for (int i = 0; i < clusters.size(); i++) {
+        Cluster a = clusters.get(i);
+        Plane planeA = getTopPlane(a.plane);
+        Pose poseA = a.anchor.getPose();
+        for (int j = i + 1; j < clusters.size(); j++) {
+          Cluster b = clusters.get(j);
+          if (getTopPlane(b.plane) != planeA) {
+            continue;
+          }
+
+          Pose poseB = b.anchor.getPose();
+          float dx = poseA.tx() - poseB.tx();
+          float dy = poseA.ty() - poseB.ty();
+          float dz = poseA.tz() - poseB.tz();
+          float distance = dx * dx + dy * dy + dz * dz;
+          if (distance < closestDistance) {
+            closestA = a;
+            closestB = b;
+            closestDistance = distance;
+          }
+        }
+      }
+
+      if (closestA == null) {
+        return;
+      }
+
+      if (closestA.nodes.size() < closestB.nodes.size()) {
+        merge(closestA, closestB);
+      } else {
+        merge(closestB, closestA);
+      }
+    }
+  }
+
+  /** Moves the nodes of {@code source} to {@code target}, keeping their world pose. */
+  private void merge(Cluster source, Cluster target) {
+    while (!source.nodes.isEmpty()) {
+      BaseTransformableNode node = source.nodes.get(source.nodes.size() - 1);
+      Vector3 position = node.getWorldPosition();
+      Quaternion rotation = node.getWorldRotation();
+      moveNode(source, target, node);
+      node.setWorldPosition(position);
+      node.setWorldRotation(rotation);
+    }
+    mergeCount++;
+  }
+
+  private static Plane getTopPlane(Plane plane) {
+    Plane subsumedBy = plane.getSubsumedBy();
+    while (subsumedBy != null) {
+      plane = subsumedBy;
+      subsumedBy = plane.getSubsumedBy();
+    }
+    return plane;
+  }
+
+  private static float distanceSquared(Pose pose, Vector3 position) {
+    float dx = pose.tx() - position.x;
+    float dy = pose.ty() - position.y;
+    float dz = pose.tz() - position.z;
+    return dx * dx + dy * dy + dz * dz;
+  }
+}
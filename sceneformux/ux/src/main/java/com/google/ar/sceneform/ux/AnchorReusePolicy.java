@@ -0,0 +1,132 @@
+/*
+ * Copyright 2018 Google LLC All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.ux;
+
+import androidx.annotation.Nullable;
+import com.google.ar.core.Anchor;
+import com.google.ar.core.Plane;
+import com.google.ar.core.Pose;
+import com.google.ar.core.TrackingState;
+import com.google.ar.sceneform.math.Vector3;
+import java.util.HashMap;
+
+/**
+ * Decides whether a node that was moved keeps its anchor or is anchored again, shared by the
+ * controllers of a {@link TransformationSystem}.
+ *
+ * <p>An anchor is kept when it was created on the plane the node ended on, or on a plane that was
+ * merged into it, and the node is within {@link #getReuseDistance()} of it. Otherwise the
+ * controller creates a new anchor and reports it with {@link #onAnchorCreated(Anchor, Plane)}.
+ * Small moves on the same plane therefore don't create and detach ARCore anchors.
+ *
+ * <p>Must only be used on the thread that updates the scene.
+ */
+public class AnchorReusePolicy {
+  public static final float DEFAULT_REUSE_DISTANCE_METERS = 0.1f;
+
+  private boolean isEnabled = true;
+  private float reuseDistance = DEFAULT_REUSE_DISTANCE_METERS;
+
+  // Plane each anchor was created on, ARCore doesn't expose it.
+  private final HashMap<Anchor, Plane> anchorPlanes = new HashMap<>();
+
+  private long createdCount = 0;
+  private long reusedCount = 0;
+
+  /** Enables or disables the reuse of anchors, enabled by default. */
+  public void setEnabled(boolean enabled) {
+    isEnabled = enabled;
+  }
+
+  public boolean isEnabled() {
+    return isEnabled;
+  }
+
+  /**
+   * Sets the largest distance in meters between a node and its anchor for the anchor to be kept,
+   * {@link #DEFAULT_REUSE_DISTANCE_METERS} by default.
+   */
+  public void setReuseDistance(float reuseDistance) {
+    if (reuseDistance < 0.0f) {
+      throw new IllegalArgumentException("The reuse distance must not be negative.");
+    }
+    this.reuseDistance = reuseDistance;
+  }
+
+  public float getReuseDistance() {
+    return reuseDistance;
+  }
+
+  /**
+   * Returns true if the node at {@code worldPosition} on {@code plane} can keep {@code anchor}, and
+   * counts it as reused.
+   */
+  public boolean tryReuse(@Nullable Anchor anchor, Plane plane, Vector3 worldPosition) {
+    if (!isEnabled || anchor == null || anchor.getTrackingState() != TrackingState.TRACKING) {
+      return false;
+    }
+
+    Plane anchorPlane = anchorPlanes.get(anchor);
+    while (anchorPlane != null && anchorPlane != plane) {
+      anchorPlane = anchorPlane.getSubsumedBy();
+    }
+    if (anchorPlane == null) {
+      return false;
+    }
+
+    Pose pose = anchor.getPose();
+    float dx = worldPosition.x - pose.tx();
+    float dy = worldPosition.y - pose.ty();
+    float dz = worldPosition.z - pose.tz();
+    if (dx * dx + dy * dy + dz * dz > reuseDistance * reuseDistance) {
+      return false;
+    }
+
+    reusedCount++;
+    return true;
+  }
+
+  /** Records an anchor created on {@code plane}, so that it can be reused by later moves. */
+  public void onAnchorCreated(Anchor anchor, Plane plane) {
+    anchorPlanes.put(anchor, plane);
+    createdCount++;
+  }
+
+  /** Counts a move that kept an anchor without going through {@link #tryReuse}. */
+  void onAnchorReused() {
+    reusedCount++;
+  }
+
+  /** Forgets an anchor that was detached. */
+  void onAnchorDetached(Anchor anchor) {
+    anchorPlanes.remove(anchor);
+  }
+
+  /** Returns the number of anchors created by the controllers. */
+  public long getCreatedCount() {
+    return createdCount;
+  }
+
+  /** Returns the number of moves that kept their anchor. */
+  public long getReusedCount() {
+    return reusedCount;
+  }
+
+  public void resetCounters() {
+    createdCount = 0;
+    reusedCount = 0;
+  }
+}
@@ -24,8 +24,8 @@ import android.net.Uri;
 import android.os.Build;
 import android.os.Build.VERSION_CODES;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.provider.Settings;
-import android.view.GestureDetector;
 import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
@@ -103,7 +103,9 @@ public abstract class BaseArFragment extends Fragment
   private ArSceneView arSceneView;
   private PlaneDiscoveryController planeDiscoveryController;
   private TransformationSystem transformationSystem;
-  private GestureDetector gestureDetector;
+  private final TickScheduler tickScheduler = new TickScheduler();
+  @Nullable private TickScheduler.Subscription inputTickSubscription;
+  @Nullable private TickScheduler.Subscription layoutTickSubscription;
   private FrameLayout frameLayout;
   private boolean isStarted;
   private boolean canRequestDangerousPermissions = true;
@@ -134,6 +136,15 @@ public abstract class BaseArFragment extends Fragment
     return transformationSystem;
   }
 
+  /**
+   * Gets the scheduler ticked at every scene update. It processes the touch events in its input
+   * phase, updates the transformation controllers in its simulation phase and the picking grid in
+   * its layout phase, and can run the per-frame work of the app in order with them.
+   */
+  public TickScheduler getTickScheduler() {
+    return tickScheduler;
+  }
+
   /**
    * Registers a callback to be invoked when the ARCore Session is initialized. The callback will
    * only be invoked once after the Session is initialized and before it is resumed.
@@ -178,21 +189,32 @@ public abstract class BaseArFragment extends Fragment
 
     transformationSystem = makeTransformationSystem();
 
-    gestureDetector =
-        new GestureDetector(
-            getContext(),
-            new GestureDetector.SimpleOnGestureListener() {
-              @Override
-              public boolean onSingleTapUp(MotionEvent e) {
-                onSingleTap(e);
-                return true;
-              }
+    // Taps are recognized in the same pass as the other gestures of the transformation system.
+    transformationSystem.getTapRecognizer().addOnGestureStartedListener(this::onTap);
 
-              @Override
-              public boolean onDown(MotionEvent e) {
-                return true;
-              }
+    // Touch events queued since the previous frame are processed before any other frame work.
+    if (inputTickSubscription != null) {
+      inputTickSubscription.cancel();
+    }
+    inputTickSubscription =
+        tickScheduler.subscribe(
+            TickScheduler.Phase.INPUT,
+            (frameTime, deltaSeconds) -> {
+              transformationSystem.processQueuedTouches();
+              transformationSystem.checkGestureTimeouts(SystemClock.uptimeMillis());
             });
+    transformationSystem.setTickScheduler(tickScheduler);
+    if (layoutTickSubscription != null) {
+      layoutTickSubscription.cancel();
+    }
+    layoutTickSubscription =
+        tickScheduler.subscribe(
+            TickScheduler.Phase.LAYOUT,
+            (frameTime, deltaSeconds) ->
+                transformationSystem.updatePickingGrid(
+                    arSceneView.getScene().getCamera(),
+                    arSceneView.getWidth(),
+                    arSceneView.getHeight()));
 
     arSceneView.getScene().addOnPeekTouchListener(this);
     arSceneView.getScene().addOnUpdateListener(this);
@@ -499,6 +521,7 @@ public abstract class BaseArFragment extends Fragment
   @Override
   public void onDestroy() {
     stop();
+    transformationSystem.setGestureInputThreadEnabled(false);
     arSceneView.destroy();
     super.onDestroy();
   }
@@ -506,14 +529,12 @@ public abstract class BaseArFragment extends Fragment
   @Override
   public void onPeekTouch(HitTestResult hitTestResult, MotionEvent motionEvent) {
     transformationSystem.onTouch(hitTestResult, motionEvent);
-
-    if (hitTestResult.getNode() == null) {
-      gestureDetector.onTouchEvent(motionEvent);
-    }
   }
 
   @Override
   public void onUpdate(FrameTime frameTime) {
+    tickScheduler.tick(frameTime);
+
     Frame frame = arSceneView.getArFrame();
     if (frame == null) {
       return;
@@ -561,6 +582,16 @@ public abstract class BaseArFragment extends Fragment
     return inflater.inflate(R.layout.sceneform_plane_discovery_layout, container, false);
   }
 
+  private void onTap(TapGesture gesture) {
+    // Taps on nodes are handled by the transformation system or by the nodes themselves.
+    MotionEvent motionEvent = gesture.getMotionEvent();
+    if (gesture.getTargetNode() == null
+        && transformationSystem.findTappedNode(gesture) == null
+        && motionEvent != null) {
+      onSingleTap(motionEvent);
+    }
+  }
+
   private void onSingleTap(MotionEvent motionEvent) {
     Frame frame = arSceneView.getArFrame();
 
@@ -571,7 +602,7 @@ public abstract class BaseArFragment extends Fragment
 
     if (frame != null && onTapArPlaneListener != null) {
       if (motionEvent != null && frame.getCamera().getTrackingState() == TrackingState.TRACKING) {
-        for (HitResult hit : frame.hitTest(motionEvent)) {
+        for (HitResult hit : transformationSystem.getHitTestCache().hitTest(frame, motionEvent)) {
           Trackable trackable = hit.getTrackable();
           if (trackable instanceof Plane && ((Plane) trackable).isPoseInPolygon(hit.getHitPose())) {
             Plane plane = (Plane) trackable;
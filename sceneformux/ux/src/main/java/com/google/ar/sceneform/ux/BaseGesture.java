@@ -15,6 +15,7 @@
  */
 package com.google.ar.sceneform.ux;
 
+import androidx.annotation.CallSuper;
 import androidx.annotation.Nullable;
 import android.view.MotionEvent;
 import com.google.ar.sceneform.HitTestResult;
@@ -27,6 +28,15 @@ import com.google.ar.sceneform.Node;
  * type of motion (i.e. Dragging, Pinching).
  *
  * <p>Gestures are created and updated by BaseGestureRecognizer's.
+ *
+ * <p>Gestures are pooled by their recognizer: once a gesture has finished and the recognizer has
+ * dropped it, it is {@link #reset()} and reused for a later touch. Listeners must not keep a
+ * reference to a gesture after {@link OnGestureEventListener#onFinished(BaseGesture)}.
+ *
+ * <p>While the gesture input thread of {@link TransformationSystem} is enabled, listeners receive a
+ * frame copy of each gesture instead of the gesture itself. The copy holds the values of the
+ * gesture at the time of the event, and cancelling or completing it finishes the gesture on the
+ * input thread.
  */
 public abstract class BaseGesture<T extends BaseGesture<T>> {
   /** Interface definition for callbacks to be invoked by a {@link BaseGesture}. */
@@ -42,10 +52,20 @@ public abstract class BaseGesture<T extends BaseGesture<T>> {
   private boolean justStarted;
   private boolean hasFinished;
   private boolean wasCancelled;
+  private boolean isRecycled;
 
   @Nullable protected Node targetNode;
   @Nullable private OnGestureEventListener<T> eventListener;
 
+  // Set on the frame copies of gestures recognized on the gesture input thread.
+  @Nullable private GestureInputThread inputThread;
+  @Nullable private BaseGesture<?> copySource;
+  private int copySourceSequence;
+  // Frame copy of a gesture of the input thread, only accessed on the frame thread.
+  @Nullable BaseGesture<?> frameCopy;
+  // Incremented every time the gesture is published as started, only accessed on the input thread.
+  int handoffSequence;
+
   public BaseGesture(GesturePointersUtility gesturePointersUtility) {
     this.gesturePointersUtility = gesturePointersUtility;
   }
@@ -68,6 +88,7 @@ public abstract class BaseGesture<T extends BaseGesture<T>> {
 
   @Nullable
   public Node getTargetNode() {
+    checkNotRecycled();
     return targetNode;
   }
 
@@ -80,6 +101,9 @@ public abstract class BaseGesture<T extends BaseGesture<T>> {
   }
 
   public void setGestureEventListener(@Nullable OnGestureEventListener<T> listener) {
+    if (listener != null) {
+      checkNotRecycled();
+    }
     eventListener = listener;
   }
 
@@ -96,6 +120,16 @@ public abstract class BaseGesture<T extends BaseGesture<T>> {
     }
   }
 
+  /**
+   * Returns true if this gesture tracks a pointer Id that is retained. Called on gestures that
+   * haven't started, whose pointers can then only be retained by another gesture, so that they are
+   * cancelled right away instead of evaluating {@link #canStart} until the next event. Gestures
+   * that only observe their pointers, such as {@link FlingGesture}, keep the default.
+   */
+  protected boolean isUsingRetainedPointerId() {
+    return false;
+  }
+
   protected abstract boolean canStart(HitTestResult hitTestResult, MotionEvent motionEvent);
 
   protected abstract void onStart(HitTestResult hitTestResult, MotionEvent motionEvent);
@@ -106,20 +140,125 @@ public abstract class BaseGesture<T extends BaseGesture<T>> {
 
   protected abstract void onFinish();
 
+  /**
+   * Returns the gesture to the state it had right after construction so that it can be reused for
+   * another touch sequence. Subclasses clear their own state and must call through.
+   */
+  @CallSuper
+  protected void reset() {
+    hasStarted = false;
+    justStarted = false;
+    hasFinished = false;
+    wasCancelled = false;
+    targetNode = null;
+    eventListener = null;
+    inputThread = null;
+    copySource = null;
+    copySourceSequence = 0;
+  }
+
+  /**
+   * Writes the values read by listeners into {@code state}, for the gesture input thread. Gestures
+   * that hand values over override this and {@link #readState(GestureState)}.
+   */
+  void writeState(GestureState state) {}
+
+  /** Reads back the values written by {@link #writeState(GestureState)} into a frame copy. */
+  void readState(GestureState state) {}
+
+  /** Returns true if this is the frame copy of a gesture recognized on the input thread. */
+  final boolean isFrameCopy() {
+    return copySource != null;
+  }
+
+  final void writeHandoffState(GestureState state) {
+    state.targetNode = targetNode;
+    state.hasFinished = hasFinished;
+    state.wasCancelled = wasCancelled;
+    state.sequence = handoffSequence;
+    writeState(state);
+  }
+
+  /** Starts this gesture as the frame copy of {@code source}, without notifying any listener. */
+  final void startAsFrameCopy(
+      GestureInputThread inputThread, BaseGesture<?> source, GestureState state) {
+    this.inputThread = inputThread;
+    copySource = source;
+    copySourceSequence = state.sequence;
+    targetNode = state.targetNode;
+    readState(state);
+    hasStarted = true;
+    justStarted = true;
+    hasFinished = state.hasFinished;
+    wasCancelled = state.wasCancelled;
+  }
+
+  final void updateAsFrameCopy(GestureState state) {
+    justStarted = false;
+    readState(state);
+    dispatchUpdateEvent();
+  }
+
+  final void finishAsFrameCopy(GestureState state) {
+    justStarted = false;
+    readState(state);
+    wasCancelled = state.wasCancelled;
+    hasFinished = true;
+    dispatchFinishedEvent();
+  }
+
+  /**
+   * Throws if this gesture has been recycled by its recognizer. Getters used by listeners call this
+   * so that references kept past {@link OnGestureEventListener#onFinished(BaseGesture)} are caught
+   * when the leak check of the recognizer is enabled.
+   *
+   * @see BaseGestureRecognizer#setPoolLeakCheckEnabled(boolean)
+   */
+  protected final void checkNotRecycled() {
+    if (isRecycled) {
+      throw new IllegalStateException(
+          getClass().getSimpleName() + " was used after onFinished, it belongs to the gesture pool.");
+    }
+  }
+
+  /** Marks the gesture as unusable, any further access by a listener throws. */
+  final void poison() {
+    reset();
+    isRecycled = true;
+  }
+
   protected void cancel() {
     wasCancelled = true;
-    onCancel();
+    if (copySource == null) {
+      onCancel();
+    }
     complete();
   }
 
   protected void complete() {
     hasFinished = true;
     if (hasStarted) {
-      onFinish();
+      // A frame copy doesn't own pointers, the gesture it was made from finishes on the input
+      // thread and releases them.
+      GestureInputThread inputThread = this.inputThread;
+      if (copySource != null && inputThread != null) {
+        inputThread.postFinish(copySource, copySourceSequence, wasCancelled);
+      } else {
+        onFinish();
+      }
       dispatchFinishedEvent();
     }
   }
 
+  /**
+   * Starts the gesture outside of a touch event, for gestures that start when a timeout expires.
+   * {@link #onStart} isn't called and the recognizer notifies its listeners itself.
+   */
+  final void startWithoutEvent() {
+    hasStarted = true;
+    justStarted = true;
+  }
+
   private void start(HitTestResult hitTestResult, MotionEvent motionEvent) {
     hasStarted = true;
     justStarted = true;
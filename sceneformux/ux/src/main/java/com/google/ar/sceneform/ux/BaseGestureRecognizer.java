@@ -16,8 +16,13 @@
 package com.google.ar.sceneform.ux;
 
 import android.view.MotionEvent;
+import androidx.annotation.Nullable;
 import com.google.ar.sceneform.HitTestResult;
+import com.google.ar.sceneform.Node;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.function.Supplier;
 
 /**
  * Base class for all Gesture Recognizers (i.e. DragGestureRecognizer).
@@ -26,6 +31,17 @@ import java.util.ArrayList;
  * event when the gesture is started.
  *
  * <p>To determine when an gesture is finished/updated, listen to the events on the gesture object.
+ *
+ * <p>Listeners registered for a node with {@link #addOnGestureStartedListener(Node,
+ * OnGestureStartedListener)} are only notified of gestures that target that node or one of its
+ * descendants, so the cost of starting a gesture doesn't grow with the number of nodes in the scene.
+ *
+ * <p>Finished gestures are kept in a pool and handed out again by {@link #obtainGesture()}, so
+ * that touch sequences don't allocate once the pool is warm.
+ *
+ * <p>While the gesture input thread of {@link TransformationSystem} is enabled, touch events are
+ * processed on that thread and the listeners are notified on the frame thread, with frame copies of
+ * the gestures created by {@link #createFrameCopy()}.
  */
 public abstract class BaseGestureRecognizer<T extends BaseGesture<T>> {
   /** Interface definition for a callbacks to be invoked when a {@link BaseGesture} starts. */
@@ -37,6 +53,30 @@ public abstract class BaseGestureRecognizer<T extends BaseGesture<T>> {
   protected final ArrayList<T> gestures = new ArrayList<>();
 
   private final ArrayList<OnGestureStartedListener<T>> gestureStartedListeners;
+  private final HashSet<OnGestureStartedListener<T>> gestureStartedListenerSet = new HashSet<>();
+  private final HashMap<Node, ArrayList<OnGestureStartedListener<T>>> nodeGestureStartedListeners =
+      new HashMap<>();
+  @Nullable private Supplier<? extends Node> untargetedGestureNodeProvider;
+  private final ArrayList<T> gesturePool = new ArrayList<>();
+  private boolean isPoolLeakCheckEnabled = false;
+  private int priority = 0;
+
+  @Nullable private GestureInputThread inputThread;
+  private final ArrayList<T> frameCopyPool = new ArrayList<>();
+  private final BaseGesture.OnGestureEventListener<T> inputThreadPublisher =
+      new BaseGesture.OnGestureEventListener<T>() {
+        @Override
+        public void onUpdated(T gesture) {
+          publishToFrameThread(GestureInputThread.UPDATED, gesture);
+        }
+
+        @Override
+        public void onFinished(T gesture) {
+          publishToFrameThread(GestureInputThread.FINISHED, gesture);
+        }
+      };
+
+  private static final int MAX_POOL_SIZE = 10;
 
   @SuppressWarnings("initialization") // Suppress @UnderInitialization warning.
   public BaseGestureRecognizer(GesturePointersUtility gesturePointersUtility) {
@@ -44,22 +84,102 @@ public abstract class BaseGestureRecognizer<T extends BaseGesture<T>> {
     gestureStartedListeners = new ArrayList<>();
   }
 
+  /** Adds a listener that is notified of every gesture started by this recognizer. */
   public void addOnGestureStartedListener(OnGestureStartedListener<T> listener) {
-    if (!gestureStartedListeners.contains(listener)) {
+    if (gestureStartedListenerSet.add(listener)) {
       gestureStartedListeners.add(listener);
     }
   }
 
   public void removeOnGestureStartedListener(OnGestureStartedListener<T> listener) {
-    gestureStartedListeners.remove(listener);
+    if (gestureStartedListenerSet.remove(listener)) {
+      gestureStartedListeners.remove(listener);
+    }
+  }
+
+  /**
+   * Adds a listener that is only notified of gestures whose target node is {@code node} or one of
+   * its descendants. Gestures without a target node (i.e. pinch and twist) are routed to the node
+   * returned by the untargeted gesture node provider.
+   *
+   * @see #setUntargetedGestureNodeProvider(Supplier)
+   */
+  public void addOnGestureStartedListener(Node node, OnGestureStartedListener<T> listener) {
+    ArrayList<OnGestureStartedListener<T>> listeners = nodeGestureStartedListeners.get(node);
+    if (listeners == null) {
+      listeners = new ArrayList<>(1);
+      nodeGestureStartedListeners.put(node, listeners);
+    }
+    if (!listeners.contains(listener)) {
+      listeners.add(listener);
+    }
+  }
+
+  public void removeOnGestureStartedListener(Node node, OnGestureStartedListener<T> listener) {
+    ArrayList<OnGestureStartedListener<T>> listeners = nodeGestureStartedListeners.get(node);
+    if (listeners == null) {
+      return;
+    }
+    listeners.remove(listener);
+    if (listeners.isEmpty()) {
+      nodeGestureStartedListeners.remove(node);
+    }
+  }
+
+  /**
+   * Sets the provider of the node that gestures without a target node are routed to, for
+   * listeners registered with {@link #addOnGestureStartedListener(Node, OnGestureStartedListener)}.
+   * {@link TransformationSystem} routes them to its selected node.
+   */
+  public void setUntargetedGestureNodeProvider(@Nullable Supplier<? extends Node> provider) {
+    untargetedGestureNodeProvider = provider;
+  }
+
+  /**
+   * Debug mode for the gesture pool. When enabled, finished gestures are never reused. Instead they
+   * are poisoned so that a listener accessing a gesture after its onFinished event fails with an
+   * {@link IllegalStateException}. This defeats pooling and should only be used while debugging.
+   */
+  public void setPoolLeakCheckEnabled(boolean enabled) {
+    isPoolLeakCheckEnabled = enabled;
+    if (enabled) {
+      gesturePool.clear();
+    }
+  }
+
+  public boolean isPoolLeakCheckEnabled() {
+    return isPoolLeakCheckEnabled;
+  }
+
+  /**
+   * Returns the priority of this recognizer in its {@link TransformationSystem}. Recognizers with a
+   * higher priority process each touch event first.
+   *
+   * @see TransformationSystem#addGestureRecognizer(BaseGestureRecognizer, int)
+   */
+  public int getPriority() {
+    return priority;
+  }
+
+  void setPriority(int priority) {
+    this.priority = priority;
   }
 
   public void onTouch(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    // When every pointer is already owned by a gesture, no new gesture can be created and there is
+    // nothing to do unless this recognizer has gestures of its own in flight.
+    boolean arePointersAvailable = !gesturePointersUtility.areAllPointerIdsRetained(motionEvent);
+    if (!arePointersAvailable && gestures.isEmpty()) {
+      return;
+    }
+
     // Instantiate gestures based on touch input.
     // Just because a gesture was created, doesn't mean that it is started.
     // For example, a DragGesture is created when the user touch's down,
     // but doesn't actually start until the touch has moved beyond a threshold.
-    tryCreateGestures(hitTestResult, motionEvent);
+    if (arePointersAvailable) {
+      tryCreateGestures(hitTestResult, motionEvent);
+    }
 
     // Propagate event to gestures and determine if they should start.
     for (int i = 0; i < gestures.size(); i++) {
@@ -76,19 +196,199 @@ public abstract class BaseGestureRecognizer<T extends BaseGesture<T>> {
 
   protected abstract void tryCreateGestures(HitTestResult hitTestResult, MotionEvent motionEvent);
 
-  private void dispatchGestureStarted(T gesture) {
+  /**
+   * Called once per frame by {@link TransformationSystem#checkGestureTimeouts(long)} for gestures
+   * that depend on time rather than on touch events, such as a long press. Does nothing by default.
+   *
+   * @param uptimeMillis the current time, in the time base of {@link MotionEvent#getEventTime()}
+   */
+  public void checkTimeouts(long uptimeMillis) {}
+
+  /**
+   * Cancels the gestures that haven't started and track a pointer Id claimed by a gesture of
+   * another recognizer, so that they stop being evaluated.
+   */
+  void cancelPendingGesturesOnRetainedPointers() {
+    boolean hasCancelled = false;
+    for (int i = 0; i < gestures.size(); i++) {
+      T gesture = gestures.get(i);
+      if (!gesture.hasStarted() && gesture.isUsingRetainedPointerId()) {
+        gesture.cancel();
+        hasCancelled = true;
+      }
+    }
+
+    if (hasCancelled) {
+      removeFinishedGestures();
+    }
+  }
+
+  /**
+   * Returns a previously finished gesture that has been reset, or null if the pool is empty. The
+   * caller is responsible for initializing it before adding it to {@link #gestures}.
+   */
+  @Nullable
+  protected T obtainGesture() {
+    int size = gesturePool.size();
+    return size > 0 ? gesturePool.remove(size - 1) : null;
+  }
+
+  /**
+   * Creates an uninitialized gesture used as frame copy while the gesture input thread is enabled,
+   * or returns null if this recognizer doesn't support the input thread.
+   */
+  @Nullable
+  T createFrameCopy() {
+    return null;
+  }
+
+  /**
+   * Prepares this recognizer to process touch events on the gesture input thread. Returns false if
+   * it doesn't support the input thread.
+   */
+  boolean prepareInputThread() {
+    if (frameCopyPool.isEmpty()) {
+      T frameCopy = createFrameCopy();
+      if (frameCopy == null) {
+        return false;
+      }
+      frameCopyPool.add(frameCopy);
+    }
+    return true;
+  }
+
+  void setInputThread(@Nullable GestureInputThread inputThread) {
+    this.inputThread = inputThread;
+  }
+
+  /** Notifies the listeners that a gesture of the input thread started, on the frame thread. */
+  void onInputGestureStarted(
+      GestureInputThread inputThread, BaseGesture<?> source, GestureState state) {
+    int size = frameCopyPool.size();
+    T frameCopy = size > 0 ? frameCopyPool.remove(size - 1) : createFrameCopy();
+    if (frameCopy == null) {
+      return;
+    }
+
+    frameCopy.startAsFrameCopy(inputThread, source, state);
+    source.frameCopy = frameCopy;
+    dispatchGestureStarted(frameCopy);
+
+    // Instantaneous gestures, such as taps, finish as they start.
+    if (frameCopy.hasFinished()) {
+      source.frameCopy = null;
+      recycleFrameCopy(frameCopy);
+    }
+  }
+
+  /** Notifies the listener of the frame copy of an updated gesture, on the frame thread. */
+  void onInputGestureUpdated(BaseGesture<?> source, GestureState state) {
+    T frameCopy = getFrameCopy(source);
+    if (frameCopy != null && !frameCopy.hasFinished()) {
+      frameCopy.updateAsFrameCopy(state);
+    }
+  }
+
+  /** Notifies the listener of the frame copy of a finished gesture, on the frame thread. */
+  void onInputGestureFinished(BaseGesture<?> source, GestureState state) {
+    T frameCopy = getFrameCopy(source);
+    if (frameCopy == null) {
+      return;
+    }
+
+    source.frameCopy = null;
+    // The frame copy is already finished if a listener cancelled it.
+    if (!frameCopy.hasFinished()) {
+      frameCopy.finishAsFrameCopy(state);
+    }
+    recycleFrameCopy(frameCopy);
+  }
+
+  /**
+   * Notifies the listeners that {@code gesture} started. Package visible for {@link
+   * TwoFingerGestureRecognizer}, which starts gestures on behalf of other recognizers.
+   *
+   * <p>On the gesture input thread, the gesture is published instead and the listeners are
+   * notified on the frame thread.
+   */
+  void dispatchGestureStarted(T gesture) {
+    GestureInputThread inputThread = this.inputThread;
+    if (inputThread != null && !gesture.isFrameCopy()) {
+      gesture.setGestureEventListener(inputThreadPublisher);
+      inputThread.publish(GestureInputThread.STARTED, this, gesture);
+      return;
+    }
+
     for (int i = 0; i < gestureStartedListeners.size(); i++) {
       OnGestureStartedListener<T> listener = gestureStartedListeners.get(i);
       listener.onGestureStarted(gesture);
     }
+
+    if (nodeGestureStartedListeners.isEmpty()) {
+      return;
+    }
+
+    Node node = gesture.getTargetNode();
+    if (node == null && untargetedGestureNodeProvider != null) {
+      node = untargetedGestureNodeProvider.get();
+    }
+
+    // Notify the listeners of the target node first, then the ones of its ancestors.
+    while (node != null) {
+      ArrayList<OnGestureStartedListener<T>> listeners = nodeGestureStartedListeners.get(node);
+      if (listeners != null) {
+        for (int i = 0; i < listeners.size(); i++) {
+          listeners.get(i).onGestureStarted(gesture);
+        }
+      }
+      node = node.getParent();
+    }
   }
 
-  private void removeFinishedGestures() {
+  void removeFinishedGestures() {
     for (int i = gestures.size() - 1; i >= 0; i--) {
       T gesture = gestures.get(i);
       if (gesture.hasFinished()) {
         gestures.remove(i);
+        recycleGesture(gesture);
       }
     }
   }
+
+  private void publishToFrameThread(int type, T gesture) {
+    GestureInputThread inputThread = this.inputThread;
+    if (inputThread != null) {
+      inputThread.publish(type, this, gesture);
+    }
+  }
+
+  @Nullable
+  @SuppressWarnings("unchecked") // Frame copies are created by the recognizer of their source.
+  private T getFrameCopy(BaseGesture<?> source) {
+    return (T) source.frameCopy;
+  }
+
+  private void recycleFrameCopy(T frameCopy) {
+    if (isPoolLeakCheckEnabled) {
+      frameCopy.poison();
+      return;
+    }
+
+    if (frameCopyPool.size() < MAX_POOL_SIZE) {
+      frameCopy.reset();
+      frameCopyPool.add(frameCopy);
+    }
+  }
+
+  private void recycleGesture(T gesture) {
+    if (isPoolLeakCheckEnabled) {
+      gesture.poison();
+      return;
+    }
+
+    if (gesturePool.size() < MAX_POOL_SIZE) {
+      gesture.reset();
+      gesturePool.add(gesture);
+    }
+  }
 }
@@ -16,9 +16,11 @@
 package com.google.ar.sceneform.ux;
 
 import android.view.MotionEvent;
+import com.google.ar.sceneform.FrameTime;
 import com.google.ar.sceneform.HitTestResult;
 import com.google.ar.sceneform.Node;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Base class for nodes that can be transformed using gestures from {@link TransformationSystem}.
@@ -26,20 +28,31 @@ import java.util.ArrayList;
 public abstract class BaseTransformableNode extends Node implements Node.OnTapListener {
   private final TransformationSystem transformationSystem;
   private final ArrayList<BaseTransformationController<?>> controllers = new ArrayList<>();
+  // Controllers updated at every frame, sleeping controllers aren't in it.
+  private final ArrayList<BaseTransformationController<?>> updatedControllers = new ArrayList<>();
+  // Slot of the node in the FootprintHash of the transformation system, -1 when not in it.
+  int footprintSlot = -1;
+  // Set by the transformation system while the node is one of its selected nodes.
+  boolean isSelected = false;
 
   @SuppressWarnings("initialization")
   public BaseTransformableNode(TransformationSystem transformationSystem) {
     this.transformationSystem = transformationSystem;
-
-    setOnTapListener(this);
   }
 
   public TransformationSystem getTransformationSystem() {
     return transformationSystem;
   }
 
-  /** Returns true if any of the transformation controllers are actively transforming this node. */
+  /**
+   * Returns true if any of the transformation controllers are actively transforming this node, or
+   * if it is part of the group transformed by the {@link GroupTransformController}.
+   */
   public boolean isTransforming() {
+    if (transformationSystem.getGroupTransformController().isTransforming(this)) {
+      return true;
+    }
+
     for (int i = 0; i < controllers.size(); i++) {
       if (controllers.get(i).isTransforming()) {
         return true;
@@ -49,9 +62,9 @@ public abstract class BaseTransformableNode extends Node implements Node.OnTapLi
     return false;
   }
 
-  /** Returns true if this node is currently selected by the TransformationSystem. */
+  /** Returns true if this node is one of the nodes selected by the TransformationSystem. */
   public boolean isSelected() {
-    return transformationSystem.getSelectedNode() == this;
+    return transformationSystem.isNodeSelected(this);
   }
 
   /**
@@ -65,18 +78,76 @@ public abstract class BaseTransformableNode extends Node implements Node.OnTapLi
     return transformationSystem.selectNode(this);
   }
 
+  /**
+   * Selects the node. Taps are handled by the {@link TransformationSystem} through its picking
+   * grid, so this is no longer registered as the tap listener of the node.
+   */
   @Override
   public void onTap(HitTestResult hitTestResult, MotionEvent motionEvent) {
     select();
   }
 
+  @Override
+  public void onActivate() {
+    super.onActivate();
+    transformationSystem.getPickingGrid().add(this);
+    transformationSystem.getFootprintHash().add(this);
+    for (int i = 0; i < controllers.size(); i++) {
+      controllers.get(i).onActivated(this);
+    }
+  }
+
+  @Override
+  public void onUpdate(FrameTime frameTime) {
+    super.onUpdate(frameTime);
+    // Backwards, controllers going to sleep are removed while they are updated.
+    for (int i = updatedControllers.size() - 1; i >= 0; i--) {
+      if (i < updatedControllers.size()) {
+        updatedControllers.get(i).onNodeUpdated(frameTime);
+      }
+    }
+  }
+
+  @Override
+  public void onDeactivate() {
+    for (int i = 0; i < controllers.size(); i++) {
+      controllers.get(i).onDeactivated(this);
+    }
+    transformationSystem.getPickingGrid().remove(this);
+    transformationSystem.getFootprintHash().remove(this);
+    transformationSystem.getAnchorManager().onNodeDeactivated(this);
+    super.onDeactivate();
+  }
+
+  /**
+   * Adds a controller of the node. Controllers add themselves when they are created, and receive
+   * the {@link Node.LifecycleListener} calls of the node until they are removed.
+   */
   protected void addTransformationController(
       BaseTransformationController<?> transformationController) {
-    controllers.add(transformationController);
+    if (!controllers.contains(transformationController)) {
+      controllers.add(transformationController);
+    }
   }
 
   protected void removeTransformationController(
       BaseTransformationController<?> transformationController) {
     controllers.remove(transformationController);
+    updatedControllers.remove(transformationController);
+  }
+
+  List<BaseTransformationController<?>> getTransformationControllers() {
+    return controllers;
+  }
+
+  void startUpdating(BaseTransformationController<?> transformationController) {
+    if (controllers.contains(transformationController)
+        && !updatedControllers.contains(transformationController)) {
+      updatedControllers.add(transformationController);
+    }
+  }
+
+  void stopUpdating(BaseTransformationController<?> transformationController) {
+    updatedControllers.remove(transformationController);
   }
 }
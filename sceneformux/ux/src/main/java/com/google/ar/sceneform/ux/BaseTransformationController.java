@@ -25,6 +25,17 @@ import com.google.ar.sceneform.Node;
  * BaseTransformableNode} by responding to Gestures via a {@link BaseGestureRecognizer}.
  *
  * <p>Example's include, changing the {@link TransformableNode}'s Scale based on a Pinch Gesture.
+ *
+ * <p>The controller is only notified of gestures that target its node or one of its descendants.
+ * Gestures without a target node are routed to the selected node.
+ *
+ * <p>The {@link Node.LifecycleListener} methods are called by the node itself. A controller with
+ * nothing left to animate can {@link #sleep()}: the node stops calling {@link #onUpdated(Node,
+ * FrameTime)} until a gesture starts or the controller is woken up again.
+ *
+ * <p>When the transformation system has a {@link TickScheduler}, {@link #onUpdated(Node,
+ * FrameTime)} is called by the scheduler in its {@link TickScheduler.Phase#SIMULATION} phase
+ * instead of by the node, and sleeping controllers are idle subscribers.
  */
 public abstract class BaseTransformationController<T extends BaseGesture<T>>
     implements BaseGestureRecognizer.OnGestureStartedListener<T>,
@@ -36,12 +47,14 @@ public abstract class BaseTransformationController<T extends BaseGesture<T>>
   @Nullable private T activeGesture;
   private boolean enabled;
   private boolean activeAndEnabled;
+  private boolean isAsleep = false;
+  @Nullable private TickScheduler.Subscription tickSubscription;
 
   @SuppressWarnings("initialization") // Suppress @UnderInitialization warning.
   public BaseTransformationController(
       BaseTransformableNode transformableNode, BaseGestureRecognizer<T> gestureRecognizer) {
     this.transformableNode = transformableNode;
-    this.transformableNode.addLifecycleListener(this);
+    this.transformableNode.addTransformationController(this);
     this.gestureRecognizer = gestureRecognizer;
     setEnabled(true);
   }
@@ -58,6 +71,49 @@ public abstract class BaseTransformationController<T extends BaseGesture<T>>
   public void setEnabled(boolean enabled) {
     this.enabled = enabled;
     updateActiveAndEnabled();
+    if (enabled) {
+      wakeUp();
+    } else if (activeGesture == null) {
+      sleep();
+    }
+  }
+
+  /** Returns true if the controller doesn't receive {@link #onUpdated(Node, FrameTime)}. */
+  public boolean isAsleep() {
+    return isAsleep;
+  }
+
+  /**
+   * Stops calling {@link #onUpdated(Node, FrameTime)} until the next gesture starts or {@link
+   * #wakeUp()} is called. Called by the controllers once their node is at rest.
+   */
+  protected void sleep() {
+    isAsleep = true;
+    updateFrameUpdates();
+  }
+
+  /**
+   * Updates the {@link MotionSystem} of the transformation system while the controller has active
+   * motions and no {@link TickScheduler} updates the system. Called from {@link #onUpdated(Node,
+   * FrameTime)}.
+   *
+   * @return true if the controller updated the motion system, it must then stay awake until its
+   *     motions are finished
+   */
+  protected boolean updateMotions(FrameTime frameTime, boolean hasActiveMotions) {
+    TransformationSystem transformationSystem = transformableNode.getTransformationSystem();
+    if (!hasActiveMotions || transformationSystem.getTickScheduler() != null) {
+      return false;
+    }
+
+    transformationSystem.getMotionSystem().update(frameTime);
+    return true;
+  }
+
+  /** Resumes calling {@link #onUpdated(Node, FrameTime)} every frame. */
+  protected void wakeUp() {
+    isAsleep = false;
+    updateFrameUpdates();
   }
 
   public boolean isTransforming() {
@@ -78,6 +134,7 @@ public abstract class BaseTransformationController<T extends BaseGesture<T>>
   @CallSuper
   public void onActivated(Node node) {
     updateActiveAndEnabled();
+    updateFrameUpdates();
   }
 
   @Override
@@ -86,6 +143,7 @@ public abstract class BaseTransformationController<T extends BaseGesture<T>>
   @Override
   @CallSuper
   public void onDeactivated(Node node) {
+    updateFrameUpdates();
     updateActiveAndEnabled();
   }
 
@@ -99,6 +157,12 @@ public abstract class BaseTransformationController<T extends BaseGesture<T>>
       return;
     }
 
+    GroupTransformController groupTransformController =
+        transformableNode.getTransformationSystem().getGroupTransformController();
+    if (groupTransformController.isHandling(gesture)) {
+      return;
+    }
+
     if (canStartTransformation(gesture)) {
       setActiveGesture(gesture);
     }
@@ -134,10 +198,70 @@ public abstract class BaseTransformationController<T extends BaseGesture<T>>
     activeGesture = gesture;
 
     if (activeGesture != null) {
+      wakeUp();
       activeGesture.setGestureEventListener(this);
     }
   }
 
+  /** Called by the node at every frame while the controller is awake and the node is active. */
+  void onNodeUpdated(FrameTime frameTime) {
+    // A scheduler was set since the node started updating the controller.
+    if (transformableNode.getTransformationSystem().getTickScheduler() != null) {
+      updateFrameUpdates();
+      return;
+    }
+
+    onUpdated(transformableNode, frameTime);
+  }
+
+  /**
+   * Subscribes to the tick scheduler of the transformation system while the node is active, or asks
+   * the node to update the controller while it is awake when there is no scheduler. Called when the
+   * node is activated or deactivated, and when the controller sleeps or wakes up.
+   */
+  private void updateFrameUpdates() {
+    boolean isActive = transformableNode.isActive();
+    TickScheduler scheduler =
+        isActive ? transformableNode.getTransformationSystem().getTickScheduler() : null;
+    if (tickSubscription != null && tickSubscription.getScheduler() != scheduler) {
+      cancelTickSubscription();
+    }
+
+    if (scheduler != null) {
+      if (tickSubscription == null) {
+        tickSubscription =
+            scheduler.subscribe(
+                TickScheduler.Phase.SIMULATION, (frameTime, deltaSeconds) -> onTick(frameTime));
+      }
+      tickSubscription.setIdle(isAsleep);
+      transformableNode.stopUpdating(this);
+    } else if (isActive && !isAsleep) {
+      transformableNode.startUpdating(this);
+    } else {
+      transformableNode.stopUpdating(this);
+    }
+  }
+
+  private void onTick(FrameTime frameTime) {
+    TickScheduler.Subscription subscription = tickSubscription;
+    // The scheduler of the transformation system was replaced or removed.
+    if (subscription == null
+        || subscription.getScheduler()
+            != transformableNode.getTransformationSystem().getTickScheduler()) {
+      updateFrameUpdates();
+      return;
+    }
+
+    onUpdated(transformableNode, frameTime);
+  }
+
+  private void cancelTickSubscription() {
+    if (tickSubscription != null) {
+      tickSubscription.cancel();
+      tickSubscription = null;
+    }
+  }
+
   private void updateActiveAndEnabled() {
     boolean newActiveAndEnabled = getTransformableNode().isActive() && enabled;
     if (newActiveAndEnabled == activeAndEnabled) {
@@ -150,17 +274,19 @@ public abstract class BaseTransformationController<T extends BaseGesture<T>>
       connectToRecognizer();
     } else {
       disconnectFromRecognizer();
-      if (activeGesture != null) {
+      // A gesture that is already finishing, for instance when the node is deactivated while its
+      // transformation ends, must not be finished again.
+      if (activeGesture != null && !activeGesture.hasFinished()) {
         activeGesture.cancel();
       }
     }
   }
 
   private void connectToRecognizer() {
-    gestureRecognizer.addOnGestureStartedListener(this);
+    gestureRecognizer.addOnGestureStartedListener(transformableNode, this);
   }
 
   private void disconnectFromRecognizer() {
-    gestureRecognizer.removeOnGestureStartedListener(this);
+    gestureRecognizer.removeOnGestureStartedListener(transformableNode, this);
   }
 }
@@ -3,6 +3,7 @@ package com.google.ar.sceneform.ux;
 import androidx.annotation.Nullable;
 
 import com.google.ar.core.Plane;
+import com.google.ar.core.Pose;
 import com.google.ar.core.TrackingState;
 
 import java.util.ArrayList;
@@ -90,10 +91,32 @@ public class DetectedARPlanes {
         return deltaHeight != 0f ? (deltaHeight < 0 ? -1 : 1) : 0;
     }));
 
+    private final PlanePolygonCache polygonCache = new PlanePolygonCache();
+
+    /**
+     * Updates the planes, {@code planes} are expected to be the planes returned by {@code
+     * Frame#getUpdatedTrackables(Plane.class)} for the current frame.
+     */
     public void update(Collection<Plane> planes) {
+        polygonCache.update(planes);
         floorPlanes.update(planes);
+        // Walls are tracked for the wall contact snapping of the SnappingEngine.
+        wallPlanes.update(planes);
         // Uncomment when types are supported
         //ceilPlanes.update(planes)
-        //wallPlanes.update(planes)
+    }
+
+    /** Returns the tracked vertical planes, sorted by increasing height. */
+    public List<Plane> getWallPlanes() {
+        return wallPlanes.getPlanes();
+    }
+
+    /** Same as {@link Plane#isPoseInPolygon(Pose)}, answered from the {@link PlanePolygonCache}. */
+    public boolean isPoseInPolygon(Plane plane, Pose pose) {
+        return polygonCache.isPoseInPolygon(plane, pose);
+    }
+
+    public PlanePolygonCache getPolygonCache() {
+        return polygonCache;
     }
 }
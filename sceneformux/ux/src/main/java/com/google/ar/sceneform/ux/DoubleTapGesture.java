@@ -0,0 +1,246 @@
+/*
+ * Copyright 2018 Google LLC All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.ux;
+
+import android.util.Log;
+import android.view.MotionEvent;
+import android.view.ViewConfiguration;
+import androidx.annotation.Nullable;
+import com.google.ar.sceneform.HitTestResult;
+import com.google.ar.sceneform.math.Vector3;
+
+/**
+ * Gesture for when the user taps the touch screen twice in a row at the same place.
+ *
+ * <p>A double tap has no duration: it starts and finishes when the finger is lifted the second
+ * time, so listeners only receive {@link
+ * BaseGestureRecognizer.OnGestureStartedListener#onGestureStarted}. Each of the two taps is also
+ * recognized as a {@link TapGesture}.
+ */
+public class DoubleTapGesture extends BaseGesture<DoubleTapGesture> {
+  private static final String TAG = DoubleTapGesture.class.getSimpleName();
+
+  /** Interface definition for callbacks to be invoked by a {@link DoubleTapGesture}. */
+  public interface OnGestureEventListener
+      extends BaseGesture.OnGestureEventListener<DoubleTapGesture> {}
+
+  private static final int STATE_FIRST_DOWN = 0;
+  private static final int STATE_WAITING_FOR_SECOND_DOWN = 1;
+  private static final int STATE_SECOND_DOWN = 2;
+
+  private final Vector3 firstPosition = new Vector3();
+  private final Vector3 position = new Vector3();
+  private final float slopPixelsSquared;
+  private final float doubleTapSlopPixelsSquared;
+  private int state = STATE_FIRST_DOWN;
+  private int pointerId = MotionEvent.INVALID_POINTER_ID;
+  private long downTime;
+  private long firstUpTime;
+  @Nullable private MotionEvent motionEvent;
+
+  private static final float SLOP_INCHES = 0.1f;
+  private static final float DOUBLE_TAP_SLOP_INCHES = 0.6f;
+  private static final boolean DOUBLE_TAP_GESTURE_DEBUG = false;
+
+  public DoubleTapGesture(
+      GesturePointersUtility gesturePointersUtility,
+      HitTestResult hitTestResult,
+      MotionEvent motionEvent) {
+    this(gesturePointersUtility);
+    init(hitTestResult, motionEvent);
+  }
+
+  /** Creates an uninitialized gesture for the pool of {@link DoubleTapGestureRecognizer}. */
+  DoubleTapGesture(GesturePointersUtility gesturePointersUtility) {
+    super(gesturePointersUtility);
+
+    float slopPixels = gesturePointersUtility.inchesToPixels(SLOP_INCHES);
+    slopPixelsSquared = slopPixels * slopPixels;
+    float doubleTapSlopPixels = gesturePointersUtility.inchesToPixels(DOUBLE_TAP_SLOP_INCHES);
+    doubleTapSlopPixelsSquared = doubleTapSlopPixels * doubleTapSlopPixels;
+  }
+
+  /** Starts tracking the pointer that went down first in the given motion event. */
+  void init(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    state = STATE_FIRST_DOWN;
+    pointerId = motionEvent.getPointerId(motionEvent.getActionIndex());
+    GesturePointersUtility.motionEventToPosition(motionEvent, pointerId, firstPosition);
+    position.set(firstPosition);
+    downTime = motionEvent.getEventTime();
+    targetNode = hitTestResult.getNode();
+    if (DOUBLE_TAP_GESTURE_DEBUG) {
+      debugLog("Created: " + pointerId);
+    }
+  }
+
+  /** Writes the screen position of the second tap into {@code outPosition}. */
+  public void getPosition(Vector3 outPosition) {
+    checkNotRecycled();
+    outPosition.set(position);
+  }
+
+  /**
+   * Returns the motion event that completed the double tap. Only valid while the listeners are
+   * notified, the event belongs to the caller of {@link TransformationSystem#onTouch}.
+   */
+  @Nullable
+  public MotionEvent getMotionEvent() {
+    checkNotRecycled();
+    return motionEvent;
+  }
+
+  /**
+   * Returns true if this gesture waits for a second tap and the finger that went down in {@code
+   * motionEvent} is close enough in time and space to be that second tap.
+   */
+  boolean acceptsSecondDown(MotionEvent motionEvent) {
+    if (state != STATE_WAITING_FOR_SECOND_DOWN
+        || motionEvent.getEventTime() - firstUpTime > ViewConfiguration.getDoubleTapTimeout()) {
+      return false;
+    }
+
+    int index = motionEvent.getActionIndex();
+    float dx = motionEvent.getX(index) - firstPosition.x;
+    float dy = motionEvent.getY(index) - firstPosition.y;
+    return dx * dx + dy * dy < doubleTapSlopPixelsSquared;
+  }
+
+  /** Returns true if this gesture waits for a second tap that can no longer come. */
+  boolean hasTimedOut(long uptimeMillis) {
+    return state == STATE_WAITING_FOR_SECOND_DOWN
+        && uptimeMillis - firstUpTime > ViewConfiguration.getDoubleTapTimeout();
+  }
+
+  @Override
+  protected boolean isUsingRetainedPointerId() {
+    // While waiting for the second tap no finger is down.
+    return state != STATE_WAITING_FOR_SECOND_DOWN
+        && gesturePointersUtility.isPointerIdRetained(pointerId);
+  }
+
+  @Override
+  protected boolean canStart(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    int action = motionEvent.getActionMasked();
+
+    if (action == MotionEvent.ACTION_CANCEL || action == MotionEvent.ACTION_POINTER_DOWN) {
+      cancel();
+      return false;
+    }
+
+    if (state == STATE_WAITING_FOR_SECOND_DOWN) {
+      if (action != MotionEvent.ACTION_DOWN || !acceptsSecondDown(motionEvent)) {
+        cancel();
+        return false;
+      }
+
+      state = STATE_SECOND_DOWN;
+      pointerId = motionEvent.getPointerId(motionEvent.getActionIndex());
+      GesturePointersUtility.motionEventToPosition(motionEvent, pointerId, position);
+      downTime = motionEvent.getEventTime();
+      return false;
+    }
+
+    // Each of the two presses must be a tap.
+    if (gesturePointersUtility.isPointerIdRetained(pointerId)
+        || motionEvent.getEventTime() - downTime >= ViewConfiguration.getLongPressTimeout()) {
+      cancel();
+      return false;
+    }
+
+    int index = motionEvent.findPointerIndex(pointerId);
+    if (index < 0) {
+      cancel();
+      return false;
+    }
+
+    float dx = motionEvent.getX(index) - position.x;
+    float dy = motionEvent.getY(index) - position.y;
+    if (dx * dx + dy * dy >= slopPixelsSquared) {
+      cancel();
+      return false;
+    }
+
+    if (action != MotionEvent.ACTION_UP) {
+      return false;
+    }
+
+    if (state == STATE_FIRST_DOWN) {
+      state = STATE_WAITING_FOR_SECOND_DOWN;
+      firstUpTime = motionEvent.getEventTime();
+      return false;
+    }
+
+    return true;
+  }
+
+  @Override
+  protected void onStart(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    debugLog("Started: " + pointerId);
+    this.motionEvent = motionEvent;
+    complete();
+  }
+
+  @Override
+  protected boolean updateGesture(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    return false;
+  }
+
+  @Override
+  protected void reset() {
+    super.reset();
+    state = STATE_FIRST_DOWN;
+    pointerId = MotionEvent.INVALID_POINTER_ID;
+    firstPosition.setZero();
+    position.setZero();
+    downTime = 0;
+    firstUpTime = 0;
+    motionEvent = null;
+  }
+
+  @Override
+  protected void onCancel() {
+    debugLog("Cancelled: " + pointerId);
+  }
+
+  @Override
+  protected void onFinish() {
+    debugLog("Finished: " + pointerId);
+  }
+
+  @Override
+  void writeState(GestureState state) {
+    state.values[0] = position.x;
+    state.values[1] = position.y;
+    state.setMotionEvent(motionEvent);
+  }
+
+  @Override
+  void readState(GestureState state) {
+    position.set(state.values[0], state.values[1], 0.0f);
+    motionEvent = state.motionEvent;
+  }
+
+  @Override
+  protected DoubleTapGesture getSelf() {
+    return this;
+  }
+
+  private static void debugLog(String log) {
+    if (DOUBLE_TAP_GESTURE_DEBUG) {
+      Log.d(TAG, "DoubleTapGesture:[" + log + "]");
+    }
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 Google LLC All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.ux;
+
+import android.view.MotionEvent;
+import com.google.ar.sceneform.HitTestResult;
+
+/** Gesture Recognizer for when the user taps the touch screen twice in a row. */
+public class DoubleTapGestureRecognizer extends BaseGestureRecognizer<DoubleTapGesture> {
+  /** Interface definition for a callbacks to be invoked when a {@link DoubleTapGesture} starts. */
+  public interface OnGestureStartedListener
+      extends BaseGestureRecognizer.OnGestureStartedListener<DoubleTapGesture> {}
+
+  public DoubleTapGestureRecognizer(GesturePointersUtility gesturePointersUtility) {
+    super(gesturePointersUtility);
+  }
+
+  @Override
+  public void checkTimeouts(long uptimeMillis) {
+    // Drop the gestures whose second tap didn't come in time.
+    boolean hasCancelled = false;
+    for (int i = 0; i < gestures.size(); i++) {
+      DoubleTapGesture gesture = gestures.get(i);
+      if (!gesture.hasFinished() && gesture.hasTimedOut(uptimeMillis)) {
+        gesture.cancel();
+        hasCancelled = true;
+      }
+    }
+
+    if (hasCancelled) {
+      removeFinishedGestures();
+    }
+  }
+
+  @Override
+  protected void tryCreateGestures(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    // Double taps are single finger gestures, they can only begin with the first finger down.
+    if (motionEvent.getActionMasked() != MotionEvent.ACTION_DOWN) {
+      return;
+    }
+
+    // The finger may be the second tap of a gesture in progress rather than a new first tap.
+    for (int i = 0; i < gestures.size(); i++) {
+      if (gestures.get(i).acceptsSecondDown(motionEvent)) {
+        return;
+      }
+    }
+
+    DoubleTapGesture gesture = obtainGesture();
+    if (gesture == null) {
+      gesture = new DoubleTapGesture(gesturePointersUtility);
+    }
+    gesture.init(hitTestResult, motionEvent);
+    gestures.add(gesture);
+  }
+
+  @Override
+  DoubleTapGesture createFrameCopy() {
+    return new DoubleTapGesture(gesturePointersUtility);
+  }
+}
@@ -27,36 +27,159 @@ public class DragGesture extends BaseGesture<DragGesture> {
   /** Interface definition for callbacks to be invoked by a {@link DragGesture}. */
   public interface OnGestureEventListener extends BaseGesture.OnGestureEventListener<DragGesture> {}
 
-  private final Vector3 startPosition;
-  private final Vector3 position;
-  private final Vector3 delta;
-  private final int pointerId;
+  private final Vector3 startPosition = new Vector3();
+  private final Vector3 position = new Vector3();
+  private final Vector3 delta = new Vector3();
+  private final VelocityEstimator velocityEstimator = new VelocityEstimator();
+  private final float slopPixelsSquared;
+  private final float maxPredictionPixels;
+  private int pointerId = MotionEvent.INVALID_POINTER_ID;
+  private boolean isHistoricalSamplingEnabled = false;
+  private float predictionHorizonMillis = 0.0f;
 
   private static final float SLOP_INCHES = 0.1f;
+  private static final float MAX_PREDICTION_INCHES = 0.5f;
   private static final boolean DRAG_GESTURE_DEBUG = false;
 
   public DragGesture(
       GesturePointersUtility gesturePointersUtility,
       HitTestResult hitTestResult,
       MotionEvent motionEvent) {
+    this(gesturePointersUtility);
+    init(hitTestResult, motionEvent);
+  }
+
+  /** Creates an uninitialized gesture for the pool of {@link DragGestureRecognizer}. */
+  DragGesture(GesturePointersUtility gesturePointersUtility) {
     super(gesturePointersUtility);
 
+    float slopPixels = gesturePointersUtility.inchesToPixels(SLOP_INCHES);
+    slopPixelsSquared = slopPixels * slopPixels;
+    maxPredictionPixels = gesturePointersUtility.inchesToPixels(MAX_PREDICTION_INCHES);
+  }
+
+  /** Starts tracking the pointer that went down in the given motion event. */
+  void init(HitTestResult hitTestResult, MotionEvent motionEvent) {
     pointerId = motionEvent.getPointerId(motionEvent.getActionIndex());
-    startPosition = GesturePointersUtility.motionEventToPosition(motionEvent, pointerId);
-    position = new Vector3(startPosition);
-    delta = Vector3.zero();
+    GesturePointersUtility.motionEventToPosition(motionEvent, pointerId, startPosition);
+    position.set(startPosition);
+    delta.setZero();
+    velocityEstimator.clear();
+    velocityEstimator.addSample(motionEvent.getEventTime(), startPosition.x, startPosition.y);
     targetNode = hitTestResult.getNode();
-    debugLog("Created: " + pointerId);
+    if (DRAG_GESTURE_DEBUG) {
+      debugLog("Created: " + pointerId);
+    }
   }
 
   public Vector3 getPosition() {
+    checkNotRecycled();
     return new Vector3(position);
   }
 
   public Vector3 getDelta() {
+    checkNotRecycled();
     return new Vector3(delta);
   }
 
+  /** Writes the current position into {@code outPosition} without allocating. */
+  public void getPosition(Vector3 outPosition) {
+    checkNotRecycled();
+    outPosition.set(position);
+  }
+
+  /** Writes the last delta into {@code outDelta} without allocating. */
+  public void getDelta(Vector3 outDelta) {
+    checkNotRecycled();
+    outDelta.set(delta);
+  }
+
+  public float getPositionX() {
+    checkNotRecycled();
+    return position.x;
+  }
+
+  public float getPositionY() {
+    checkNotRecycled();
+    return position.y;
+  }
+
+  /** Returns the estimated velocity of the pointer along x in pixels per second. */
+  public float getVelocityX() {
+    checkNotRecycled();
+    return velocityEstimator.getVelocityX();
+  }
+
+  /** Returns the estimated velocity of the pointer along y in pixels per second. */
+  public float getVelocityY() {
+    checkNotRecycled();
+    return velocityEstimator.getVelocityY();
+  }
+
+  /** Writes the estimated velocity of the pointer in pixels per second into {@code outVelocity}. */
+  public void getVelocity(Vector3 outVelocity) {
+    checkNotRecycled();
+    velocityEstimator.getVelocity(outVelocity);
+  }
+
+  /**
+   * Writes the position the pointer is expected to reach {@link #getPredictionHorizonMillis()}
+   * after the last sample into {@code outPosition}, extrapolated from its estimated velocity. The
+   * extrapolation is limited to half an inch. Without prediction, this is the current position.
+   *
+   * @see DragGestureRecognizer#setPredictionHorizonMillis(float)
+   */
+  public void getPredictedPosition(Vector3 outPosition) {
+    checkNotRecycled();
+    if (predictionHorizonMillis <= 0.0f || velocityEstimator.getSampleCount() < 2) {
+      outPosition.set(position);
+      return;
+    }
+
+    float seconds = predictionHorizonMillis / 1000.0f;
+    float offsetX = velocityEstimator.getVelocityX() * seconds;
+    float offsetY = velocityEstimator.getVelocityY() * seconds;
+    float offsetLength = (float) Math.sqrt(offsetX * offsetX + offsetY * offsetY);
+    if (offsetLength > maxPredictionPixels) {
+      float scale = maxPredictionPixels / offsetLength;
+      offsetX *= scale;
+      offsetY *= scale;
+    }
+    outPosition.set(position.x + offsetX, position.y + offsetY, 0.0f);
+  }
+
+  /** Returns true if {@link #getPredictedPosition(Vector3)} extrapolates the position. */
+  public boolean isPredictionEnabled() {
+    return predictionHorizonMillis > 0.0f;
+  }
+
+  public float getPredictionHorizonMillis() {
+    return predictionHorizonMillis;
+  }
+
+  void setPredictionHorizonMillis(float horizonMillis) {
+    predictionHorizonMillis = horizonMillis;
+  }
+
+  /**
+   * Returns true if the batched historical samples of each ACTION_MOVE are fed to the velocity
+   * estimator, in addition to the current sample.
+   *
+   * @see DragGestureRecognizer#setHistoricalSamplingEnabled(boolean)
+   */
+  public boolean isHistoricalSamplingEnabled() {
+    return isHistoricalSamplingEnabled;
+  }
+
+  void setHistoricalSamplingEnabled(boolean enabled) {
+    isHistoricalSamplingEnabled = enabled;
+  }
+
+  @Override
+  protected boolean isUsingRetainedPointerId() {
+    return gesturePointersUtility.isPointerIdRetained(pointerId);
+  }
+
   @Override
   protected boolean canStart(HitTestResult hitTestResult, MotionEvent motionEvent) {
     int actionId = motionEvent.getPointerId(motionEvent.getActionIndex());
@@ -81,6 +204,10 @@ public class DragGesture extends BaseGesture<DragGesture> {
     }
 
     if (motionEvent.getPointerCount() > 1) {
+      // Other pointers are down, the drag may only start if all of them are used elsewhere.
+      if (!gesturePointersUtility.isAnyPointerIdRetained()) {
+        return false;
+      }
       for (int i = 0; i < motionEvent.getPointerCount(); i++) {
         int id = motionEvent.getPointerId(i);
         if (id != pointerId && !gesturePointersUtility.isPointerIdRetained(id)) {
@@ -89,21 +216,18 @@ public class DragGesture extends BaseGesture<DragGesture> {
       }
     }
 
-    Vector3 newPosition = GesturePointersUtility.motionEventToPosition(motionEvent, pointerId);
-    float diff = Vector3.subtract(newPosition, startPosition).length();
-    float slopPixels = gesturePointersUtility.inchesToPixels(SLOP_INCHES);
-    if (diff >= slopPixels) {
-      return true;
-    }
-
-    return false;
+    int index = motionEvent.findPointerIndex(pointerId);
+    addVelocitySamples(motionEvent, index);
+    float dx = motionEvent.getX(index) - startPosition.x;
+    float dy = motionEvent.getY(index) - startPosition.y;
+    return dx * dx + dy * dy >= slopPixelsSquared;
   }
 
   @Override
   protected void onStart(HitTestResult hitTestResult, MotionEvent motionEvent) {
     debugLog("Started: " + pointerId);
 
-    position.set(GesturePointersUtility.motionEventToPosition(motionEvent, pointerId));
+    GesturePointersUtility.motionEventToPosition(motionEvent, pointerId, position);
     gesturePointersUtility.retainPointerId(pointerId);
   }
 
@@ -113,11 +237,16 @@ public class DragGesture extends BaseGesture<DragGesture> {
     int action = motionEvent.getActionMasked();
 
     if (action == MotionEvent.ACTION_MOVE) {
-      Vector3 newPosition = GesturePointersUtility.motionEventToPosition(motionEvent, pointerId);
-      if (!Vector3.equals(newPosition, position)) {
-        delta.set(Vector3.subtract(newPosition, position));
-        position.set(newPosition);
-        debugLog("Updated: " + pointerId + " : " + position);
+      int index = motionEvent.findPointerIndex(pointerId);
+      addVelocitySamples(motionEvent, index);
+      float newX = motionEvent.getX(index);
+      float newY = motionEvent.getY(index);
+      if (newX != position.x || newY != position.y) {
+        delta.set(newX - position.x, newY - position.y, 0.0f);
+        position.set(newX, newY, 0.0f);
+        if (DRAG_GESTURE_DEBUG) {
+          debugLog("Updated: " + pointerId + " : " + position);
+        }
         return true;
       }
     } else if (actionId == pointerId
@@ -130,6 +259,18 @@ public class DragGesture extends BaseGesture<DragGesture> {
     return false;
   }
 
+  @Override
+  protected void reset() {
+    super.reset();
+    pointerId = MotionEvent.INVALID_POINTER_ID;
+    isHistoricalSamplingEnabled = false;
+    predictionHorizonMillis = 0.0f;
+    velocityEstimator.clear();
+    startPosition.setZero();
+    position.setZero();
+    delta.setZero();
+  }
+
   @Override
   protected void onCancel() {
     debugLog("Cancelled: " + pointerId);
@@ -141,11 +282,47 @@ public class DragGesture extends BaseGesture<DragGesture> {
     gesturePointersUtility.releasePointerId(pointerId);
   }
 
+  @Override
+  void writeState(GestureState state) {
+    float[] values = state.values;
+    values[0] = position.x;
+    values[1] = position.y;
+    values[2] = delta.x;
+    values[3] = delta.y;
+    values[4] = velocityEstimator.getVelocityX();
+    values[5] = velocityEstimator.getVelocityY();
+    values[6] = velocityEstimator.getSampleCount();
+    values[7] = predictionHorizonMillis;
+    state.time = velocityEstimator.getNewestSampleTime();
+  }
+
+  @Override
+  void readState(GestureState state) {
+    float[] values = state.values;
+    position.set(values[0], values[1], 0.0f);
+    delta.set(values[2], values[3], 0.0f);
+    velocityEstimator.setEstimate(state.time, values[4], values[5], (int) values[6]);
+    predictionHorizonMillis = values[7];
+  }
+
   @Override
   protected DragGesture getSelf() {
     return this;
   }
 
+  private void addVelocitySamples(MotionEvent motionEvent, int pointerIndex) {
+    if (isHistoricalSamplingEnabled) {
+      for (int h = 0; h < motionEvent.getHistorySize(); h++) {
+        velocityEstimator.addSample(
+            motionEvent.getHistoricalEventTime(h),
+            motionEvent.getHistoricalX(pointerIndex, h),
+            motionEvent.getHistoricalY(pointerIndex, h));
+      }
+    }
+    velocityEstimator.addSample(
+        motionEvent.getEventTime(), motionEvent.getX(pointerIndex), motionEvent.getY(pointerIndex));
+  }
+
   private static void debugLog(String log) {
     if (DRAG_GESTURE_DEBUG) {
       Log.d(TAG, "DragGesture:[" + log + "]");
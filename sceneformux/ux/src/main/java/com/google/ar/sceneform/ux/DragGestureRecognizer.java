@@ -24,10 +24,42 @@ public class DragGestureRecognizer extends BaseGestureRecognizer<DragGesture> {
   public interface OnGestureStartedListener
       extends BaseGestureRecognizer.OnGestureStartedListener<DragGesture> {}
 
+  private boolean isHistoricalSamplingEnabled = false;
+  private float predictionHorizonMillis = 0.0f;
+
   public DragGestureRecognizer(GesturePointersUtility gesturePointersUtility) {
     super(gesturePointersUtility);
   }
 
+  /**
+   * When enabled, drag gestures feed every batched historical sample of an ACTION_MOVE to their
+   * velocity estimator instead of only the most recent one. Applies to gestures created afterwards.
+   */
+  public void setHistoricalSamplingEnabled(boolean enabled) {
+    isHistoricalSamplingEnabled = enabled;
+  }
+
+  public boolean isHistoricalSamplingEnabled() {
+    return isHistoricalSamplingEnabled;
+  }
+
+  /**
+   * Sets how far ahead drag gestures predict the position of the finger, 0 to disable prediction
+   * which is the default. Controllers that support it move the node to the predicted position to
+   * compensate for the latency between a touch sample and the frame that displays its result, so
+   * the horizon should be that measured latency, typically one to two display frames. Applies to
+   * gestures created afterwards.
+   *
+   * @see DragGesture#getPredictedPosition(com.google.ar.sceneform.math.Vector3)
+   */
+  public void setPredictionHorizonMillis(float horizonMillis) {
+    predictionHorizonMillis = Math.max(0.0f, horizonMillis);
+  }
+
+  public float getPredictionHorizonMillis() {
+    return predictionHorizonMillis;
+  }
+
   @Override
   protected void tryCreateGestures(HitTestResult hitTestResult, MotionEvent motionEvent) {
     int action = motionEvent.getActionMasked();
@@ -36,7 +68,19 @@ public class DragGestureRecognizer extends BaseGestureRecognizer<DragGesture> {
         action == MotionEvent.ACTION_DOWN || action == MotionEvent.ACTION_POINTER_DOWN;
 
     if (touchBegan && !gesturePointersUtility.isPointerIdRetained(actionId)) {
-      gestures.add(new DragGesture(gesturePointersUtility, hitTestResult, motionEvent));
+      DragGesture gesture = obtainGesture();
+      if (gesture == null) {
+        gesture = new DragGesture(gesturePointersUtility);
+      }
+      gesture.init(hitTestResult, motionEvent);
+      gesture.setHistoricalSamplingEnabled(isHistoricalSamplingEnabled);
+      gesture.setPredictionHorizonMillis(predictionHorizonMillis);
+      gestures.add(gesture);
     }
   }
+
+  @Override
+  DragGesture createFrameCopy() {
+    return new DragGesture(gesturePointersUtility);
+  }
 }
@@ -0,0 +1,371 @@
+/*
+ * Copyright 2018 Google LLC All Rights Reserved.
+ * Copyright 2020 Augment.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.ux;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.ar.core.Anchor;
+import com.google.ar.core.Plane;
+import com.google.ar.core.Pose;
+import com.google.ar.core.TrackingState;
+import com.google.ar.sceneform.AnchorNode;
+import com.google.ar.sceneform.Camera;
+import com.google.ar.sceneform.FrameTime;
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.Scene;
+import com.google.ar.sceneform.collision.Ray;
+import com.google.ar.sceneform.math.Quaternion;
+import com.google.ar.sceneform.math.Vector3;
+
+import java.util.List;
+
+/**
+ * Keeps a {@link BaseTransformableNode} sliding on the floor plane it rests on after a {@link
+ * FlingGesture}, slowing it down with friction until it stops. The node is anchored once, when it
+ * comes to rest.
+ *
+ * <p>The motion is simulated in {@link #onUpdated(Node, FrameTime)} on the plane found when the
+ * fling starts, using analytic ray/plane intersections instead of ARCore hit tests. The slide stops
+ * at the border of the plane, except on the first floor plane which is considered infinite like in
+ * {@link TranslationControllerWithPlaneChange}.
+ */
+public class FlingController extends TransformationController<FlingGesture> {
+
+    public class Settings {
+
+        /** Exponential friction coefficient, in 1/s. */
+        public float friction = DEFAULT_FRICTION;
+        /** Maximum sliding speed, in meters per second. */
+        public float maxSpeed = DEFAULT_MAX_SPEED;
+        /** Speed under which the node is considered at rest, in meters per second. */
+        public float restSpeed = DEFAULT_REST_SPEED;
+
+        void from(Settings other) {
+            friction = other.friction;
+            maxSpeed = other.maxSpeed;
+            restSpeed = other.restSpeed;
+        }
+    }
+
+    public Settings settings = new Settings();
+
+    public static final float DEFAULT_FRICTION = 4.0f;
+    public static final float DEFAULT_MAX_SPEED = 2.5f;
+    public static final float DEFAULT_REST_SPEED = 0.02f;
+
+    // Screen motion used to measure the world velocity on the plane.
+    private static final float VELOCITY_SAMPLING_SECONDS = 0.05f;
+    // How far from a floor plane the node may be to slide on it, in meters.
+    private static final float PLANE_DISTANCE_TOLERANCE = 0.1f;
+    // Long frames are clamped so that a hitch doesn't throw the node away.
+    private static final float MAX_STEP_SECONDS = 0.1f;
+
+    private final DetectedARPlanes detectedPlanes;
+
+    @Nullable
+    private Plane slidingPlane = null;
+    private boolean isSliding = false;
+    private final Vector3 planePoint = new Vector3();
+    private final Vector3 planeNormal = new Vector3();
+    private final Vector3 position = new Vector3();
+    private final Vector3 velocity = new Vector3();
+    private final Vector3 screenPosition = new Vector3();
+    private final Vector3 screenVelocity = new Vector3();
+    private final Vector3 releasePoint = new Vector3();
+    private final Vector3 sampledPoint = new Vector3();
+
+    @Nullable
+    private InteractionListener listener = null;
+    @Nullable
+    private BaseSurroundingsListener surroundingsListener = null;
+
+    public FlingController(BaseTransformableNode transformableNode, BaseGestureRecognizer<FlingGesture> gestureRecognizer, DetectedARPlanes detectedARPlanes) {
+        super(transformableNode, gestureRecognizer);
+        this.detectedPlanes = detectedARPlanes;
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Implementation of interface TransformationController
+    // ---------------------------------------------------------------------------------------
+
+    @Override
+    public TransformationController<FlingGesture> copyFor(@NonNull BaseTransformableNode transformableNode) {
+        FlingController copy = new FlingController(transformableNode, getGestureRecognizer(), detectedPlanes);
+        copy.settings.from(settings);
+        copy.setEnabled(isEnabled());
+        return copy;
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Implementation of interface InteractionController
+    // ---------------------------------------------------------------------------------------
+
+    @Override
+    public void setListener(@Nullable InteractionListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    @Nullable
+    public InteractionListener getListener() {
+        return listener;
+    }
+
+    @Override
+    public void setSurroundingsListener(@Nullable BaseSurroundingsListener listener) {
+        this.surroundingsListener = listener;
+    }
+
+    @Override
+    @Nullable
+    public BaseSurroundingsListener getSurroundingsListener() {
+        return surroundingsListener;
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Other
+    // ---------------------------------------------------------------------------------------
+
+    /** Returns true while the node is sliding after a fling. */
+    public boolean isSliding() {
+        return isSliding;
+    }
+
+    @Override
+    public void onUpdated(Node node, FrameTime frameTime) {
+        Plane plane = slidingPlane;
+        if (!isSliding || plane == null) {
+            sleep();
+            return;
+        }
+
+        if (plane.getTrackingState() != TrackingState.TRACKING) {
+            stopSliding();
+            return;
+        }
+
+        float dt = Math.min(frameTime.getDeltaSeconds(), MAX_STEP_SECONDS);
+        float friction = settings.friction;
+        float decay = friction > 0.0f ? (float) Math.exp(-friction * dt) : 1.0f;
+        // Distance covered during the step by a velocity decaying exponentially.
+        float travel = friction > 0.0f ? (1.0f - decay) / friction : dt;
+
+        float x = position.x + velocity.x * travel;
+        float y = position.y + velocity.y * travel;
+        float z = position.z + velocity.z * travel;
+
+        if (!detectedPlanes.floorPlanes.isFirstPlane(plane)
+                && !detectedPlanes.getPolygonCache().isPointInPolygon(plane, x, y, z)) {
+            stopSliding();
+            return;
+        }
+
+        position.set(x, y, z);
+        velocity.set(velocity.x * decay, velocity.y * decay, velocity.z * decay);
+        getTransformableNode().setWorldPosition(position);
+
+        if (listener != null) {
+            listener.onMovementUpdate(getTransformableNode());
+        }
+
+        if (velocity.lengthSquared() < settings.restSpeed * settings.restSpeed) {
+            stopSliding();
+        }
+    }
+
+    @Override
+    public boolean canStartTransformation(FlingGesture gesture) {
+        Node targetNode = gesture.getTargetNode();
+        if (targetNode == null) {
+            return false;
+        }
+
+        BaseTransformableNode transformableNode = getTransformableNode();
+        if (targetNode != transformableNode && !targetNode.isDescendantOf(transformableNode)) {
+            return false;
+        }
+
+        if (!transformableNode.isSelected()) {
+            return false;
+        }
+
+        // Flinging a node of a group would break the group apart.
+        if (transformableNode.getTransformationSystem().getGroupTransformController().isGrouped(transformableNode)) {
+            return false;
+        }
+
+        Scene scene = transformableNode.getScene();
+        if (scene == null) {
+            return false;
+        }
+
+        position.set(transformableNode.getWorldPosition());
+        Plane plane = findSupportingPlane(position);
+        if (plane == null) {
+            return false;
+        }
+
+        // Measure the world velocity by intersecting the plane with the rays under the release point
+        // and under the point the finger would have reached a moment later.
+        gesture.getReleasePosition(screenPosition);
+        gesture.getReleaseVelocity(screenVelocity);
+        Camera camera = scene.getCamera();
+        Ray releaseRay = camera.screenPointToRay(screenPosition.x, screenPosition.y);
+        Ray sampledRay = camera.screenPointToRay(
+                screenPosition.x + screenVelocity.x * VELOCITY_SAMPLING_SECONDS,
+                screenPosition.y + screenVelocity.y * VELOCITY_SAMPLING_SECONDS);
+        if (!PlaneIntersection.intersect(releaseRay.getOrigin(), releaseRay.getDirection(), planePoint, planeNormal, releasePoint)
+                || !PlaneIntersection.intersect(sampledRay.getOrigin(), sampledRay.getDirection(), planePoint, planeNormal, sampledPoint)) {
+            return false;
+        }
+
+        velocity.set(Vector3.subtract(sampledPoint, releasePoint).scaled(1.0f / VELOCITY_SAMPLING_SECONDS));
+        float speed = velocity.length();
+        if (speed < settings.restSpeed) {
+            return false;
+        }
+        if (speed > settings.maxSpeed) {
+            velocity.set(velocity.scaled(settings.maxSpeed / speed));
+        }
+
+        slidingPlane = plane;
+        isSliding = true;
+        wakeUp();
+
+        // The fling anchors the node once, instead of the drag it takes over.
+        List<BaseTransformationController<?>> controllers = transformableNode.getTransformationControllers();
+        for (int i = 0; i < controllers.size(); i++) {
+            if (controllers.get(i) instanceof TranslationControllerWithPlaneChange) {
+                ((TranslationControllerWithPlaneChange) controllers.get(i)).cancelPendingAnchor();
+            }
+        }
+
+        if (listener != null) {
+            listener.onMovementStart(transformableNode);
+        }
+
+        return true;
+    }
+
+    @Override
+    public void onContinueTransformation(FlingGesture gesture) {
+        // A fling has no updates, the motion is simulated every frame.
+    }
+
+    @Override
+    public void onEndTransformation(FlingGesture gesture) {
+        if (!isSliding) {
+            return;
+        }
+
+        isSliding = false;
+        Plane plane = slidingPlane;
+        slidingPlane = null;
+
+        AnchorManager anchorManager = getTransformableNode().getTransformationSystem().getAnchorManager();
+        if (plane != null && anchorManager.isManaged(getTransformableNode())) {
+            // The anchor node is shared, the node joins the cluster it ended in instead.
+            anchorManager.reanchor(getTransformableNode(), plane);
+        } else if (plane != null && plane.getTrackingState() == TrackingState.TRACKING && getTransformableNode().getScene() != null) {
+            Anchor newAnchor = plane.createAnchor(Pose.makeTranslation(position.x, position.y, position.z));
+            getTransformableNode().getTransformationSystem().getAnchorReusePolicy().onAnchorCreated(newAnchor, plane);
+
+            AnchorNode anchorNode = getAnchorNodeOrDie();
+
+            Anchor oldAnchor = anchorNode.getAnchor();
+            if (oldAnchor != null) {
+                getTransformableNode().getTransformationSystem().releaseAnchor(oldAnchor);
+            }
+
+            // get position and rotation before replacing the anchor
+            BaseTransformableNode transformableNode = getTransformableNode();
+            Vector3 worldPosition = transformableNode.getWorldPosition();
+            Quaternion worldRotation = transformableNode.getWorldRotation();
+
+            anchorNode.setAnchor(newAnchor);
+
+            // set position and rotation
+            transformableNode.setWorldPosition(worldPosition);
+            transformableNode.setWorldRotation(worldRotation);
+        }
+
+        if (listener != null) {
+            listener.onMovementEnd(getTransformableNode());
+        }
+    }
+
+    /** Finishes the fling gesture, which anchors the node from {@link #onEndTransformation}. */
+    private void stopSliding() {
+        FlingGesture gesture = getActiveGesture();
+        if (gesture != null) {
+            gesture.stop();
+        } else {
+            isSliding = false;
+            slidingPlane = null;
+        }
+        sleep();
+    }
+
+    /**
+     * Returns the tracked floor plane closest to {@code point} and stores its geometry, or null if
+     * the point isn't on a floor plane.
+     */
+    @Nullable
+    private Plane findSupportingPlane(Vector3 point) {
+        Plane closestPlane = null;
+        float closestDistance = PLANE_DISTANCE_TOLERANCE;
+
+        List<Plane> planes = detectedPlanes.floorPlanes.getPlanes();
+        for (int i = 0; i < planes.size(); i++) {
+            Plane plane = planes.get(i);
+            if (plane.getTrackingState() != TrackingState.TRACKING) {
+                continue;
+            }
+
+            Pose centerPose = plane.getCenterPose();
+            float[] yAxis = centerPose.getYAxis();
+            float distance = Math.abs(
+                    (point.x - centerPose.tx()) * yAxis[0]
+                            + (point.y - centerPose.ty()) * yAxis[1]
+                            + (point.z - centerPose.tz()) * yAxis[2]);
+            if (distance <= closestDistance) {
+                closestDistance = distance;
+                closestPlane = plane;
+                planePoint.set(centerPose.tx(), centerPose.ty(), centerPose.tz());
+                planeNormal.set(yAxis[0], yAxis[1], yAxis[2]);
+            }
+        }
+
+        return closestPlane;
+    }
+
+    @NonNull
+    private AnchorNode getAnchorNodeOrDie() {
+        AnchorNode managedAnchorNode = getTransformableNode().getTransformationSystem().getAnchorManager().getAnchorNode(getTransformableNode());
+        if (managedAnchorNode != null) {
+            return managedAnchorNode;
+        }
+
+        Node parent = getTransformableNode().getParent();
+        if (!(parent instanceof AnchorNode)) {
+            throw new IllegalStateException("TransformableNode must have an AnchorNode as a parent.");
+        }
+
+        return (AnchorNode) parent;
+    }
+}
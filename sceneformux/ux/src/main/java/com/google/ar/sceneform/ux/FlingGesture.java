@@ -0,0 +1,229 @@
+/*
+ * Copyright 2018 Google LLC All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.ux;
+
+import android.util.Log;
+import android.view.MotionEvent;
+import com.google.ar.sceneform.HitTestResult;
+import com.google.ar.sceneform.math.Vector3;
+
+/**
+ * Gesture for when the user releases a single finger drag while it is still moving fast.
+ *
+ * <p>The gesture starts when the finger is lifted and keeps running while the released momentum is
+ * consumed, it finishes when the controller handling it comes to rest or when the user touches the
+ * screen again. Unlike {@link DragGesture}, it never retains its pointer so that both can follow the
+ * same finger.
+ */
+public class FlingGesture extends BaseGesture<FlingGesture> {
+  private static final String TAG = FlingGesture.class.getSimpleName();
+
+  /** Interface definition for callbacks to be invoked by a {@link FlingGesture}. */
+  public interface OnGestureEventListener
+      extends BaseGesture.OnGestureEventListener<FlingGesture> {}
+
+  private final Vector3 startPosition = new Vector3();
+  private final Vector3 releasePosition = new Vector3();
+  private final Vector3 releaseVelocity = new Vector3();
+  private final VelocityEstimator velocityEstimator = new VelocityEstimator();
+  private final float slopPixelsSquared;
+  private final float minVelocityPixelsSquared;
+  private int pointerId = MotionEvent.INVALID_POINTER_ID;
+
+  private static final float SLOP_INCHES = 0.1f;
+  private static final float MIN_VELOCITY_INCHES_PER_SECOND = 1.5f;
+  private static final boolean FLING_GESTURE_DEBUG = false;
+
+  public FlingGesture(
+      GesturePointersUtility gesturePointersUtility,
+      HitTestResult hitTestResult,
+      MotionEvent motionEvent) {
+    this(gesturePointersUtility);
+    init(hitTestResult, motionEvent);
+  }
+
+  /** Creates an uninitialized gesture for the pool of {@link FlingGestureRecognizer}. */
+  FlingGesture(GesturePointersUtility gesturePointersUtility) {
+    super(gesturePointersUtility);
+
+    float slopPixels = gesturePointersUtility.inchesToPixels(SLOP_INCHES);
+    slopPixelsSquared = slopPixels * slopPixels;
+    float minVelocityPixels = gesturePointersUtility.inchesToPixels(MIN_VELOCITY_INCHES_PER_SECOND);
+    minVelocityPixelsSquared = minVelocityPixels * minVelocityPixels;
+  }
+
+  /** Starts tracking the pointer that went down in the given motion event. */
+  void init(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    pointerId = motionEvent.getPointerId(motionEvent.getActionIndex());
+    GesturePointersUtility.motionEventToPosition(motionEvent, pointerId, startPosition);
+    releasePosition.set(startPosition);
+    releaseVelocity.setZero();
+    velocityEstimator.clear();
+    velocityEstimator.addSample(motionEvent.getEventTime(), startPosition.x, startPosition.y);
+    targetNode = hitTestResult.getNode();
+    if (FLING_GESTURE_DEBUG) {
+      debugLog("Created: " + pointerId);
+    }
+  }
+
+  /** Writes the screen position at which the finger was lifted into {@code outPosition}. */
+  public void getReleasePosition(Vector3 outPosition) {
+    checkNotRecycled();
+    outPosition.set(releasePosition);
+  }
+
+  /** Writes the screen velocity of the finger when lifted, in pixels per second. */
+  public void getReleaseVelocity(Vector3 outVelocity) {
+    checkNotRecycled();
+    outVelocity.set(releaseVelocity);
+  }
+
+  /**
+   * Finishes the gesture once the momentum it started has been consumed. Called by the controller
+   * handling the gesture, the recognizer cannot know when that happens.
+   */
+  void stop() {
+    if (hasStarted() && !hasFinished()) {
+      complete();
+    }
+  }
+
+  @Override
+  protected boolean canStart(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    int actionId = motionEvent.getPointerId(motionEvent.getActionIndex());
+    int action = motionEvent.getActionMasked();
+
+    // A second finger turns the motion into a pinch or a twist.
+    if (action == MotionEvent.ACTION_CANCEL || action == MotionEvent.ACTION_POINTER_DOWN) {
+      cancel();
+      return false;
+    }
+
+    int index = motionEvent.findPointerIndex(pointerId);
+    if (index < 0) {
+      cancel();
+      return false;
+    }
+
+    if (action == MotionEvent.ACTION_MOVE) {
+      addVelocitySamples(motionEvent, index);
+      return false;
+    }
+
+    if (actionId != pointerId
+        || (action != MotionEvent.ACTION_UP && action != MotionEvent.ACTION_POINTER_UP)) {
+      return false;
+    }
+
+    velocityEstimator.addSample(
+        motionEvent.getEventTime(), motionEvent.getX(index), motionEvent.getY(index));
+    float dx = motionEvent.getX(index) - startPosition.x;
+    float dy = motionEvent.getY(index) - startPosition.y;
+    float velocityX = velocityEstimator.getVelocityX();
+    float velocityY = velocityEstimator.getVelocityY();
+    if (dx * dx + dy * dy < slopPixelsSquared
+        || velocityX * velocityX + velocityY * velocityY < minVelocityPixelsSquared) {
+      cancel();
+      return false;
+    }
+
+    return true;
+  }
+
+  @Override
+  protected void onStart(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    debugLog("Started: " + pointerId);
+
+    GesturePointersUtility.motionEventToPosition(motionEvent, pointerId, releasePosition);
+    velocityEstimator.getVelocity(releaseVelocity);
+  }
+
+  @Override
+  protected boolean updateGesture(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    if (hasFinished()) {
+      // Stopped by its controller, waiting to be removed by the recognizer.
+      return false;
+    }
+
+    // Touching the screen again catches whatever is still moving.
+    int action = motionEvent.getActionMasked();
+    if (action == MotionEvent.ACTION_DOWN || action == MotionEvent.ACTION_POINTER_DOWN) {
+      complete();
+    } else if (action == MotionEvent.ACTION_CANCEL) {
+      cancel();
+    }
+
+    return false;
+  }
+
+  @Override
+  protected void reset() {
+    super.reset();
+    pointerId = MotionEvent.INVALID_POINTER_ID;
+    velocityEstimator.clear();
+    startPosition.setZero();
+    releasePosition.setZero();
+    releaseVelocity.setZero();
+  }
+
+  @Override
+  protected void onCancel() {
+    debugLog("Cancelled: " + pointerId);
+  }
+
+  @Override
+  protected void onFinish() {
+    debugLog("Finished: " + pointerId);
+  }
+
+  @Override
+  void writeState(GestureState state) {
+    float[] values = state.values;
+    values[0] = releasePosition.x;
+    values[1] = releasePosition.y;
+    values[2] = releaseVelocity.x;
+    values[3] = releaseVelocity.y;
+  }
+
+  @Override
+  void readState(GestureState state) {
+    float[] values = state.values;
+    releasePosition.set(values[0], values[1], 0.0f);
+    releaseVelocity.set(values[2], values[3], 0.0f);
+  }
+
+  @Override
+  protected FlingGesture getSelf() {
+    return this;
+  }
+
+  private void addVelocitySamples(MotionEvent motionEvent, int pointerIndex) {
+    for (int h = 0; h < motionEvent.getHistorySize(); h++) {
+      velocityEstimator.addSample(
+          motionEvent.getHistoricalEventTime(h),
+          motionEvent.getHistoricalX(pointerIndex, h),
+          motionEvent.getHistoricalY(pointerIndex, h));
+    }
+    velocityEstimator.addSample(
+        motionEvent.getEventTime(), motionEvent.getX(pointerIndex), motionEvent.getY(pointerIndex));
+  }
+
+  private static void debugLog(String log) {
+    if (FLING_GESTURE_DEBUG) {
+      Log.d(TAG, "FlingGesture:[" + log + "]");
+    }
+  }
+}
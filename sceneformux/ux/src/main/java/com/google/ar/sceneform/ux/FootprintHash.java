@@ -0,0 +1,494 @@
+/*
+ * Copyright 2018 Google LLC All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.ux;
+
+import androidx.annotation.Nullable;
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.collision.Box;
+import com.google.ar.sceneform.collision.CollisionShape;
+import com.google.ar.sceneform.collision.Sphere;
+import com.google.ar.sceneform.math.Quaternion;
+import com.google.ar.sceneform.math.Vector3;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * World-space spatial hash of the bounds of the active {@link BaseTransformableNode}s of a {@link
+ * TransformationSystem}, used to find the nodes around a point without visiting every node.
+ *
+ * <p>The axis aligned world bounds of the collision shape of every node are binned into square
+ * cells of {@link #getCellSize()} on the horizontal plane, stored in a hash map of the cells that
+ * hold nodes. A query only visits the cells it overlaps, so its cost depends on the density of the
+ * nodes around it, not on their count.
+ *
+ * <p>Nodes moved by their own transform, or by a transformable ancestor, are binned again lazily
+ * on the next query. Nodes only moved by another ancestor, typically an anchor re-posed by every
+ * tracking update, are merely marked stale: a query refreshes the stale nodes of the cells it
+ * visits, and a few more in turn, so anchor drift doesn't cost a pass over every node. Nodes are
+ * binned with a margin, so that this drift rarely moves them to other cells.
+ */
+public class FootprintHash {
+  public static final float DEFAULT_CELL_SIZE_METERS = 0.5f;
+
+  private static final int INITIAL_CAPACITY = 16;
+  // Margin added around the bounds of a node when it is binned.
+  private static final float BIN_MARGIN_METERS = 0.05f;
+  // Number of slots checked for staleness in turn by each refresh.
+  private static final int STALE_SWEEP_SLOTS = 8;
+
+  /** Slots of the nodes binned in a cell. */
+  private static class Cell {
+    int[] slots = new int[4];
+    int size = 0;
+
+    void add(int slot) {
+      if (size == slots.length) {
+        slots = Arrays.copyOf(slots, size * 2);
+      }
+      slots[size++] = slot;
+    }
+
+    void remove(int slot) {
+      for (int i = 0; i < size; i++) {
+        if (slots[i] == slot) {
+          slots[i] = slots[--size];
+          return;
+        }
+      }
+    }
+  }
+
+  private float cellSize = DEFAULT_CELL_SIZE_METERS;
+  private final HashMap<Long, Cell> cells = new HashMap<>();
+
+  // Per node data, indexed by the slot of the node. Free slots are reused.
+  private final ArrayList<BaseTransformableNode> nodes = new ArrayList<>();
+  private int[] freeSlots = new int[INITIAL_CAPACITY];
+  private int freeSlotCount = 0;
+  private int nodeCount = 0;
+  private CollisionShape[] boundedShapes = new CollisionShape[INITIAL_CAPACITY];
+  private float[] localBounds = new float[INITIAL_CAPACITY * 6];
+  private float[] bounds = new float[INITIAL_CAPACITY * 6];
+  // Cells covered by each node, as min column, min row, max column and max row.
+  private int[] cellRanges = new int[INITIAL_CAPACITY * 4];
+  private boolean[] isBinned = new boolean[INITIAL_CAPACITY];
+  private boolean[] isDirty = new boolean[INITIAL_CAPACITY];
+  private int[] dirtySlots = new int[INITIAL_CAPACITY];
+  private int dirtyCount = 0;
+  private boolean[] isStale = new boolean[INITIAL_CAPACITY];
+  private int staleSweepSlot = 0;
+  private int[] queryStamps = new int[INITIAL_CAPACITY];
+  private int queryStamp = 0;
+
+  private final float[] matrix = new float[16];
+  private final float[] shapeBounds = new float[6];
+
+  private final Node.TransformChangedListener transformChangedListener =
+      (node, originatingNode) -> {
+        if (!(node instanceof BaseTransformableNode)) {
+          return;
+        }
+
+        int slot = ((BaseTransformableNode) node).footprintSlot;
+        if (originatingNode == node
+            || (originatingNode instanceof BaseTransformableNode
+                && ((BaseTransformableNode) originatingNode).footprintSlot >= 0)) {
+          markDirty(slot);
+        } else if (slot >= 0) {
+          isStale[slot] = true;
+        }
+      };
+
+  /**
+   * Sets the size in meters of the cells, {@link #DEFAULT_CELL_SIZE_METERS} by default. Should be
+   * close to the size of the nodes. Values smaller than or equal to 0 are ignored.
+   */
+  public void setCellSize(float cellSize) {
+    if (cellSize <= 0.0f) {
+      return;
+    }
+
+    this.cellSize = cellSize;
+    cells.clear();
+    for (int slot = 0; slot < nodes.size(); slot++) {
+      isBinned[slot] = false;
+      if (nodes.get(slot) != null) {
+        markDirty(slot);
+      }
+    }
+  }
+
+  public float getCellSize() {
+    return cellSize;
+  }
+
+  /** Returns the number of nodes in the hash. */
+  public int getNodeCount() {
+    return nodeCount;
+  }
+
+  void add(BaseTransformableNode node) {
+    if (node.footprintSlot >= 0) {
+      return;
+    }
+
+    int slot;
+    if (freeSlotCount > 0) {
+      slot = freeSlots[--freeSlotCount];
+      nodes.set(slot, node);
+    } else {
+      slot = nodes.size();
+      ensureCapacity(slot + 1);
+      nodes.add(node);
+    }
+    node.footprintSlot = slot;
+    nodeCount++;
+
+    boundedShapes[slot] = null;
+    isBinned[slot] = false;
+    markDirty(slot);
+    node.addTransformChangedListener(transformChangedListener);
+  }
+
+  void remove(BaseTransformableNode node) {
+    int slot = node.footprintSlot;
+    if (slot < 0) {
+      return;
+    }
+
+    node.removeTransformChangedListener(transformChangedListener);
+    unbin(slot);
+    isStale[slot] = false;
+    nodes.set(slot, null);
+    boundedShapes[slot] = null;
+    node.footprintSlot = -1;
+    nodeCount--;
+
+    if (freeSlotCount == freeSlots.length) {
+      freeSlots = Arrays.copyOf(freeSlots, freeSlotCount * 2);
+    }
+    freeSlots[freeSlotCount++] = slot;
+  }
+
+  /**
+   * Copies the world bounds of the node into {@code outBounds}, as minimum x, y and z followed by
+   * maximum x, y and z.
+   *
+   * @return false if the node isn't in the hash
+   */
+  public boolean getBounds(BaseTransformableNode node, float[] outBounds) {
+    int slot = node.footprintSlot;
+    if (slot < 0) {
+      return false;
+    }
+
+    refresh();
+    if (isStale[slot]) {
+      refreshSlot(slot);
+    }
+    System.arraycopy(bounds, slot * 6, outBounds, 0, 6);
+    return true;
+  }
+
+  /**
+   * Adds to {@code outNodes} the nodes whose world bounds overlap the box.
+   *
+   * @param excludedNode a node that is never added, usually the node the query is made for
+   * @return the number of nodes added
+   */
+  public int query(
+      float minX,
+      float minY,
+      float minZ,
+      float maxX,
+      float maxY,
+      float maxZ,
+      @Nullable BaseTransformableNode excludedNode,
+      List<? super BaseTransformableNode> outNodes) {
+    refresh();
+    nextQueryStamp();
+
+    int count = 0;
+    int maxColumn = cellOf(maxX);
+    int maxRow = cellOf(maxZ);
+    for (int row = cellOf(minZ); row <= maxRow; row++) {
+      for (int column = cellOf(minX); column <= maxColumn; column++) {
+        Cell cell = cells.get(keyOf(column, row));
+        if (cell == null) {
+          continue;
+        }
+
+        for (int i = 0; i < cell.size; i++) {
+          int slot = cell.slots[i];
+          if (queryStamps[slot] == queryStamp) {
+            continue;
+          }
+          queryStamps[slot] = queryStamp;
+
+          if (isStale[slot]) {
+            refreshSlot(slot);
+            // Binning again swaps the last slot of the cell in place of this one when the node
+            // leaves the cell, visit it next.
+            if (cell.slots[i] != slot) {
+              i--;
+            }
+          }
+
+          BaseTransformableNode node = nodes.get(slot);
+          int offset = slot * 6;
+          if (node == excludedNode
+              || bounds[offset] > maxX
+              || bounds[offset + 1] > maxY
+              || bounds[offset + 2] > maxZ
+              || bounds[offset + 3] < minX
+              || bounds[offset + 4] < minY
+              || bounds[offset + 5] < minZ) {
+            continue;
+          }
+
+          outNodes.add(node);
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Computes the world bounds the node would have at the given pose, with its current world scale,
+   * as minimum x, y and z followed by maximum x, y and z.
+   */
+  public void computeBounds(
+      BaseTransformableNode node, Vector3 position, Quaternion rotation, float[] outBounds) {
+    Vector3 scale = node.getWorldScale();
+    float x = rotation.x;
+    float y = rotation.y;
+    float z = rotation.z;
+    float w = rotation.w;
+    matrix[0] = (1.0f - 2.0f * (y * y + z * z)) * scale.x;
+    matrix[1] = 2.0f * (x * y + z * w) * scale.x;
+    matrix[2] = 2.0f * (x * z - y * w) * scale.x;
+    matrix[4] = 2.0f * (x * y - z * w) * scale.y;
+    matrix[5] = (1.0f - 2.0f * (x * x + z * z)) * scale.y;
+    matrix[6] = 2.0f * (y * z + x * w) * scale.y;
+    matrix[8] = 2.0f * (x * z + y * w) * scale.z;
+    matrix[9] = 2.0f * (y * z - x * w) * scale.z;
+    matrix[10] = (1.0f - 2.0f * (x * x + y * y)) * scale.z;
+    matrix[12] = position.x;
+    matrix[13] = position.y;
+    matrix[14] = position.z;
+
+    computeLocalBounds(node.getCollisionShape(), shapeBounds, 0);
+    transformBounds(matrix, shapeBounds, 0, outBounds, 0);
+  }
+
+  /**
+   * Updates the bounds and the cells of the nodes whose transform changed, and of a few of the
+   * stale nodes.
+   */
+  private void refresh() {
+    for (int i = 0; i < dirtyCount; i++) {
+      int slot = dirtySlots[i];
+      isDirty[slot] = false;
+      refreshSlot(slot);
+    }
+    dirtyCount = 0;
+
+    int slotCount = nodes.size();
+    for (int i = 0; i < STALE_SWEEP_SLOTS && i < slotCount; i++) {
+      if (staleSweepSlot >= slotCount) {
+        staleSweepSlot = 0;
+      }
+      if (isStale[staleSweepSlot]) {
+        refreshSlot(staleSweepSlot);
+      }
+      staleSweepSlot++;
+    }
+  }
+
+  private void refreshSlot(int slot) {
+    isStale[slot] = false;
+    BaseTransformableNode node = nodes.get(slot);
+    if (node == null) {
+      return;
+    }
+
+    CollisionShape shape = node.getCollisionShape();
+    if (shape != boundedShapes[slot]) {
+      boundedShapes[slot] = shape;
+      computeLocalBounds(shape, localBounds, slot * 6);
+    }
+    transformBounds(node.getWorldModelMatrix().data, localBounds, slot * 6, bounds, slot * 6);
+    bin(slot);
+  }
+
+  /** Bins the node into the cells of its bounds and margin, unless it is still within its cells. */
+  private void bin(int slot) {
+    int offset = slot * 6;
+    int rangeOffset = slot * 4;
+    if (isBinned[slot]
+        && cellOf(bounds[offset]) >= cellRanges[rangeOffset]
+        && cellOf(bounds[offset + 2]) >= cellRanges[rangeOffset + 1]
+        && cellOf(bounds[offset + 3]) <= cellRanges[rangeOffset + 2]
+        && cellOf(bounds[offset + 5]) <= cellRanges[rangeOffset + 3]) {
+      return;
+    }
+
+    int minColumn = cellOf(bounds[offset] - BIN_MARGIN_METERS);
+    int minRow = cellOf(bounds[offset + 2] - BIN_MARGIN_METERS);
+    int maxColumn = cellOf(bounds[offset + 3] + BIN_MARGIN_METERS);
+    int maxRow = cellOf(bounds[offset + 5] + BIN_MARGIN_METERS);
+
+    unbin(slot);
+    for (int row = minRow; row <= maxRow; row++) {
+      for (int column = minColumn; column <= maxColumn; column++) {
+        long key = keyOf(column, row);
+        Cell cell = cells.get(key);
+        if (cell == null) {
+          cell = new Cell();
+          cells.put(key, cell);
+        }
+        cell.add(slot);
+      }
+    }
+
+    cellRanges[rangeOffset] = minColumn;
+    cellRanges[rangeOffset + 1] = minRow;
+    cellRanges[rangeOffset + 2] = maxColumn;
+    cellRanges[rangeOffset + 3] = maxRow;
+    isBinned[slot] = true;
+  }
+
+  private void unbin(int slot) {
+    if (!isBinned[slot]) {
+      return;
+    }
+
+    int rangeOffset = slot * 4;
+    for (int row = cellRanges[rangeOffset + 1]; row <= cellRanges[rangeOffset + 3]; row++) {
+      for (int column = cellRanges[rangeOffset]; column <= cellRanges[rangeOffset + 2]; column++) {
+        long key = keyOf(column, row);
+        Cell cell = cells.get(key);
+        if (cell == null) {
+          continue;
+        }
+        cell.remove(slot);
+        if (cell.size == 0) {
+          cells.remove(key);
+        }
+      }
+    }
+    isBinned[slot] = false;
+  }
+
+  private void markDirty(int slot) {
+    if (slot < 0 || isDirty[slot]) {
+      return;
+    }
+
+    isDirty[slot] = true;
+    if (dirtyCount == dirtySlots.length) {
+      dirtySlots = Arrays.copyOf(dirtySlots, dirtyCount * 2);
+    }
+    dirtySlots[dirtyCount++] = slot;
+  }
+
+  private int cellOf(float coordinate) {
+    return (int) Math.floor(coordinate / cellSize);
+  }
+
+  private static long keyOf(int column, int row) {
+    return ((long) column << 32) | (row & 0xFFFFFFFFL);
+  }
+
+  /** Stores the center and the half extents of the shape, in the space of its node. */
+  private static void computeLocalBounds(
+      @Nullable CollisionShape shape, float[] outBounds, int offset) {
+    Vector3 center;
+    Vector3 extents;
+    if (shape instanceof Box) {
+      Box box = (Box) shape;
+      center = box.getCenter();
+      extents = box.getExtents();
+    } else if (shape instanceof Sphere) {
+      Sphere sphere = (Sphere) shape;
+      center = sphere.getCenter();
+      float radius = sphere.getRadius();
+      extents = new Vector3(radius, radius, radius);
+    } else {
+      center = Vector3.zero();
+      extents = Vector3.zero();
+    }
+
+    outBounds[offset] = center.x;
+    outBounds[offset + 1] = center.y;
+    outBounds[offset + 2] = center.z;
+    outBounds[offset + 3] = extents.x;
+    outBounds[offset + 4] = extents.y;
+    outBounds[offset + 5] = extents.z;
+  }
+
+  /** Transforms local center and half extents into axis aligned world bounds. */
+  private static void transformBounds(
+      float[] model, float[] local, int localOffset, float[] outBounds, int offset) {
+    float cx = local[localOffset];
+    float cy = local[localOffset + 1];
+    float cz = local[localOffset + 2];
+    float ex = local[localOffset + 3];
+    float ey = local[localOffset + 4];
+    float ez = local[localOffset + 5];
+
+    float worldX = model[0] * cx + model[4] * cy + model[8] * cz + model[12];
+    float worldY = model[1] * cx + model[5] * cy + model[9] * cz + model[13];
+    float worldZ = model[2] * cx + model[6] * cy + model[10] * cz + model[14];
+    float halfX = Math.abs(model[0]) * ex + Math.abs(model[4]) * ey + Math.abs(model[8]) * ez;
+    float halfY = Math.abs(model[1]) * ex + Math.abs(model[5]) * ey + Math.abs(model[9]) * ez;
+    float halfZ = Math.abs(model[2]) * ex + Math.abs(model[6]) * ey + Math.abs(model[10]) * ez;
+
+    outBounds[offset] = worldX - halfX;
+    outBounds[offset + 1] = worldY - halfY;
+    outBounds[offset + 2] = worldZ - halfZ;
+    outBounds[offset + 3] = worldX + halfX;
+    outBounds[offset + 4] = worldY + halfY;
+    outBounds[offset + 5] = worldZ + halfZ;
+  }
+
+  private void nextQueryStamp() {
+    queryStamp++;
+    if (queryStamp == Integer.MAX_VALUE) {
+      Arrays.fill(queryStamps, 0);
+      queryStamp = 1;
+    }
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (isDirty.length >= capacity) {
+      return;
+    }
+
+    int newCapacity = Math.max(capacity, isDirty.length * 2);
+    boundedShapes = Arrays.copyOf(boundedShapes, newCapacity);
+    localBounds = Arrays.copyOf(localBounds, newCapacity * 6);
+    bounds = Arrays.copyOf(bounds, newCapacity * 6);
+    cellRanges = Arrays.copyOf(cellRanges, newCapacity * 4);
+    isBinned = Arrays.copyOf(isBinned, newCapacity);
+    isDirty = Arrays.copyOf(isDirty, newCapacity);
+    isStale = Arrays.copyOf(isStale, newCapacity);
+    queryStamps = Arrays.copyOf(queryStamps, newCapacity);
+  }
+}
@@ -18,24 +18,27 @@ package com.google.ar.sceneform.ux;
 import androidx.annotation.Nullable;
 import com.google.ar.sceneform.Node;
 import com.google.ar.sceneform.rendering.ModelRenderable;
+import java.util.ArrayList;
 
 /**
  * Visualizes that a {@link BaseTransformableNode} is selected by rendering a footprint for the
- * selected node.
+ * selected node. Each of the selected nodes gets its own footprint when several are selected.
  */
 public class FootprintSelectionVisualizer implements SelectionVisualizer {
-  private final Node footprintNode;
+  private final ArrayList<Node> footprintNodes = new ArrayList<>();
   @Nullable private ModelRenderable footprintRenderable;
 
   public FootprintSelectionVisualizer() {
-    footprintNode = new Node();
+    footprintNodes.add(new Node());
   }
 
   public void setFootprintRenderable(ModelRenderable renderable) {
     ModelRenderable copyRenderable = renderable.makeCopy();
-    footprintNode.setRenderable(copyRenderable);
     copyRenderable.setCollisionShape(null);
     footprintRenderable = copyRenderable;
+    for (int i = 0; i < footprintNodes.size(); i++) {
+      footprintNodes.get(i).setRenderable(copyRenderable);
+    }
   }
 
   @Nullable
@@ -45,11 +48,28 @@ public class FootprintSelectionVisualizer implements SelectionVisualizer {
 
   @Override
   public void applySelectionVisual(BaseTransformableNode node) {
+    for (int i = 0; i < footprintNodes.size(); i++) {
+      Node footprintNode = footprintNodes.get(i);
+      if (footprintNode.getParent() == null) {
+        footprintNode.setParent(node);
+        return;
+      }
+    }
+
+    Node footprintNode = new Node();
+    footprintNode.setRenderable(footprintRenderable);
+    footprintNodes.add(footprintNode);
     footprintNode.setParent(node);
   }
 
   @Override
   public void removeSelectionVisual(BaseTransformableNode node) {
-    footprintNode.setParent(null);
+    for (int i = 0; i < footprintNodes.size(); i++) {
+      Node footprintNode = footprintNodes.get(i);
+      if (footprintNode.getParent() == node) {
+        footprintNode.setParent(null);
+        return;
+      }
+    }
   }
 }
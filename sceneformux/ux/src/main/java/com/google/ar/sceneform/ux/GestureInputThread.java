@@ -0,0 +1,380 @@
+/*
+ * Copyright 2018 Google LLC All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.ux;
+
+import android.os.Process;
+import android.view.MotionEvent;
+import androidx.annotation.Nullable;
+import com.google.ar.sceneform.HitTestResult;
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Runs the gesture recognizers of a {@link TransformationSystem} on a dedicated thread, so that
+ * classifying touch events doesn't compete with the per-frame work of the UI thread.
+ *
+ * <p>Three single-producer/single-consumer rings connect the threads, none of them takes a lock:
+ *
+ * <ul>
+ *   <li>Touch events are copied into the sample ring by {@link #postTouch} and classified by the
+ *       recognizers on the input thread.
+ *   <li>The recognizers don't notify their listeners on the input thread. Each gesture that starts,
+ *       updates or finishes is published into the intent ring together with a {@link GestureState}
+ *       snapshot of its values. {@link #dispatchIntents()} drains the ring on the frame thread and
+ *       notifies the listeners with a frame copy of the gesture, so that controllers never read a
+ *       gesture the input thread is modifying.
+ *   <li>Frame copies cancelled or completed by their listeners, and the timeout checks, are sent
+ *       back to the input thread through the command ring.
+ * </ul>
+ */
+final class GestureInputThread implements Runnable {
+  static final int STARTED = 0;
+  static final int UPDATED = 1;
+  static final int FINISHED = 2;
+
+  private static final int COMMAND_CANCEL = 0;
+  private static final int COMMAND_COMPLETE = 1;
+  private static final int COMMAND_CHECK_TIMEOUTS = 2;
+
+  private static final int SAMPLE_CAPACITY = 128;
+  private static final int INTENT_CAPACITY = 256;
+  private static final int COMMAND_CAPACITY = 32;
+  private static final long INTENT_WAIT_NANOS = 1_000_000L;
+  private static final String THREAD_NAME = "GestureInput";
+
+  private static final class TouchSample {
+    @Nullable MotionEvent motionEvent;
+    final HitTestResult hitTestResult = new HitTestResult();
+  }
+
+  private static final class Intent {
+    int type;
+    @Nullable BaseGestureRecognizer<?> recognizer;
+    @Nullable BaseGesture<?> gesture;
+    final GestureState state = new GestureState();
+  }
+
+  private static final class Command {
+    int type;
+    @Nullable BaseGesture<?> gesture;
+    int sequence;
+    long uptimeMillis;
+
+    void set(Command other) {
+      type = other.type;
+      gesture = other.gesture;
+      sequence = other.sequence;
+      uptimeMillis = other.uptimeMillis;
+    }
+  }
+
+  private final TransformationSystem transformationSystem;
+  private final Thread thread;
+  private final Ring<TouchSample> samples = new Ring<>(SAMPLE_CAPACITY, TouchSample::new);
+  private final Ring<Intent> intents = new Ring<>(INTENT_CAPACITY, Intent::new);
+  private final Ring<Command> commands = new Ring<>(COMMAND_CAPACITY, Command::new);
+  // Commands that didn't fit in the ring, only accessed on the frame thread.
+  private final ArrayDeque<Command> pendingCommands = new ArrayDeque<>();
+  private volatile boolean isRunning = false;
+  private boolean isDispatching = false;
+
+  GestureInputThread(TransformationSystem transformationSystem) {
+    this.transformationSystem = transformationSystem;
+    thread = new Thread(this, THREAD_NAME);
+    thread.setDaemon(true);
+  }
+
+  void start() {
+    isRunning = true;
+    thread.start();
+  }
+
+  /**
+   * Stops the input thread once it has classified the touch events already posted, and notifies
+   * the listeners of the gestures it published. Called on the frame thread.
+   */
+  void stop() {
+    isRunning = false;
+    LockSupport.unpark(thread);
+
+    boolean isInterrupted = false;
+    while (thread.isAlive()) {
+      // The input thread may be waiting for room in the intent ring.
+      dispatchIntents();
+      try {
+        thread.join(1);
+      } catch (InterruptedException e) {
+        isInterrupted = true;
+      }
+    }
+    dispatchIntents();
+
+    if (isInterrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Copies a touch event for the input thread. Called on the frame thread. */
+  void postTouch(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    TouchSample sample;
+    while ((sample = samples.claim()) == null) {
+      // The input thread may itself be waiting for this thread to drain the intent ring.
+      dispatchIntents();
+      Thread.yield();
+    }
+
+    sample.motionEvent = MotionEvent.obtain(motionEvent);
+    sample.hitTestResult.set(hitTestResult);
+    samples.publish();
+    LockSupport.unpark(thread);
+  }
+
+  /** Asks the input thread to check the gesture timeouts. Called on the frame thread. */
+  void postCheckTimeouts(long uptimeMillis) {
+    Command command = claimCommand();
+    command.type = COMMAND_CHECK_TIMEOUTS;
+    command.uptimeMillis = uptimeMillis;
+    publishCommand(command);
+  }
+
+  /**
+   * Asks the input thread to finish the gesture a frame copy was made from. Called on the frame
+   * thread when a listener cancels or completes the frame copy.
+   */
+  void postFinish(BaseGesture<?> gesture, int sequence, boolean wasCancelled) {
+    Command command = claimCommand();
+    command.type = wasCancelled ? COMMAND_CANCEL : COMMAND_COMPLETE;
+    command.gesture = gesture;
+    command.sequence = sequence;
+    publishCommand(command);
+  }
+
+  /**
+   * Publishes that a gesture started, updated or finished, with a snapshot of its values. Called on
+   * the input thread by the recognizers.
+   */
+  void publish(int type, BaseGestureRecognizer<?> recognizer, BaseGesture<?> gesture) {
+    Intent intent;
+    while ((intent = intents.claim()) == null) {
+      LockSupport.parkNanos(this, INTENT_WAIT_NANOS);
+    }
+
+    if (type == STARTED) {
+      gesture.handoffSequence++;
+    }
+    intent.type = type;
+    intent.recognizer = recognizer;
+    intent.gesture = gesture;
+    gesture.writeHandoffState(intent.state);
+    intents.publish();
+  }
+
+  /** Notifies the listeners of the gestures published since the last call, on the frame thread. */
+  void dispatchIntents() {
+    if (isDispatching) {
+      return;
+    }
+
+    isDispatching = true;
+    try {
+      flushPendingCommands();
+
+      Intent intent;
+      while ((intent = intents.peek()) != null) {
+        try {
+          BaseGestureRecognizer<?> recognizer = intent.recognizer;
+          BaseGesture<?> gesture = intent.gesture;
+          if (recognizer != null && gesture != null) {
+            switch (intent.type) {
+              case STARTED:
+                recognizer.onInputGestureStarted(this, gesture, intent.state);
+                break;
+              case UPDATED:
+                recognizer.onInputGestureUpdated(gesture, intent.state);
+                break;
+              default:
+                recognizer.onInputGestureFinished(gesture, intent.state);
+                break;
+            }
+          }
+        } finally {
+          intent.recognizer = null;
+          intent.gesture = null;
+          intent.state.clear();
+          intents.release();
+        }
+      }
+    } finally {
+      isDispatching = false;
+    }
+  }
+
+  @Override
+  public void run() {
+    Process.setThreadPriority(Process.THREAD_PRIORITY_DISPLAY);
+
+    while (true) {
+      boolean isIdle = true;
+
+      Command command;
+      while ((command = commands.peek()) != null) {
+        execute(command);
+        command.gesture = null;
+        commands.release();
+        isIdle = false;
+      }
+
+      TouchSample sample;
+      while ((sample = samples.peek()) != null) {
+        MotionEvent motionEvent = sample.motionEvent;
+        try {
+          if (motionEvent != null) {
+            transformationSystem.dispatchTouch(sample.hitTestResult, motionEvent);
+          }
+        } finally {
+          if (motionEvent != null) {
+            motionEvent.recycle();
+          }
+          sample.motionEvent = null;
+          sample.hitTestResult.setNode(null);
+          samples.release();
+        }
+        isIdle = false;
+      }
+
+      if (isIdle) {
+        if (!isRunning) {
+          return;
+        }
+        LockSupport.park(this);
+      }
+    }
+  }
+
+  private void execute(Command command) {
+    if (command.type == COMMAND_CHECK_TIMEOUTS) {
+      transformationSystem.dispatchTimeouts(command.uptimeMillis);
+      return;
+    }
+
+    // The gesture may have finished and been reused for another touch since the command was sent.
+    BaseGesture<?> gesture = command.gesture;
+    if (gesture == null
+        || gesture.handoffSequence != command.sequence
+        || !gesture.hasStarted()
+        || gesture.hasFinished()) {
+      return;
+    }
+
+    if (command.type == COMMAND_CANCEL) {
+      gesture.cancel();
+    } else {
+      gesture.complete();
+    }
+  }
+
+  private Command claimCommand() {
+    flushPendingCommands();
+    Command command = pendingCommands.isEmpty() ? commands.claim() : null;
+    return command != null ? command : new Command();
+  }
+
+  private void publishCommand(Command command) {
+    if (commands.isClaimed(command)) {
+      commands.publish();
+      LockSupport.unpark(thread);
+    } else {
+      pendingCommands.addLast(command);
+    }
+  }
+
+  private void flushPendingCommands() {
+    boolean hasFlushed = false;
+    while (!pendingCommands.isEmpty()) {
+      Command slot = commands.claim();
+      if (slot == null) {
+        break;
+      }
+      slot.set(pendingCommands.removeFirst());
+      commands.publish();
+      hasFlushed = true;
+    }
+
+    if (hasFlushed) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  /**
+   * Lock-free ring of preallocated slots with a single producer and a single consumer. The
+   * producer fills the slot returned by {@link #claim()} and makes it visible with {@link
+   * #publish()}, the consumer reads the slot returned by {@link #peek()} and gives it back with
+   * {@link #release()}. Each index is only written by one side, the volatile writes order the slot
+   * contents.
+   */
+  private static final class Ring<T> {
+    private final Object[] slots;
+    private final int mask;
+    private volatile long head = 0;
+    private volatile long tail = 0;
+
+    Ring(int capacity, Supplier<T> factory) {
+      slots = new Object[capacity];
+      mask = capacity - 1;
+      for (int i = 0; i < capacity; i++) {
+        slots[i] = factory.get();
+      }
+    }
+
+    /** Returns the next free slot without publishing it, or null if the ring is full. */
+    @Nullable
+    T claim() {
+      long tail = this.tail;
+      if (tail - head == slots.length) {
+        return null;
+      }
+      return slot(tail);
+    }
+
+    boolean isClaimed(Object slot) {
+      return tail - head < slots.length && slots[(int) (tail & mask)] == slot;
+    }
+
+    void publish() {
+      tail = tail + 1;
+    }
+
+    /** Returns the oldest published slot, or null if the ring is empty. */
+    @Nullable
+    T peek() {
+      long head = this.head;
+      if (head == tail) {
+        return null;
+      }
+      return slot(head);
+    }
+
+    void release() {
+      head = head + 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T slot(long index) {
+      return (T) slots[(int) (index & mask)];
+    }
+  }
+}
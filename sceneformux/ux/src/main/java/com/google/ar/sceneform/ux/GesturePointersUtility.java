@@ -19,33 +19,92 @@ import android.util.DisplayMetrics;
 import android.util.TypedValue;
 import android.view.MotionEvent;
 import com.google.ar.sceneform.math.Vector3;
-import java.util.HashSet;
+import java.util.Arrays;
 
 /**
  * Retains/Releases pointer Ids so that each pointer can only be used in one gesture at a time.
  * Provides helper functions for converting touch coordinates between pixels and inches.
+ *
+ * <p>Retained pointer Ids are kept in a bit mask. Android pointer Ids are small, so ids outside
+ * of [0, 63] are rare and kept in a small overflow array instead.
  */
 public class GesturePointersUtility {
+  private static final int MASK_BITS = Long.SIZE;
+  private static final int INITIAL_OVERFLOW_CAPACITY = 4;
+
   private final DisplayMetrics displayMetrics;
-  private final HashSet<Integer> retainedPointerIds;
+  private long retainedPointerIdMask;
+  private int[] overflowPointerIds = new int[INITIAL_OVERFLOW_CAPACITY];
+  private int overflowCount;
+  private int claimCount;
 
   public GesturePointersUtility(DisplayMetrics displayMetrics) {
     this.displayMetrics = displayMetrics;
-    retainedPointerIds = new HashSet<>();
   }
 
   public void retainPointerId(int pointerId) {
-    if (!isPointerIdRetained(pointerId)) {
-      retainedPointerIds.add(pointerId);
+    claimCount++;
+    if (isInMask(pointerId)) {
+      retainedPointerIdMask |= 1L << pointerId;
+      return;
+    }
+
+    if (indexOfOverflow(pointerId) >= 0) {
+      return;
     }
+    if (overflowCount == overflowPointerIds.length) {
+      overflowPointerIds = Arrays.copyOf(overflowPointerIds, overflowCount * 2);
+    }
+    overflowPointerIds[overflowCount++] = pointerId;
   }
 
   public void releasePointerId(int pointerId) {
-    retainedPointerIds.remove(Integer.valueOf(pointerId));
+    if (isInMask(pointerId)) {
+      retainedPointerIdMask &= ~(1L << pointerId);
+      return;
+    }
+
+    int index = indexOfOverflow(pointerId);
+    if (index >= 0) {
+      overflowPointerIds[index] = overflowPointerIds[--overflowCount];
+    }
   }
 
   public boolean isPointerIdRetained(int pointerId) {
-    return retainedPointerIds.contains(pointerId);
+    if (isInMask(pointerId)) {
+      return (retainedPointerIdMask & (1L << pointerId)) != 0L;
+    }
+    return indexOfOverflow(pointerId) >= 0;
+  }
+
+  /** Returns true if at least one pointer Id is currently retained by a gesture. */
+  public boolean isAnyPointerIdRetained() {
+    return retainedPointerIdMask != 0L || overflowCount > 0;
+  }
+
+  /**
+   * Returns true if every pointer of the motion event is retained, i.e. no pointer is available to
+   * start a new gesture.
+   */
+  public boolean areAllPointerIdsRetained(MotionEvent motionEvent) {
+    if (!isAnyPointerIdRetained()) {
+      return false;
+    }
+
+    for (int i = 0; i < motionEvent.getPointerCount(); i++) {
+      if (!isPointerIdRetained(motionEvent.getPointerId(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the number of times a pointer Id has been retained so far. Comparing two values tells
+   * whether a gesture claimed pointers in between.
+   */
+  public int getClaimCount() {
+    return claimCount;
   }
 
   public float inchesToPixels(float inches) {
@@ -62,4 +121,26 @@ public class GesturePointersUtility {
     int index = me.findPointerIndex(pointerId);
     return new Vector3(me.getX(index), me.getY(index), 0.0f);
   }
+
+  /**
+   * Same as {@link #motionEventToPosition(MotionEvent, int)} but writes the position into {@code
+   * outPosition} instead of allocating a new vector.
+   */
+  public static void motionEventToPosition(MotionEvent me, int pointerId, Vector3 outPosition) {
+    int index = me.findPointerIndex(pointerId);
+    outPosition.set(me.getX(index), me.getY(index), 0.0f);
+  }
+
+  private static boolean isInMask(int pointerId) {
+    return pointerId >= 0 && pointerId < MASK_BITS;
+  }
+
+  private int indexOfOverflow(int pointerId) {
+    for (int i = 0; i < overflowCount; i++) {
+      if (overflowPointerIds[i] == pointerId) {
+        return i;
+      }
+    }
+    return -1;
+  }
 }
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2018 Google LLC All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.ux;
+
+import android.view.MotionEvent;
+import androidx.annotation.Nullable;
+import com.google.ar.sceneform.Node;
+
+/**
+ * Snapshot of the values of a {@link BaseGesture} that its listeners can read, handed over from the
+ * input thread to the frame thread by {@link GestureInputThread}.
+ *
+ * <p>Gestures write their own values into {@link #values} and read them back in the same order.
+ */
+final class GestureState {
+  static final int MAX_VALUES = 16;
+
+  final float[] values = new float[MAX_VALUES];
+  long time;
+  @Nullable MotionEvent motionEvent;
+  @Nullable Node targetNode;
+  boolean hasFinished;
+  boolean wasCancelled;
+  int sequence;
+
+  /** Keeps a copy of {@code event}, recycled by {@link #clear()}. */
+  void setMotionEvent(@Nullable MotionEvent event) {
+    motionEvent = event == null ? null : MotionEvent.obtain(event);
+  }
+
+  void clear() {
+    if (motionEvent != null) {
+      motionEvent.recycle();
+      motionEvent = null;
+    }
+    targetNode = null;
+    time = 0;
+    hasFinished = false;
+    wasCancelled = false;
+    sequence = 0;
+  }
+}
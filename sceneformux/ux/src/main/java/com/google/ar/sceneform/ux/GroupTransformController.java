@@ -0,0 +1,542 @@
+/*
+ * Copyright 2018 Google LLC All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.ux;
+
+import androidx.annotation.Nullable;
+import com.google.ar.core.Anchor;
+import com.google.ar.core.Frame;
+import com.google.ar.core.HitResult;
+import com.google.ar.core.Plane;
+import com.google.ar.core.Pose;
+import com.google.ar.core.Trackable;
+import com.google.ar.core.TrackingState;
+import com.google.ar.sceneform.AnchorNode;
+import com.google.ar.sceneform.ArSceneView;
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.Scene;
+import com.google.ar.sceneform.collision.Ray;
+import com.google.ar.sceneform.math.Quaternion;
+import com.google.ar.sceneform.math.Vector3;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transforms the nodes selected in a {@link TransformationSystem} as one rigid group, when group
+ * transforms are enabled and at least two nodes are selected.
+ *
+ * <p>A drag starting on a selected node moves the whole group, with at most one hit test per
+ * frame. Pinches and twists on a selected node, or without a target, scale and rotate the group
+ * about the centroid of the nodes. The gestures handled by the group aren't seen by the
+ * transformation controllers of the nodes. At the end of a drag the group is re-anchored at once:
+ * a single anchor is created on the plane under the group and shared by the anchor nodes of the
+ * selected nodes. Nodes placed by the {@link AnchorManager} join its clusters instead.
+ */
+public class GroupTransformController {
+  public static final float DEFAULT_MIN_SCALE = 0.25f;
+  public static final float DEFAULT_MAX_SCALE = 4.0f;
+
+  // Same rates as the rotation and scale controllers of the nodes.
+  private static final float ROTATION_RATE_DEGREES = 2.5f;
+  private static final float SCALE_SENSITIVITY = 0.75f;
+
+  private final TransformationSystem transformationSystem;
+  private boolean isEnabled = false;
+  private float minScale = DEFAULT_MIN_SCALE;
+  private float maxScale = DEFAULT_MAX_SCALE;
+
+  @Nullable private DragGesture dragGesture;
+  @Nullable private PinchGesture pinchGesture;
+  @Nullable private TwistGesture twistGesture;
+
+  // Snapshot of the group taken when its first gesture starts, in world space.
+  private final ArrayList<BaseTransformableNode> nodes = new ArrayList<>();
+  private float[] offsets = new float[0];
+  private float[] rotations = new float[0];
+  private float[] scales = new float[0];
+  private final Vector3 startCentroid = new Vector3();
+
+  private final Vector3 translation = new Vector3();
+  private float yawDegrees = 0.0f;
+  private float scale = 1.0f;
+
+  private boolean hasDragStartPoint = false;
+  private final Vector3 dragStartPoint = new Vector3();
+  private final Vector3 dragPoint = new Vector3();
+  private boolean hasPendingDrag = false;
+  private final Vector3 pendingDragPosition = new Vector3();
+  private long lastHitTestTimestamp = 0;
+  private boolean hasDragged = false;
+  @Nullable private Plane lastPlane;
+  @Nullable private PlanePolygonCache polygonCache;
+
+  private final Vector3 rayOrigin = new Vector3();
+  private final Vector3 rayDirection = new Vector3();
+  private final Vector3 planeNormal = new Vector3(0.0f, 1.0f, 0.0f);
+  private final Vector3 planePoint = new Vector3();
+  private final Vector3 lastPlaneNormal = new Vector3();
+  private final Vector3 worldPosition = new Vector3();
+  private final Quaternion worldRotation = new Quaternion();
+  private final Vector3 localScale = new Vector3();
+  private final ArrayList<AnchorNode> anchorNodes = new ArrayList<>();
+
+  private final DragGesture.OnGestureEventListener dragListener =
+      new DragGesture.OnGestureEventListener() {
+        @Override
+        public void onUpdated(DragGesture gesture) {
+          gesture.getPredictedPosition(pendingDragPosition);
+          hasPendingDrag = true;
+          updateDrag(false);
+        }
+
+        @Override
+        public void onFinished(DragGesture gesture) {
+          updateDrag(true);
+          dragGesture = null;
+          onGestureFinished();
+        }
+      };
+
+  private final PinchGesture.OnGestureEventListener pinchListener =
+      new PinchGesture.OnGestureEventListener() {
+        @Override
+        public void onUpdated(PinchGesture gesture) {
+          scale *= 1.0f + gesture.gapDeltaInches() * SCALE_SENSITIVITY;
+          scale = Math.min(maxScale, Math.max(minScale, scale));
+          apply();
+        }
+
+        @Override
+        public void onFinished(PinchGesture gesture) {
+          pinchGesture = null;
+          onGestureFinished();
+        }
+      };
+
+  private final TwistGesture.OnGestureEventListener twistListener =
+      new TwistGesture.OnGestureEventListener() {
+        @Override
+        public void onUpdated(TwistGesture gesture) {
+          yawDegrees -= gesture.getDeltaRotationDegrees() * ROTATION_RATE_DEGREES;
+          apply();
+        }
+
+        @Override
+        public void onFinished(TwistGesture gesture) {
+          twistGesture = null;
+          onGestureFinished();
+        }
+      };
+
+  GroupTransformController(TransformationSystem transformationSystem) {
+    this.transformationSystem = transformationSystem;
+  }
+
+  /**
+   * Enables or disables group transforms, disabled by default. When disabled, each selected node
+   * is transformed by its own controllers.
+   */
+  public void setEnabled(boolean enabled) {
+    isEnabled = enabled;
+  }
+
+  public boolean isEnabled() {
+    return isEnabled;
+  }
+
+  /** Sets the range of the scale factor applied to the group by pinches. */
+  public void setScaleRange(float minScale, float maxScale) {
+    if (minScale <= 0.0f || maxScale < minScale) {
+      throw new IllegalArgumentException("Invalid scale range.");
+    }
+    this.minScale = minScale;
+    this.maxScale = maxScale;
+  }
+
+  /** Returns true if a gesture is transforming the group. */
+  public boolean isTransforming() {
+    return dragGesture != null || pinchGesture != null || twistGesture != null;
+  }
+
+  /** Returns true if the node is part of the group being transformed. */
+  public boolean isTransforming(BaseTransformableNode node) {
+    return isTransforming() && nodes.contains(node);
+  }
+
+  /**
+   * Returns true if the selected node is moved with the rest of the selection instead of on its
+   * own, because group transforms are enabled and several nodes are selected.
+   */
+  public boolean isGrouped(BaseTransformableNode node) {
+    return isEnabled
+        && transformationSystem.getSelectedNodes().size() >= 2
+        && transformationSystem.isNodeSelected(node);
+  }
+
+  /** Returns true if the gesture is handled by the group, and must be ignored by the nodes. */
+  boolean isHandling(BaseGesture<?> gesture) {
+    return gesture == dragGesture || gesture == pinchGesture || gesture == twistGesture;
+  }
+
+  void onDragStarted(DragGesture gesture) {
+    if (dragGesture != null || !canStart(gesture, false)) {
+      return;
+    }
+
+    beginGroupGesture();
+    dragGesture = gesture;
+    hasDragStartPoint = false;
+    gesture.getPosition(pendingDragPosition);
+    hasPendingDrag = true;
+    lastHitTestTimestamp = 0;
+    updateDrag(true);
+    gesture.setGestureEventListener(dragListener);
+  }
+
+  void onPinchStarted(PinchGesture gesture) {
+    if (pinchGesture != null || !canStart(gesture, true)) {
+      return;
+    }
+
+    beginGroupGesture();
+    pinchGesture = gesture;
+    gesture.setGestureEventListener(pinchListener);
+  }
+
+  void onTwistStarted(TwistGesture gesture) {
+    if (twistGesture != null || !canStart(gesture, true)) {
+      return;
+    }
+
+    beginGroupGesture();
+    twistGesture = gesture;
+    gesture.setGestureEventListener(twistListener);
+  }
+
+  /** Applies the latest drag position if it is still waiting for the next frame. */
+  void update() {
+    if (hasPendingDrag) {
+      updateDrag(false);
+    }
+  }
+
+  private boolean canStart(BaseGesture<?> gesture, boolean allowUntargeted) {
+    if (!isEnabled || transformationSystem.getSelectedNodes().size() < 2) {
+      return false;
+    }
+
+    Node targetNode = gesture.getTargetNode();
+    if (targetNode == null) {
+      return allowUntargeted;
+    }
+
+    for (Node node = targetNode; node != null; node = node.getParent()) {
+      if (node instanceof BaseTransformableNode && isGrouped((BaseTransformableNode) node)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void beginGroupGesture() {
+    if (isTransforming()) {
+      return;
+    }
+
+    nodes.clear();
+    nodes.addAll(transformationSystem.getSelectedNodes());
+    int count = nodes.size();
+    if (offsets.length < count * 3) {
+      offsets = new float[count * 3];
+      rotations = new float[count * 4];
+      scales = new float[count * 3];
+    }
+
+    startCentroid.set(0.0f, 0.0f, 0.0f);
+    for (int i = 0; i < count; i++) {
+      Vector3 position = nodes.get(i).getWorldPosition();
+      startCentroid.set(
+          startCentroid.x + position.x, startCentroid.y + position.y, startCentroid.z + position.z);
+    }
+    startCentroid.set(startCentroid.x / count, startCentroid.y / count, startCentroid.z / count);
+
+    for (int i = 0; i < count; i++) {
+      BaseTransformableNode node = nodes.get(i);
+      Vector3 position = node.getWorldPosition();
+      offsets[i * 3] = position.x - startCentroid.x;
+      offsets[i * 3 + 1] = position.y - startCentroid.y;
+      offsets[i * 3 + 2] = position.z - startCentroid.z;
+
+      Quaternion rotation = node.getWorldRotation();
+      rotations[i * 4] = rotation.x;
+      rotations[i * 4 + 1] = rotation.y;
+      rotations[i * 4 + 2] = rotation.z;
+      rotations[i * 4 + 3] = rotation.w;
+
+      Vector3 nodeScale = node.getLocalScale();
+      scales[i * 3] = nodeScale.x;
+      scales[i * 3 + 1] = nodeScale.y;
+      scales[i * 3 + 2] = nodeScale.z;
+    }
+
+    translation.set(0.0f, 0.0f, 0.0f);
+    yawDegrees = 0.0f;
+    scale = 1.0f;
+    hasDragged = false;
+    lastPlane = null;
+    polygonCache = findPolygonCache();
+  }
+
+  /**
+   * Moves the group under the pending drag position. Only one hit test is performed per frame,
+   * unless {@code force} is true. The other updates of the frame are applied by {@link #update()}
+   * with a tick scheduler, or intersect the plane of the last hit test without one.
+   */
+  private void updateDrag(boolean force) {
+    if (!hasPendingDrag || nodes.isEmpty()) {
+      return;
+    }
+
+    Scene scene = nodes.get(0).getScene();
+    if (scene == null) {
+      return;
+    }
+    Frame frame = ((ArSceneView) scene.getView()).getArFrame();
+    if (frame == null || frame.getCamera().getTrackingState() != TrackingState.TRACKING) {
+      return;
+    }
+    long timestamp = frame.getTimestamp();
+    boolean canHitTest = force || timestamp != lastHitTestTimestamp;
+    // Without a tick scheduler nothing applies the pending drag later in the frame, so the drag
+    // follows the plane found by the last hit test instead of waiting for the next touch event.
+    if (!canHitTest && transformationSystem.getTickScheduler() != null) {
+      return;
+    }
+    hasPendingDrag = false;
+
+    if (canHitTest) {
+      lastHitTestTimestamp = timestamp;
+      if (!hitTest(frame, scene, pendingDragPosition.x, pendingDragPosition.y, dragPoint)) {
+        return;
+      }
+    } else if (!raycast(scene, pendingDragPosition.x, pendingDragPosition.y, dragPoint)) {
+      return;
+    }
+
+    if (!hasDragStartPoint) {
+      dragStartPoint.set(dragPoint);
+      hasDragStartPoint = true;
+      return;
+    }
+
+    translation.set(
+        dragPoint.x - dragStartPoint.x,
+        dragPoint.y - dragStartPoint.y,
+        dragPoint.z - dragStartPoint.z);
+    hasDragged = true;
+    apply();
+  }
+
+  /**
+   * Finds the point under the screen position on the planes, or on the horizontal plane through
+   * the centroid of the group if there is none.
+   */
+  private boolean hitTest(Frame frame, Scene scene, float x, float y, Vector3 outPoint) {
+    List<HitResult> hitResults = transformationSystem.getHitTestCache().hitTest(frame, x, y);
+    for (int i = 0; i < hitResults.size(); i++) {
+      HitResult hit = hitResults.get(i);
+      Trackable trackable = hit.getTrackable();
+      Pose pose = hit.getHitPose();
+      if (trackable instanceof Plane && isPoseInPolygon((Plane) trackable, pose)) {
+        lastPlane = (Plane) trackable;
+        outPoint.set(pose.tx(), pose.ty(), pose.tz());
+        return true;
+      }
+    }
+
+    setRay(scene, x, y);
+    return intersectCentroidPlane(outPoint);
+  }
+
+  /**
+   * Finds the point under the screen position on the plane of the last hit test, from the plane
+   * polygon cache, or on the horizontal plane through the centroid of the group.
+   */
+  private boolean raycast(Scene scene, float x, float y, Vector3 outPoint) {
+    setRay(scene, x, y);
+    Plane plane = lastPlane;
+    PlanePolygonCache cache = polygonCache;
+    if (plane != null && cache != null && cache.isTracking(plane)) {
+      cache.getCenterAndNormal(plane, planePoint, lastPlaneNormal);
+      if (PlaneIntersection.intersect(rayOrigin, rayDirection, planePoint, lastPlaneNormal, outPoint)
+          && cache.isPointInPolygon(plane, outPoint.x, outPoint.y, outPoint.z)) {
+        return true;
+      }
+    }
+
+    return intersectCentroidPlane(outPoint);
+  }
+
+  private void setRay(Scene scene, float x, float y) {
+    Ray ray = scene.getCamera().screenPointToRay(x, y);
+    rayOrigin.set(ray.getOrigin());
+    rayDirection.set(ray.getDirection());
+  }
+
+  private boolean intersectCentroidPlane(Vector3 outPoint) {
+    worldPosition.set(startCentroid.x, startCentroid.y + translation.y, startCentroid.z);
+    return PlaneIntersection.intersect(
+        rayOrigin, rayDirection, worldPosition, planeNormal, outPoint);
+  }
+
+  private boolean isPoseInPolygon(Plane plane, Pose pose) {
+    PlanePolygonCache cache = polygonCache;
+    return cache != null ? cache.isPoseInPolygon(plane, pose) : plane.isPoseInPolygon(pose);
+  }
+
+  /** Returns the plane polygon cache of the first node of the group that has one. */
+  @Nullable
+  private PlanePolygonCache findPolygonCache() {
+    for (int i = 0; i < nodes.size(); i++) {
+      BaseTransformableNode node = nodes.get(i);
+      if (node instanceof TransformableNode) {
+        return ((TransformableNode) node).getDetectedARPlanes().getPolygonCache();
+      }
+    }
+    return null;
+  }
+
+  /** Places the nodes of the group, rotated and scaled about its translated centroid. */
+  private void apply() {
+    double halfYaw = Math.toRadians(yawDegrees) * 0.5;
+    float sinHalf = (float) Math.sin(halfYaw);
+    float cosHalf = (float) Math.cos(halfYaw);
+    double yaw = Math.toRadians(yawDegrees);
+    float sin = (float) Math.sin(yaw);
+    float cos = (float) Math.cos(yaw);
+
+    float centroidX = startCentroid.x + translation.x;
+    float centroidY = startCentroid.y + translation.y;
+    float centroidZ = startCentroid.z + translation.z;
+
+    for (int i = 0; i < nodes.size(); i++) {
+      BaseTransformableNode node = nodes.get(i);
+      float offsetX = offsets[i * 3] * scale;
+      float offsetY = offsets[i * 3 + 1] * scale;
+      float offsetZ = offsets[i * 3 + 2] * scale;
+      worldPosition.set(
+          centroidX + offsetX * cos + offsetZ * sin,
+          centroidY + offsetY,
+          centroidZ - offsetX * sin + offsetZ * cos);
+      node.setWorldPosition(worldPosition);
+
+      // Yaw about the world up axis, applied before the rotation of the node.
+      float x = rotations[i * 4];
+      float y = rotations[i * 4 + 1];
+      float z = rotations[i * 4 + 2];
+      float w = rotations[i * 4 + 3];
+      worldRotation.set(
+          cosHalf * x + sinHalf * z,
+          cosHalf * y + sinHalf * w,
+          cosHalf * z - sinHalf * x,
+          cosHalf * w - sinHalf * y);
+      node.setWorldRotation(worldRotation);
+
+      localScale.set(scales[i * 3] * scale, scales[i * 3 + 1] * scale, scales[i * 3 + 2] * scale);
+      node.setLocalScale(localScale);
+    }
+  }
+
+  private void onGestureFinished() {
+    if (isTransforming()) {
+      return;
+    }
+
+    if (hasDragged) {
+      reanchor();
+    }
+    nodes.clear();
+    hasPendingDrag = false;
+    polygonCache = null;
+  }
+
+  /** Anchors every node of the group to a single new anchor at the centroid of the group. */
+  private void reanchor() {
+    Plane plane = lastPlane;
+    if (plane == null || plane.getTrackingState() != TrackingState.TRACKING) {
+      return;
+    }
+
+    // Nodes of the anchor manager join clusters, the others share a new anchor.
+    AnchorManager anchorManager = transformationSystem.getAnchorManager();
+    anchorNodes.clear();
+    for (int i = 0; i < nodes.size(); i++) {
+      BaseTransformableNode node = nodes.get(i);
+      if (anchorManager.isManaged(node)) {
+        anchorManager.reanchor(node, plane);
+        continue;
+      }
+
+      Node parent = node.getParent();
+      if (parent instanceof AnchorNode && !anchorNodes.contains(parent)) {
+        anchorNodes.add((AnchorNode) parent);
+      }
+    }
+    if (anchorNodes.isEmpty()) {
+      return;
+    }
+
+    Pose anchorPose =
+        new Pose(
+            new float[] {
+              startCentroid.x + translation.x,
+              startCentroid.y + translation.y,
+              startCentroid.z + translation.z
+            },
+            plane.getCenterPose().getRotationQuaternion());
+    Anchor anchor = plane.createAnchor(anchorPose);
+    transformationSystem.getAnchorReusePolicy().onAnchorCreated(anchor, plane);
+
+    for (int i = 0; i < anchorNodes.size(); i++) {
+      AnchorNode anchorNode = anchorNodes.get(i);
+      Anchor oldAnchor = anchorNode.getAnchor();
+      if (oldAnchor == anchor) {
+        continue;
+      }
+
+      // The children keep their world pose while the anchor node moves.
+      List<Node> children = anchorNode.getChildren();
+      int childCount = children.size();
+      Vector3[] childPositions = new Vector3[childCount];
+      Quaternion[] childRotations = new Quaternion[childCount];
+      for (int c = 0; c < childCount; c++) {
+        childPositions[c] = children.get(c).getWorldPosition();
+        childRotations[c] = children.get(c).getWorldRotation();
+      }
+
+      anchorNode.setAnchor(anchor);
+      transformationSystem.retainAnchor(anchor);
+      if (oldAnchor != null) {
+        transformationSystem.releaseAnchor(oldAnchor);
+      }
+
+      for (int c = 0; c < childCount; c++) {
+        children.get(c).setWorldPosition(childPositions[c]);
+        children.get(c).setWorldRotation(childRotations[c]);
+      }
+    }
+    anchorNodes.clear();
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018 Google LLC All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.ux;
+
+import android.view.MotionEvent;
+import com.google.ar.core.Frame;
+import com.google.ar.core.HitResult;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shares the results of {@link Frame#hitTest(float, float)} between the controllers and listeners
+ * that query the same screen point during the same frame.
+ *
+ * <p>Results are keyed by the timestamp of the frame and by the screen coordinates quantized to
+ * {@link #getQuantumPixels()}, and are dropped as soon as a frame with another timestamp is
+ * queried. The returned lists are shared and can't be modified.
+ *
+ * <p>Must only be used on the thread that updates the ARCore session.
+ */
+public class HitTestCache {
+  private static final int CAPACITY = 8;
+  private static final float DEFAULT_QUANTUM_PIXELS = 1.0f;
+
+  private final int[] keysX = new int[CAPACITY];
+  private final int[] keysY = new int[CAPACITY];
+  @SuppressWarnings("unchecked")
+  private final List<HitResult>[] results = new List[CAPACITY];
+  private int size = 0;
+  private int nextIndex = 0;
+  private long frameTimestamp = 0;
+  private float quantumPixels = DEFAULT_QUANTUM_PIXELS;
+
+  private long hitCount = 0;
+  private long missCount = 0;
+
+  /**
+   * Returns the hit test results of {@code frame} at the screen point, performing the hit test only
+   * if the same point hasn't been queried yet for this frame.
+   */
+  public List<HitResult> hitTest(Frame frame, float x, float y) {
+    long timestamp = frame.getTimestamp();
+    if (timestamp != frameTimestamp) {
+      clear();
+      frameTimestamp = timestamp;
+    }
+
+    int keyX = Math.round(x / quantumPixels);
+    int keyY = Math.round(y / quantumPixels);
+    for (int i = 0; i < size; i++) {
+      if (keysX[i] == keyX && keysY[i] == keyY) {
+        hitCount++;
+        return results[i];
+      }
+    }
+
+    missCount++;
+    List<HitResult> hitResults = Collections.unmodifiableList(frame.hitTest(x, y));
+    int index = nextIndex;
+    keysX[index] = keyX;
+    keysY[index] = keyY;
+    results[index] = hitResults;
+    nextIndex = (nextIndex + 1) % CAPACITY;
+    size = Math.min(size + 1, CAPACITY);
+    return hitResults;
+  }
+
+  /**
+   * Returns the hit test results of {@code frame} at the position of the motion event, like {@link
+   * Frame#hitTest(MotionEvent)}.
+   */
+  public List<HitResult> hitTest(Frame frame, MotionEvent motionEvent) {
+    return hitTest(frame, motionEvent.getX(), motionEvent.getY());
+  }
+
+  /** Drops the cached results. */
+  public void clear() {
+    for (int i = 0; i < size; i++) {
+      results[i] = null;
+    }
+    size = 0;
+    nextIndex = 0;
+  }
+
+  /**
+   * Sets the size in pixels of the squares of screen points that share their results, 1 by default.
+   * Values smaller than or equal to 0 are ignored.
+   */
+  public void setQuantumPixels(float quantumPixels) {
+    if (quantumPixels <= 0.0f) {
+      return;
+    }
+    this.quantumPixels = quantumPixels;
+    clear();
+  }
+
+  public float getQuantumPixels() {
+    return quantumPixels;
+  }
+
+  /** Returns the number of queries answered from the cache. */
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  /** Returns the number of queries that performed a hit test. */
+  public long getMissCount() {
+    return missCount;
+  }
+
+  public void resetCounters() {
+    hitCount = 0;
+    missCount = 0;
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2018 Google LLC All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.ux;
+
+import android.util.Log;
+import android.view.MotionEvent;
+import android.view.ViewConfiguration;
+import com.google.ar.sceneform.HitTestResult;
+import com.google.ar.sceneform.math.Vector3;
+
+/**
+ * Gesture for when the user keeps a single finger pressed on the touch screen without moving it.
+ *
+ * <p>A long press has no duration: it starts and finishes when the long press timeout expires, so
+ * listeners only receive {@link BaseGestureRecognizer.OnGestureStartedListener#onGestureStarted}.
+ * The timeout is checked on every touch event and by {@link
+ * LongPressGestureRecognizer#checkTimeouts(long)}, since a finger that doesn't move may not
+ * produce any event.
+ */
+public class LongPressGesture extends BaseGesture<LongPressGesture> {
+  private static final String TAG = LongPressGesture.class.getSimpleName();
+
+  /** Interface definition for callbacks to be invoked by a {@link LongPressGesture}. */
+  public interface OnGestureEventListener extends BaseGesture.OnGestureEventListener<LongPressGesture> {}
+
+  private final Vector3 position = new Vector3();
+  private final float slopPixelsSquared;
+  private int pointerId = MotionEvent.INVALID_POINTER_ID;
+  private long downTime;
+
+  private static final float SLOP_INCHES = 0.1f;
+  private static final boolean LONG_PRESS_GESTURE_DEBUG = false;
+
+  public LongPressGesture(
+      GesturePointersUtility gesturePointersUtility,
+      HitTestResult hitTestResult,
+      MotionEvent motionEvent) {
+    this(gesturePointersUtility);
+    init(hitTestResult, motionEvent);
+  }
+
+  /** Creates an uninitialized gesture for the pool of {@link LongPressGestureRecognizer}. */
+  LongPressGesture(GesturePointersUtility gesturePointersUtility) {
+    super(gesturePointersUtility);
+
+    float slopPixels = gesturePointersUtility.inchesToPixels(SLOP_INCHES);
+    slopPixelsSquared = slopPixels * slopPixels;
+  }
+
+  /** Starts tracking the pointer that went down in the given motion event. */
+  void init(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    pointerId = motionEvent.getPointerId(motionEvent.getActionIndex());
+    GesturePointersUtility.motionEventToPosition(motionEvent, pointerId, position);
+    downTime = motionEvent.getEventTime();
+    targetNode = hitTestResult.getNode();
+    if (LONG_PRESS_GESTURE_DEBUG) {
+      debugLog("Created: " + pointerId);
+    }
+  }
+
+  /** Writes the screen position of the long press into {@code outPosition}. */
+  public void getPosition(Vector3 outPosition) {
+    checkNotRecycled();
+    outPosition.set(position);
+  }
+
+  /** Returns the time at which the finger went down, in the time base of {@link MotionEvent}. */
+  public long getDownTime() {
+    checkNotRecycled();
+    return downTime;
+  }
+
+  /** Returns true if the long press timeout has expired at {@code uptimeMillis}. */
+  boolean hasTimedOut(long uptimeMillis) {
+    return uptimeMillis - downTime >= ViewConfiguration.getLongPressTimeout();
+  }
+
+  /** Starts and finishes the gesture when the timeout expires between two touch events. */
+  void startOnTimeout() {
+    debugLog("Started on timeout: " + pointerId);
+    startWithoutEvent();
+    complete();
+  }
+
+  @Override
+  protected boolean isUsingRetainedPointerId() {
+    return gesturePointersUtility.isPointerIdRetained(pointerId);
+  }
+
+  @Override
+  protected boolean canStart(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    int action = motionEvent.getActionMasked();
+
+    // The pointer was claimed by another gesture, a second finger went down or the finger was
+    // lifted too early.
+    if (gesturePointersUtility.isPointerIdRetained(pointerId)
+        || action == MotionEvent.ACTION_CANCEL
+        || action == MotionEvent.ACTION_POINTER_DOWN
+        || action == MotionEvent.ACTION_UP
+        || action == MotionEvent.ACTION_POINTER_UP) {
+      cancel();
+      return false;
+    }
+
+    int index = motionEvent.findPointerIndex(pointerId);
+    if (index < 0) {
+      cancel();
+      return false;
+    }
+
+    float dx = motionEvent.getX(index) - position.x;
+    float dy = motionEvent.getY(index) - position.y;
+    if (dx * dx + dy * dy >= slopPixelsSquared) {
+      cancel();
+      return false;
+    }
+
+    return hasTimedOut(motionEvent.getEventTime());
+  }
+
+  @Override
+  protected void onStart(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    debugLog("Started: " + pointerId);
+    complete();
+  }
+
+  @Override
+  protected boolean updateGesture(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    return false;
+  }
+
+  @Override
+  protected void reset() {
+    super.reset();
+    pointerId = MotionEvent.INVALID_POINTER_ID;
+    position.setZero();
+    downTime = 0;
+  }
+
+  @Override
+  protected void onCancel() {
+    debugLog("Cancelled: " + pointerId);
+  }
+
+  @Override
+  protected void onFinish() {
+    debugLog("Finished: " + pointerId);
+  }
+
+  @Override
+  void writeState(GestureState state) {
+    state.values[0] = position.x;
+    state.values[1] = position.y;
+    state.time = downTime;
+  }
+
+  @Override
+  void readState(GestureState state) {
+    position.set(state.values[0], state.values[1], 0.0f);
+    downTime = state.time;
+  }
+
+  @Override
+  protected LongPressGesture getSelf() {
+    return this;
+  }
+
+  private static void debugLog(String log) {
+    if (LONG_PRESS_GESTURE_DEBUG) {
+      Log.d(TAG, "LongPressGesture:[" + log + "]");
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2018 Google LLC All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.ux;
+
+import android.view.MotionEvent;
+import com.google.ar.sceneform.HitTestResult;
+
+/**
+ * Gesture Recognizer for when the user keeps a single finger pressed on the touch screen without
+ * moving it.
+ */
+public class LongPressGestureRecognizer extends BaseGestureRecognizer<LongPressGesture> {
+  /** Interface definition for a callbacks to be invoked when a {@link LongPressGesture} starts. */
+  public interface OnGestureStartedListener
+      extends BaseGestureRecognizer.OnGestureStartedListener<LongPressGesture> {}
+
+  public LongPressGestureRecognizer(GesturePointersUtility gesturePointersUtility) {
+    super(gesturePointersUtility);
+  }
+
+  @Override
+  public void checkTimeouts(long uptimeMillis) {
+    boolean hasStarted = false;
+    for (int i = 0; i < gestures.size(); i++) {
+      LongPressGesture gesture = gestures.get(i);
+      if (!gesture.hasStarted() && !gesture.hasFinished() && gesture.hasTimedOut(uptimeMillis)) {
+        gesture.startOnTimeout();
+        dispatchGestureStarted(gesture);
+        hasStarted = true;
+      }
+    }
+
+    if (hasStarted) {
+      removeFinishedGestures();
+    }
+  }
+
+  @Override
+  protected void tryCreateGestures(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    // Long presses are single finger gestures, they can only begin with the first finger down.
+    if (motionEvent.getActionMasked() != MotionEvent.ACTION_DOWN) {
+      return;
+    }
+
+    LongPressGesture gesture = obtainGesture();
+    if (gesture == null) {
+      gesture = new LongPressGesture(gesturePointersUtility);
+    }
+    gesture.init(hitTestResult, motionEvent);
+    gestures.add(gesture);
+  }
+
+  @Override
+  LongPressGesture createFrameCopy() {
+    return new LongPressGesture(gesturePointersUtility);
+  }
+}
@@ -0,0 +1,400 @@
+/*
+ * Copyright 2018 Google LLC All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.ux;
+
+import androidx.annotation.Nullable;
+import com.google.ar.sceneform.FrameTime;
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.math.Quaternion;
+import com.google.ar.sceneform.math.Vector3;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves the local position, rotation or scale of nodes towards their targets with critically
+ * damped springs, for all the nodes of a {@link TransformationSystem} at once.
+ *
+ * <p>The current values, velocities and targets of the active motions are stored in flat arrays
+ * and integrated together, in fixed sub-steps of {@link #SUB_STEP_SECONDS} with the exact solution
+ * of the spring equation, so the motion doesn't depend on the frame rate. A motion is removed from
+ * the arrays once it comes to rest on its target. Updating doesn't allocate.
+ *
+ * <p>The transformation controllers submit the targets of their node through a {@link Motion}.
+ * With a {@link TickScheduler}, the system is updated in its {@link TickScheduler.Phase#SIMULATION}
+ * phase, otherwise the controllers with an active motion update it from their node, the first one
+ * to do so in a frame integrates every motion.
+ *
+ * <p>Must only be used on the thread that updates the scene.
+ */
+public class MotionSystem {
+  public static final float DEFAULT_ANGULAR_FREQUENCY = 24.0f;
+  static final float SUB_STEP_SECONDS = 1.0f / 240.0f;
+
+  // Longer frames are shortened, a stalled frame shouldn't be caught up with hundreds of steps.
+  private static final float MAX_FRAME_SECONDS = 0.1f;
+  private static final int STRIDE = 4;
+  private static final int INITIAL_CAPACITY = 16;
+  private static final float REST_DISTANCE = 0.001f;
+  private static final float REST_SPEED = 0.01f;
+
+  /** The node property driven by a {@link Motion}. */
+  public enum Channel {
+    POSITION,
+    ROTATION,
+    SCALE
+  }
+
+  /** Callback invoked when a {@link Motion} comes to rest on its target. */
+  public interface OnMotionFinishedListener {
+    void onMotionFinished(Motion motion);
+  }
+
+  /** Drives one property of one node, created once and reused for every target of the node. */
+  public final class Motion {
+    private final Node node;
+    private final Channel channel;
+    private float angularFrequency;
+    private float restDistance;
+    private float restSpeed;
+    @Nullable private OnMotionFinishedListener listener;
+    // Index in the arrays of the active motions, -1 when inactive.
+    private int index = -1;
+
+    private Motion(Node node, Channel channel) {
+      this.node = node;
+      this.channel = channel;
+      angularFrequency = DEFAULT_ANGULAR_FREQUENCY;
+      restDistance = REST_DISTANCE;
+      restSpeed = REST_SPEED;
+    }
+
+    public Node getNode() {
+      return node;
+    }
+
+    public Channel getChannel() {
+      return channel;
+    }
+
+    public boolean isActive() {
+      return index >= 0;
+    }
+
+    /**
+     * Sets the stiffness of the spring in radians per second. The value covers most of the distance
+     * to the target in about {@code 4 / angularFrequency} seconds.
+     */
+    public void setAngularFrequency(float angularFrequency) {
+      this.angularFrequency = angularFrequency;
+      if (index >= 0) {
+        setSpring(index, this);
+      }
+    }
+
+    public float getAngularFrequency() {
+      return angularFrequency;
+    }
+
+    /** Sets the distance to the target and the speed below which the motion comes to rest. */
+    public void setRestThresholds(float restDistance, float restSpeed) {
+      this.restDistance = restDistance;
+      this.restSpeed = restSpeed;
+      if (index >= 0) {
+        setSpring(index, this);
+      }
+    }
+
+    public void setOnMotionFinishedListener(@Nullable OnMotionFinishedListener listener) {
+      this.listener = listener;
+    }
+
+    /**
+     * Moves the local position or scale of the node towards the target. An active motion keeps its
+     * velocity, an inactive one starts at rest from the current value of the node.
+     */
+    public void setTarget(float x, float y, float z) {
+      if (channel == Channel.ROTATION) {
+        throw new IllegalStateException("Rotation motions take a quaternion target.");
+      }
+      int base = activate(this) * STRIDE;
+      targets[base] = x;
+      targets[base + 1] = y;
+      targets[base + 2] = z;
+    }
+
+    public void setTarget(Vector3 target) {
+      setTarget(target.x, target.y, target.z);
+    }
+
+    /**
+     * Moves the local rotation of the node towards the target, the short way. An active motion
+     * keeps its velocity, an inactive one starts at rest from the current rotation of the node.
+     */
+    public void setTarget(Quaternion target) {
+      if (channel != Channel.ROTATION) {
+        throw new IllegalStateException("Only rotation motions take a quaternion target.");
+      }
+      int base = activate(this) * STRIDE;
+      float dot =
+          values[base] * target.x
+              + values[base + 1] * target.y
+              + values[base + 2] * target.z
+              + values[base + 3] * target.w;
+      float sign = dot < 0.0f ? -1.0f : 1.0f;
+      targets[base] = sign * target.x;
+      targets[base + 1] = sign * target.y;
+      targets[base + 2] = sign * target.z;
+      targets[base + 3] = sign * target.w;
+    }
+
+    /** Writes the current target into {@code outTarget}, the motion must be active. */
+    public void getTarget(Vector3 outTarget) {
+      int base = checkActive() * STRIDE;
+      outTarget.set(targets[base], targets[base + 1], targets[base + 2]);
+    }
+
+    /** Writes the current target into {@code outTarget}, the motion must be active. */
+    public void getTarget(Quaternion outTarget) {
+      int base = checkActive() * STRIDE;
+      outTarget.set(targets[base], targets[base + 1], targets[base + 2], targets[base + 3]);
+    }
+
+    /** Stops the motion where it is, without notifying the listener. */
+    public void cancel() {
+      if (index >= 0) {
+        deactivate(index);
+      }
+    }
+
+    private int checkActive() {
+      if (index < 0) {
+        throw new IllegalStateException("The motion isn't active.");
+      }
+      return index;
+    }
+  }
+
+  // Active motions, STRIDE components each. Unused components stay at 0.
+  private float[] values = new float[INITIAL_CAPACITY * STRIDE];
+  private float[] velocities = new float[INITIAL_CAPACITY * STRIDE];
+  private float[] targets = new float[INITIAL_CAPACITY * STRIDE];
+  private float[] angularFrequencies = new float[INITIAL_CAPACITY];
+  private float[] stepDecays = new float[INITIAL_CAPACITY];
+  private float[] restDistances = new float[INITIAL_CAPACITY];
+  private float[] restSpeeds = new float[INITIAL_CAPACITY];
+  private Motion[] motions = new Motion[INITIAL_CAPACITY];
+  private int activeCount = 0;
+
+  private float accumulatedSeconds = 0.0f;
+  private long lastFrameStartNanos = Long.MIN_VALUE;
+  private final ArrayList<Motion> finishedMotions = new ArrayList<>();
+  private final Vector3 scratchVector = new Vector3();
+  private final Quaternion scratchQuaternion = new Quaternion();
+
+  /** Creates an inactive motion driving {@code channel} of {@code node}. */
+  public Motion createMotion(Node node, Channel channel) {
+    return new Motion(node, channel);
+  }
+
+  /** Returns the number of motions that haven't come to rest yet. */
+  public int getActiveMotionCount() {
+    return activeCount;
+  }
+
+  /**
+   * Integrates the active motions over the frame and writes them into their nodes. Only the first
+   * call for a given frame has an effect.
+   */
+  public void update(FrameTime frameTime) {
+    long frameStartNanos = frameTime.getStartTime(TimeUnit.NANOSECONDS);
+    if (frameStartNanos == lastFrameStartNanos) {
+      return;
+    }
+    lastFrameStartNanos = frameStartNanos;
+    update(frameTime.getDeltaSeconds());
+  }
+
+  /** Integrates the active motions over {@code deltaSeconds} and writes them into their nodes. */
+  public void update(float deltaSeconds) {
+    if (activeCount == 0) {
+      accumulatedSeconds = 0.0f;
+      return;
+    }
+
+    accumulatedSeconds += Math.min(Math.max(deltaSeconds, 0.0f), MAX_FRAME_SECONDS);
+    int stepCount = (int) (accumulatedSeconds / SUB_STEP_SECONDS);
+    accumulatedSeconds -= stepCount * SUB_STEP_SECONDS;
+
+    float h = SUB_STEP_SECONDS;
+    float[] values = this.values;
+    float[] velocities = this.velocities;
+    float[] targets = this.targets;
+    for (int step = 0; step < stepCount; step++) {
+      for (int i = 0; i < activeCount; i++) {
+        float omega = angularFrequencies[i];
+        float decay = stepDecays[i];
+        int end = (i + 1) * STRIDE;
+        for (int c = i * STRIDE; c < end; c++) {
+          float offset = values[c] - targets[c];
+          float temp = (velocities[c] + omega * offset) * h;
+          values[c] = targets[c] + (offset + temp) * decay;
+          velocities[c] = (velocities[c] - omega * temp) * decay;
+        }
+      }
+    }
+
+    // Backwards, finished motions are swapped with the last active one.
+    for (int i = activeCount - 1; i >= 0; i--) {
+      Motion motion = motions[i];
+      boolean isAtRest = isAtRest(i);
+      if (isAtRest) {
+        int end = (i + 1) * STRIDE;
+        for (int c = i * STRIDE; c < end; c++) {
+          values[c] = targets[c];
+          velocities[c] = 0.0f;
+        }
+      }
+
+      apply(i, motion);
+
+      if (isAtRest) {
+        deactivate(i);
+        finishedMotions.add(motion);
+      }
+    }
+
+    for (int i = 0; i < finishedMotions.size(); i++) {
+      Motion motion = finishedMotions.get(i);
+      OnMotionFinishedListener listener = motion.listener;
+      if (listener != null && !motion.isActive()) {
+        listener.onMotionFinished(motion);
+      }
+    }
+    finishedMotions.clear();
+  }
+
+  private boolean isAtRest(int index) {
+    float restDistance = restDistances[index];
+    float restSpeed = restSpeeds[index];
+    int end = (index + 1) * STRIDE;
+    for (int c = index * STRIDE; c < end; c++) {
+      if (Math.abs(values[c] - targets[c]) > restDistance || Math.abs(velocities[c]) > restSpeed) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void apply(int index, Motion motion) {
+    int base = index * STRIDE;
+    switch (motion.channel) {
+      case POSITION:
+        scratchVector.set(values[base], values[base + 1], values[base + 2]);
+        motion.node.setLocalPosition(scratchVector);
+        break;
+      case SCALE:
+        scratchVector.set(values[base], values[base + 1], values[base + 2]);
+        motion.node.setLocalScale(scratchVector);
+        break;
+      default:
+        scratchQuaternion.set(values[base], values[base + 1], values[base + 2], values[base + 3]);
+        scratchQuaternion.normalize();
+        motion.node.setLocalRotation(scratchQuaternion);
+        break;
+    }
+  }
+
+  /** Returns the index of the motion, adding it at rest on the current value of its node. */
+  private int activate(Motion motion) {
+    if (motion.index >= 0) {
+      return motion.index;
+    }
+
+    if (activeCount == motions.length) {
+      grow();
+    }
+
+    int index = activeCount++;
+    int base = index * STRIDE;
+    motions[index] = motion;
+    motion.index = index;
+    setSpring(index, motion);
+
+    float w = 0.0f;
+    switch (motion.channel) {
+      case POSITION:
+        scratchVector.set(motion.node.getLocalPosition());
+        break;
+      case SCALE:
+        scratchVector.set(motion.node.getLocalScale());
+        break;
+      default:
+        Quaternion rotation = motion.node.getLocalRotation();
+        scratchVector.set(rotation.x, rotation.y, rotation.z);
+        w = rotation.w;
+        break;
+    }
+    values[base] = scratchVector.x;
+    values[base + 1] = scratchVector.y;
+    values[base + 2] = scratchVector.z;
+    values[base + 3] = w;
+    for (int c = base; c < base + STRIDE; c++) {
+      velocities[c] = 0.0f;
+      targets[c] = values[c];
+    }
+    return index;
+  }
+
+  private void setSpring(int index, Motion motion) {
+    angularFrequencies[index] = motion.angularFrequency;
+    stepDecays[index] = (float) Math.exp(-motion.angularFrequency * SUB_STEP_SECONDS);
+    restDistances[index] = motion.restDistance;
+    restSpeeds[index] = motion.restSpeed;
+  }
+
+  private void deactivate(int index) {
+    Motion motion = motions[index];
+    motion.index = -1;
+
+    int last = --activeCount;
+    if (index != last) {
+      System.arraycopy(values, last * STRIDE, values, index * STRIDE, STRIDE);
+      System.arraycopy(velocities, last * STRIDE, velocities, index * STRIDE, STRIDE);
+      System.arraycopy(targets, last * STRIDE, targets, index * STRIDE, STRIDE);
+      angularFrequencies[index] = angularFrequencies[last];
+      stepDecays[index] = stepDecays[last];
+      restDistances[index] = restDistances[last];
+      restSpeeds[index] = restSpeeds[last];
+      Motion moved = motions[last];
+      motions[index] = moved;
+      moved.index = index;
+    }
+    motions[last] = null;
+  }
+
+  private void grow() {
+    int capacity = motions.length * 2;
+    values = Arrays.copyOf(values, capacity * STRIDE);
+    velocities = Arrays.copyOf(velocities, capacity * STRIDE);
+    targets = Arrays.copyOf(targets, capacity * STRIDE);
+    angularFrequencies = Arrays.copyOf(angularFrequencies, capacity);
+    stepDecays = Arrays.copyOf(stepDecays, capacity);
+    restDistances = Arrays.copyOf(restDistances, capacity);
+    restSpeeds = Arrays.copyOf(restSpeeds, capacity);
+    motions = Arrays.copyOf(motions, capacity);
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2018 Google LLC All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.ux;
+
+import com.google.ar.sceneform.math.Quaternion;
+import com.google.ar.sceneform.math.Vector3;
+import java.util.ArrayList;
+
+/**
+ * Moves the desired position of a dragged {@link BaseTransformableNode} to the nearest spot where
+ * its bounds don't overlap the bounds of other nodes, owned by a {@link TransformationSystem} and
+ * used by {@link TranslationControllerWithPlaneChange} when its non-overlap mode is enabled.
+ *
+ * <p>The broad phase is the {@link FootprintHash} of the transformation system. Only the nodes
+ * whose bounds overlap vertically are obstacles, so nodes standing on another floor plane are
+ * ignored. When the desired bounds overlap other nodes, the candidate spots are the positions that
+ * push the bounds out of each obstacle along one horizontal axis, tried from the nearest. A
+ * candidate that overlaps other nodes adds the spots around them, up to a fixed number of
+ * candidates, so the cost doesn't grow with the number of nodes of the scene.
+ */
+public class OverlapResolver {
+  public static final float DEFAULT_MARGIN_METERS = 0.0f;
+
+  private static final int MAX_CANDIDATES = 32;
+  // Bounds closer than this are touching, not overlapping.
+  private static final float CONTACT_EPSILON = 0.001f;
+
+  private final FootprintHash footprintHash;
+  private float margin = DEFAULT_MARGIN_METERS;
+
+  private final float[] bounds = new float[6];
+  private final float[] otherBounds = new float[6];
+  private final float[] candidateX = new float[MAX_CANDIDATES];
+  private final float[] candidateZ = new float[MAX_CANDIDATES];
+  private final boolean[] isTried = new boolean[MAX_CANDIDATES];
+  private int candidateCount = 0;
+  private final ArrayList<BaseTransformableNode> obstacles = new ArrayList<>();
+
+  OverlapResolver(FootprintHash footprintHash) {
+    this.footprintHash = footprintHash;
+  }
+
+  /** Sets the gap in meters kept between the bounds of the nodes, 0 by default. */
+  public void setMargin(float margin) {
+    this.margin = Math.max(0.0f, margin);
+  }
+
+  public float getMargin() {
+    return margin;
+  }
+
+  /**
+   * Moves {@code position} to the nearest position where the node, with the given rotation,
+   * doesn't overlap other nodes.
+   *
+   * @return false if no free position was found close enough, {@code position} is then unchanged
+   */
+  public boolean resolve(BaseTransformableNode node, Vector3 position, Quaternion rotation) {
+    footprintHash.computeBounds(node, position, rotation, bounds);
+    float halfX = (bounds[3] - bounds[0]) * 0.5f;
+    float halfZ = (bounds[5] - bounds[2]) * 0.5f;
+    // Offset from the position to the center of the bounds.
+    float offsetX = (bounds[0] + bounds[3]) * 0.5f - position.x;
+    float offsetZ = (bounds[2] + bounds[5]) * 0.5f - position.z;
+
+    candidateCount = 0;
+    if (!findObstacles(node, position.x, position.z, halfX, halfZ, offsetX, offsetZ)) {
+      return true;
+    }
+    addCandidates(position.x, position.z, halfX, halfZ, offsetX, offsetZ);
+
+    while (true) {
+      int nearest = -1;
+      float nearestDistance = Float.MAX_VALUE;
+      for (int i = 0; i < candidateCount; i++) {
+        if (isTried[i]) {
+          continue;
+        }
+        float dx = candidateX[i] - position.x;
+        float dz = candidateZ[i] - position.z;
+        float distance = dx * dx + dz * dz;
+        if (distance < nearestDistance) {
+          nearest = i;
+          nearestDistance = distance;
+        }
+      }
+
+      if (nearest < 0) {
+        obstacles.clear();
+        return false;
+      }
+
+      isTried[nearest] = true;
+      float x = candidateX[nearest];
+      float z = candidateZ[nearest];
+      if (!findObstacles(node, x, z, halfX, halfZ, offsetX, offsetZ)) {
+        position.set(x, position.y, z);
+        return true;
+      }
+      addCandidates(x, z, halfX, halfZ, offsetX, offsetZ);
+    }
+  }
+
+  /**
+   * Collects the nodes overlapping the bounds centered at the position into {@link #obstacles}.
+   *
+   * @return true if there is at least one
+   */
+  private boolean findObstacles(
+      BaseTransformableNode node,
+      float x,
+      float z,
+      float halfX,
+      float halfZ,
+      float offsetX,
+      float offsetZ) {
+    float extentX = halfX + margin - CONTACT_EPSILON;
+    float extentZ = halfZ + margin - CONTACT_EPSILON;
+    obstacles.clear();
+    footprintHash.query(
+        x + offsetX - extentX,
+        bounds[1] + CONTACT_EPSILON,
+        z + offsetZ - extentZ,
+        x + offsetX + extentX,
+        bounds[4] - CONTACT_EPSILON,
+        z + offsetZ + extentZ,
+        node,
+        obstacles);
+
+    // The children of the node move with it.
+    for (int i = obstacles.size() - 1; i >= 0; i--) {
+      if (obstacles.get(i).isDescendantOf(node)) {
+        obstacles.remove(i);
+      }
+    }
+    return !obstacles.isEmpty();
+  }
+
+  /**
+   * Adds the positions pushing the bounds centered at the position out of each obstacle, along x
+   * or along z.
+   */
+  private void addCandidates(
+      float x, float z, float halfX, float halfZ, float offsetX, float offsetZ) {
+    for (int i = 0; i < obstacles.size(); i++) {
+      footprintHash.getBounds(obstacles.get(i), otherBounds);
+      addCandidate(otherBounds[0] - margin - halfX - offsetX, z);
+      addCandidate(otherBounds[3] + margin + halfX - offsetX, z);
+      addCandidate(x, otherBounds[2] - margin - halfZ - offsetZ);
+      addCandidate(x, otherBounds[5] + margin + halfZ - offsetZ);
+    }
+    obstacles.clear();
+  }
+
+  private void addCandidate(float x, float z) {
+    if (candidateCount == MAX_CANDIDATES) {
+      return;
+    }
+
+    for (int i = 0; i < candidateCount; i++) {
+      if (Math.abs(candidateX[i] - x) < CONTACT_EPSILON
+          && Math.abs(candidateZ[i] - z) < CONTACT_EPSILON) {
+        return;
+      }
+    }
+
+    candidateX[candidateCount] = x;
+    candidateZ[candidateCount] = z;
+    isTried[candidateCount] = false;
+    candidateCount++;
+  }
+}
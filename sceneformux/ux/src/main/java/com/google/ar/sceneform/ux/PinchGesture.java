@@ -17,7 +17,9 @@ package com.google.ar.sceneform.ux;
 
 import android.util.Log;
 import android.view.MotionEvent;
+import androidx.annotation.Nullable;
 import com.google.ar.sceneform.HitTestResult;
+import com.google.ar.sceneform.math.MathHelper;
 import com.google.ar.sceneform.math.Vector3;
 
 /** Gesture for when the user performs a two-finger pinch motion on the touch screen. */
@@ -28,34 +30,60 @@ public class PinchGesture extends BaseGesture<PinchGesture> {
   public interface OnGestureEventListener
       extends BaseGesture.OnGestureEventListener<PinchGesture> {}
 
-  private final int pointerId1;
-  private final int pointerId2;
-  private final Vector3 startPosition1;
-  private final Vector3 startPosition2;
-  private final Vector3 previousPosition1;
-  private final Vector3 previousPosition2;
+  private final Vector3 startPosition1 = new Vector3();
+  private final Vector3 startPosition2 = new Vector3();
+  private final Vector3 previousPosition1 = new Vector3();
+  private final Vector3 previousPosition2 = new Vector3();
+  private int pointerId1 = MotionEvent.INVALID_POINTER_ID;
+  private int pointerId2 = MotionEvent.INVALID_POINTER_ID;
+  @Nullable private TwoFingerGesture pair;
+  private final float slopPixels;
   private float gap;
   private float gapDelta;
 
   private static final float SLOP_INCHES = 0.05f;
   private static final float SLOP_MOTION_DIRECTION_DEGREES = 30.0f;
+  private static final float SLOP_MOTION_DIRECTION_DOT =
+      (float) Math.cos(Math.toRadians(SLOP_MOTION_DIRECTION_DEGREES));
 
   private static final boolean PINCH_GESTURE_DEBUG = false;
 
   public PinchGesture(
       GesturePointersUtility gesturePointersUtility, MotionEvent motionEvent, int pointerId2) {
+    this(gesturePointersUtility);
+    init(motionEvent, pointerId2);
+  }
+
+  /** Creates an uninitialized gesture for the pool of {@link PinchGestureRecognizer}. */
+  PinchGesture(GesturePointersUtility gesturePointersUtility) {
     super(gesturePointersUtility);
+    slopPixels = gesturePointersUtility.inchesToPixels(SLOP_INCHES);
+  }
 
+  /**
+   * Starts tracking the pointer that went down in the given motion event together with {@code
+   * pointerId2}.
+   */
+  void init(MotionEvent motionEvent, int pointerId2) {
     pointerId1 = motionEvent.getPointerId(motionEvent.getActionIndex());
     this.pointerId2 = pointerId2;
-    startPosition1 = GesturePointersUtility.motionEventToPosition(motionEvent, pointerId1);
-    startPosition2 = GesturePointersUtility.motionEventToPosition(motionEvent, pointerId2);
-    previousPosition1 = new Vector3(startPosition1);
-    previousPosition2 = new Vector3(startPosition2);
+    GesturePointersUtility.motionEventToPosition(motionEvent, pointerId1, startPosition1);
+    GesturePointersUtility.motionEventToPosition(motionEvent, pointerId2, startPosition2);
+    previousPosition1.set(startPosition1);
+    previousPosition2.set(startPosition2);
     debugLog("Created");
   }
 
+  /**
+   * Makes this gesture a part of {@code pair}, which owns the pointers and computes the motion of
+   * this gesture. See {@link TwoFingerGestureRecognizer}.
+   */
+  void init(TwoFingerGesture pair) {
+    this.pair = pair;
+  }
+
   public float getGap() {
+    checkNotRecycled();
     return gap;
   }
 
@@ -64,6 +92,7 @@ public class PinchGesture extends BaseGesture<PinchGesture> {
   }
 
   public float getGapDelta() {
+    checkNotRecycled();
     return gapDelta;
   }
 
@@ -77,8 +106,20 @@ public class PinchGesture extends BaseGesture<PinchGesture> {
     super.cancel();
   }
 
+  @Override
+  protected boolean isUsingRetainedPointerId() {
+    // The pointers of a part belong to its pair.
+    return pair == null
+        && (gesturePointersUtility.isPointerIdRetained(pointerId1)
+            || gesturePointersUtility.isPointerIdRetained(pointerId2));
+  }
+
   @Override
   protected boolean canStart(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    if (pair != null) {
+      return pair.isPinching();
+    }
+
     if (gesturePointersUtility.isPointerIdRetained(pointerId1)
         || gesturePointersUtility.isPointerIdRetained(pointerId2)) {
       cancel();
@@ -104,34 +145,37 @@ public class PinchGesture extends BaseGesture<PinchGesture> {
       return false;
     }
 
-    Vector3 firstToSecond = Vector3.subtract(startPosition1, startPosition2);
-    Vector3 firstToSecondDirection = firstToSecond.normalized();
-
-    Vector3 newPosition1 = GesturePointersUtility.motionEventToPosition(motionEvent, pointerId1);
-    Vector3 newPosition2 = GesturePointersUtility.motionEventToPosition(motionEvent, pointerId2);
-    Vector3 deltaPosition1 = Vector3.subtract(newPosition1, previousPosition1);
-    Vector3 deltaPosition2 = Vector3.subtract(newPosition2, previousPosition2);
-    previousPosition1.set(newPosition1);
-    previousPosition2.set(newPosition2);
-
-    float dot1 = Vector3.dot(deltaPosition1.normalized(), firstToSecondDirection.negated());
-    float dot2 = Vector3.dot(deltaPosition2.normalized(), firstToSecondDirection);
-    float dotThreshold = (float) Math.cos(Math.toRadians(SLOP_MOTION_DIRECTION_DEGREES));
+    float firstToSecondX = startPosition1.x - startPosition2.x;
+    float firstToSecondY = startPosition1.y - startPosition2.y;
+    float startGap = length(firstToSecondX, firstToSecondY);
+
+    int index1 = motionEvent.findPointerIndex(pointerId1);
+    int index2 = motionEvent.findPointerIndex(pointerId2);
+    float newX1 = motionEvent.getX(index1);
+    float newY1 = motionEvent.getY(index1);
+    float newX2 = motionEvent.getX(index2);
+    float newY2 = motionEvent.getY(index2);
+    float deltaX1 = newX1 - previousPosition1.x;
+    float deltaY1 = newY1 - previousPosition1.y;
+    float deltaX2 = newX2 - previousPosition2.x;
+    float deltaY2 = newY2 - previousPosition2.y;
+    previousPosition1.set(newX1, newY1, 0.0f);
+    previousPosition2.set(newX2, newY2, 0.0f);
 
     // Check angle of motion for the first touch.
-    if (!Vector3.equals(deltaPosition1, Vector3.zero()) && Math.abs(dot1) < dotThreshold) {
+    if (!isZero(deltaX1, deltaY1)
+        && !isMotionAlongAxis(deltaX1, deltaY1, firstToSecondX, firstToSecondY, startGap)) {
       return false;
     }
 
     // Check angle of motion for the second touch.
-    if (!Vector3.equals(deltaPosition2, Vector3.zero()) && Math.abs(dot2) < dotThreshold) {
+    if (!isZero(deltaX2, deltaY2)
+        && !isMotionAlongAxis(deltaX2, deltaY2, firstToSecondX, firstToSecondY, startGap)) {
       return false;
     }
 
-    float startGap = firstToSecond.length();
-    gap = Vector3.subtract(newPosition1, newPosition2).length();
+    gap = length(newX1 - newX2, newY1 - newY2);
     float separation = Math.abs(gap - startGap);
-    float slopPixels = gesturePointersUtility.inchesToPixels(SLOP_INCHES);
     if (separation < slopPixels) {
       return false;
     }
@@ -142,12 +186,25 @@ public class PinchGesture extends BaseGesture<PinchGesture> {
   @Override
   protected void onStart(HitTestResult hitTestResult, MotionEvent motionEvent) {
     debugLog("Started");
+    if (pair != null) {
+      return;
+    }
     gesturePointersUtility.retainPointerId(pointerId1);
     gesturePointersUtility.retainPointerId(pointerId2);
   }
 
   @Override
   protected boolean updateGesture(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    if (pair != null) {
+      // The pair ends this gesture when its pointers are released.
+      if (motionEvent.getActionMasked() != MotionEvent.ACTION_MOVE) {
+        return false;
+      }
+      gapDelta = pair.getGapDelta();
+      gap = pair.getGap();
+      return gapDelta != 0.0f;
+    }
+
     int actionId = motionEvent.getPointerId(motionEvent.getActionIndex());
     int action = motionEvent.getActionMasked();
 
@@ -167,9 +224,12 @@ public class PinchGesture extends BaseGesture<PinchGesture> {
       return false;
     }
 
-    Vector3 newPosition1 = GesturePointersUtility.motionEventToPosition(motionEvent, pointerId1);
-    Vector3 newPosition2 = GesturePointersUtility.motionEventToPosition(motionEvent, pointerId2);
-    float newGap = Vector3.subtract(newPosition1, newPosition2).length();
+    int index1 = motionEvent.findPointerIndex(pointerId1);
+    int index2 = motionEvent.findPointerIndex(pointerId2);
+    float newGap =
+        length(
+            motionEvent.getX(index1) - motionEvent.getX(index2),
+            motionEvent.getY(index1) - motionEvent.getY(index2));
 
     if (newGap == gap) {
       return false;
@@ -177,10 +237,26 @@ public class PinchGesture extends BaseGesture<PinchGesture> {
 
     gapDelta = newGap - gap;
     gap = newGap;
-    debugLog("Update: " + gapDelta);
+    if (PINCH_GESTURE_DEBUG) {
+      debugLog("Update: " + gapDelta);
+    }
     return true;
   }
 
+  @Override
+  protected void reset() {
+    super.reset();
+    pointerId1 = MotionEvent.INVALID_POINTER_ID;
+    pointerId2 = MotionEvent.INVALID_POINTER_ID;
+    pair = null;
+    startPosition1.setZero();
+    startPosition2.setZero();
+    previousPosition1.setZero();
+    previousPosition2.setZero();
+    gap = 0.0f;
+    gapDelta = 0.0f;
+  }
+
   @Override
   protected void onCancel() {
     debugLog("Cancelled");
@@ -189,15 +265,53 @@ public class PinchGesture extends BaseGesture<PinchGesture> {
   @Override
   protected void onFinish() {
     debugLog("Finished");
+    if (pair != null) {
+      return;
+    }
     gesturePointersUtility.releasePointerId(pointerId1);
     gesturePointersUtility.releasePointerId(pointerId2);
   }
 
+  @Override
+  void writeState(GestureState state) {
+    state.values[0] = gap;
+    state.values[1] = gapDelta;
+  }
+
+  @Override
+  void readState(GestureState state) {
+    gap = state.values[0];
+    gapDelta = state.values[1];
+  }
+
   @Override
   protected PinchGesture getSelf() {
     return this;
   }
 
+  private static float length(float x, float y) {
+    return (float) Math.sqrt(x * x + y * y);
+  }
+
+  static boolean isZero(float x, float y) {
+    return MathHelper.almostEqualRelativeAndAbs(x, 0.0f)
+        && MathHelper.almostEqualRelativeAndAbs(y, 0.0f);
+  }
+
+  /**
+   * Returns true if the motion (deltaX, deltaY) is within {@link #SLOP_MOTION_DIRECTION_DEGREES}
+   * of the axis (axisX, axisY), in either direction.
+   */
+  static boolean isMotionAlongAxis(
+      float deltaX, float deltaY, float axisX, float axisY, float axisLength) {
+    float lengths = length(deltaX, deltaY) * axisLength;
+    if (lengths == 0.0f) {
+      return false;
+    }
+    float dot = (deltaX * axisX + deltaY * axisY) / lengths;
+    return Math.abs(dot) >= SLOP_MOTION_DIRECTION_DOT;
+  }
+
   private static void debugLog(String log) {
     if (PINCH_GESTURE_DEBUG) {
       Log.d(TAG, "PinchGesture:[" + log + "]");
@@ -55,7 +55,17 @@ public class PinchGestureRecognizer extends BaseGestureRecognizer<PinchGesture>
         continue;
       }
 
-      gestures.add(new PinchGesture(gesturePointersUtility, motionEvent, pointerId));
+      PinchGesture gesture = obtainGesture();
+      if (gesture == null) {
+        gesture = new PinchGesture(gesturePointersUtility);
+      }
+      gesture.init(motionEvent, pointerId);
+      gestures.add(gesture);
     }
   }
+
+  @Override
+  PinchGesture createFrameCopy() {
+    return new PinchGesture(gesturePointersUtility);
+  }
 }
@@ -10,6 +10,15 @@ import com.google.ar.sceneform.math.Vector3;
 public class PlaneIntersection {
     @Nullable
     public static Pose intersect(Plane plane, Ray ray, boolean isInfinite, Float infinitePlaneIntersectionMaximumDistance) {
+        return intersect(plane, ray, isInfinite, infinitePlaneIntersectionMaximumDistance, null);
+    }
+
+    /**
+     * Same as {@link #intersect(Plane, Ray, boolean, Float)}, testing the polygon of the plane with
+     * {@code polygonCache} when it isn't null.
+     */
+    @Nullable
+    public static Pose intersect(Plane plane, Ray ray, boolean isInfinite, Float infinitePlaneIntersectionMaximumDistance, @Nullable PlanePolygonCache polygonCache) {
         Vector3 normalizedDirection = ray.getDirection().normalized();
         Pose planeCenterPose = plane.getCenterPose();
         float[] planeYAxis = planeCenterPose.getYAxis();
@@ -36,10 +45,39 @@ public class PlaneIntersection {
         Vector3 position = Vector3.add(rayOrigin, normalizedDirection.scaled(distance));
         Pose pose = new Pose(new float[]{position.x, position.y, position.z}, planeCenterPose.getRotationQuaternion());
 
-        if (plane.isPoseInPolygon(pose) || (isInfinite && distance <= infinitePlaneIntersectionMaximumDistance)) {
+        boolean isInPolygon = polygonCache != null ? polygonCache.isPoseInPolygon(plane, pose) : plane.isPoseInPolygon(pose);
+        if (isInPolygon || (isInfinite && distance <= infinitePlaneIntersectionMaximumDistance)) {
             return pose;
         } else {
             return null;
         }
     }
+
+    /**
+     * Intersects a ray with an infinite plane without allocating.
+     *
+     * @param planeNormal normalized plane normal
+     * @return true and writes the intersection into {@code outPoint} if the ray hits the plane in
+     *     front of its origin
+     */
+    public static boolean intersect(Vector3 rayOrigin, Vector3 rayDirection, Vector3 planePoint, Vector3 planeNormal, Vector3 outPoint) {
+        float d = rayDirection.x * planeNormal.x + rayDirection.y * planeNormal.y + rayDirection.z * planeNormal.z;
+        if (d == 0f) {
+            return false;
+        }
+
+        float n = (planePoint.x - rayOrigin.x) * planeNormal.x
+                + (planePoint.y - rayOrigin.y) * planeNormal.y
+                + (planePoint.z - rayOrigin.z) * planeNormal.z;
+        float distance = n / d;
+        if (distance < 0f) {
+            return false;
+        }
+
+        outPoint.set(
+                rayOrigin.x + rayDirection.x * distance,
+                rayOrigin.y + rayDirection.y * distance,
+                rayOrigin.z + rayDirection.z * distance);
+        return true;
+    }
 }
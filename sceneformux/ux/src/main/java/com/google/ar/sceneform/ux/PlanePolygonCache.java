@@ -0,0 +1,280 @@
+package com.google.ar.sceneform.ux;
+
+import com.google.ar.core.Plane;
+import com.google.ar.core.Pose;
+import com.google.ar.core.TrackingState;
+import com.google.ar.sceneform.math.Vector3;
+
+import java.nio.FloatBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+
+/**
+ * Answers {@link Plane#isPoseInPolygon(Pose)} in Java from snapshots of the plane polygons.
+ *
+ * <p>The polygon, the center pose and the tracking state of a plane are read once, on the first
+ * query after the plane was updated, together with the bounding box of the polygon and a table of
+ * its edges. Queries then only transform the point into the plane space and test it against the edges. The cache must
+ * be fed with {@code Frame#getUpdatedTrackables(Plane.class)} every frame through {@link
+ * #update(Collection)}, which {@link DetectedARPlanes#update(Collection)} does.
+ */
+public class PlanePolygonCache {
+
+    private static class Polygon {
+        boolean isValid = false;
+        boolean isTracking = false;
+
+        // Center pose, the rotation is stored conjugated to transform world points into plane space.
+        float tx, ty, tz;
+        float qx, qy, qz, qw;
+
+        float minX, maxX, minZ, maxZ;
+
+        int edgeCount = 0;
+        float[] edgeX0 = new float[0];
+        float[] edgeZ0 = new float[0];
+        float[] edgeX1 = new float[0];
+        float[] edgeZ1 = new float[0];
+        // dx/dz of each edge, 0 for the edges parallel to x which are never crossed.
+        float[] edgeSlope = new float[0];
+
+        // Point of the current query in plane space.
+        private final float[] point = new float[3];
+
+        void snapshot(Plane plane) {
+            isTracking = plane.getTrackingState() == TrackingState.TRACKING;
+            Pose centerPose = plane.getCenterPose();
+            tx = centerPose.tx();
+            ty = centerPose.ty();
+            tz = centerPose.tz();
+            qx = -centerPose.qx();
+            qy = -centerPose.qy();
+            qz = -centerPose.qz();
+            qw = centerPose.qw();
+
+            FloatBuffer polygon = plane.getPolygon();
+            int offset = polygon.position();
+            int vertexCount = polygon.remaining() / 2;
+            if (edgeX0.length < vertexCount) {
+                edgeX0 = new float[vertexCount];
+                edgeZ0 = new float[vertexCount];
+                edgeX1 = new float[vertexCount];
+                edgeZ1 = new float[vertexCount];
+                edgeSlope = new float[vertexCount];
+            }
+
+            minX = Float.MAX_VALUE;
+            maxX = -Float.MAX_VALUE;
+            minZ = Float.MAX_VALUE;
+            maxZ = -Float.MAX_VALUE;
+            for (int i = 0; i < vertexCount; i++) {
+                int j = (i + 1) % vertexCount;
+                float x0 = polygon.get(offset + 2 * i);
+                float z0 = polygon.get(offset + 2 * i + 1);
+                float x1 = polygon.get(offset + 2 * j);
+                float z1 = polygon.get(offset + 2 * j + 1);
+                edgeX0[i] = x0;
+                edgeZ0[i] = z0;
+                edgeX1[i] = x1;
+                edgeZ1[i] = z1;
+                edgeSlope[i] = z1 != z0 ? (x1 - x0) / (z1 - z0) : 0f;
+
+                minX = Math.min(minX, x0);
+                maxX = Math.max(maxX, x0);
+                minZ = Math.min(minZ, z0);
+                maxZ = Math.max(maxZ, z0);
+            }
+            edgeCount = vertexCount;
+            isValid = true;
+        }
+
+        boolean contains(float worldX, float worldY, float worldZ) {
+            if (edgeCount < 3) {
+                return false;
+            }
+
+            toPlaneSpace(worldX, worldY, worldZ, point);
+            float x = point[0];
+            float z = point[2];
+
+            if (x < minX || x > maxX || z < minZ || z > maxZ) {
+                return false;
+            }
+
+            // Even-odd rule on the edges crossing the line through the point parallel to x.
+            boolean isInside = false;
+            for (int i = 0; i < edgeCount; i++) {
+                float z0 = edgeZ0[i];
+                float z1 = edgeZ1[i];
+                if ((z0 > z) != (z1 > z) && x < edgeX0[i] + (z - z0) * edgeSlope[i]) {
+                    isInside = !isInside;
+                }
+            }
+            return isInside;
+        }
+
+        /**
+         * Finds the edge closest to the projection of the world point, and stores the closest point
+         * of the edge and the horizontal normal of the edge pointing to the inside of the polygon,
+         * both in world space, into {@code outEdge}. Returns the distance to the edge, or a negative
+         * value if the polygon has no edge.
+         */
+        float findNearestEdge(float worldX, float worldY, float worldZ, float[] outEdge) {
+            if (edgeCount < 3) {
+                return -1f;
+            }
+
+            toPlaneSpace(worldX, worldY, worldZ, point);
+            float x = point[0];
+            float z = point[2];
+
+            float closestDistanceSquared = Float.MAX_VALUE;
+            float closestX = 0f;
+            float closestZ = 0f;
+            int closestEdge = 0;
+            for (int i = 0; i < edgeCount; i++) {
+                float x0 = edgeX0[i];
+                float z0 = edgeZ0[i];
+                float dx = edgeX1[i] - x0;
+                float dz = edgeZ1[i] - z0;
+                float lengthSquared = dx * dx + dz * dz;
+                float t = lengthSquared > 0f ? ((x - x0) * dx + (z - z0) * dz) / lengthSquared : 0f;
+                t = Math.max(0f, Math.min(1f, t));
+                float px = x0 + t * dx;
+                float pz = z0 + t * dz;
+                float distanceSquared = (x - px) * (x - px) + (z - pz) * (z - pz);
+                if (distanceSquared < closestDistanceSquared) {
+                    closestDistanceSquared = distanceSquared;
+                    closestX = px;
+                    closestZ = pz;
+                    closestEdge = i;
+                }
+            }
+
+            // The polygons of ARCore are convex around the center, the inner side faces the origin.
+            float dx = edgeX1[closestEdge] - edgeX0[closestEdge];
+            float dz = edgeZ1[closestEdge] - edgeZ0[closestEdge];
+            float length = (float) Math.sqrt(dx * dx + dz * dz);
+            float nx = length > 0f ? -dz / length : 0f;
+            float nz = length > 0f ? dx / length : 0f;
+            if (nx * -closestX + nz * -closestZ < 0f) {
+                nx = -nx;
+                nz = -nz;
+            }
+
+            toWorldSpace(closestX, 0f, closestZ, 0f, outEdge, 0);
+            toWorldSpace(nx, 0f, nz, 1f, outEdge, 3);
+            return (float) Math.sqrt(closestDistanceSquared);
+        }
+
+        void getCenterAndNormal(Vector3 outCenter, Vector3 outNormal) {
+            outCenter.set(tx, ty, tz);
+            toWorldSpace(0f, 1f, 0f, 1f, point, 0);
+            outNormal.set(point[0], point[1], point[2]);
+        }
+
+        /** Rotates the offset from the center by the conjugated rotation: v' = v + 2q x (q x v + w v). */
+        private void toPlaneSpace(float worldX, float worldY, float worldZ, float[] out) {
+            float vx = worldX - tx;
+            float vy = worldY - ty;
+            float vz = worldZ - tz;
+            float cx = qy * vz - qz * vy + qw * vx;
+            float cy = qz * vx - qx * vz + qw * vy;
+            float cz = qx * vy - qy * vx + qw * vz;
+            out[0] = vx + 2f * (qy * cz - qz * cy);
+            out[1] = vy + 2f * (qz * cx - qx * cz);
+            out[2] = vz + 2f * (qx * cy - qy * cx);
+        }
+
+        /** Rotates by the rotation of the center, and translates points but not directions. */
+        private void toWorldSpace(float x, float y, float z, float isDirection, float[] out, int offset) {
+            float cx = -qy * z + qz * y + qw * x;
+            float cy = -qz * x + qx * z + qw * y;
+            float cz = -qx * y + qy * x + qw * z;
+            float translationWeight = 1f - isDirection;
+            out[offset] = x + 2f * (-qy * cz + qz * cy) + tx * translationWeight;
+            out[offset + 1] = y + 2f * (-qz * cx + qx * cz) + ty * translationWeight;
+            out[offset + 2] = z + 2f * (-qx * cy + qy * cx) + tz * translationWeight;
+        }
+    }
+
+    private final HashMap<Plane, Polygon> polygons = new HashMap<>();
+
+    /**
+     * Drops the snapshots of the updated planes, they are taken again on their next query. Planes
+     * that stopped tracking or were subsumed are forgotten.
+     */
+    public void update(Collection<Plane> updatedPlanes) {
+        for (Plane plane : updatedPlanes) {
+            if (plane.getTrackingState() == TrackingState.STOPPED || plane.getSubsumedBy() != null) {
+                polygons.remove(plane);
+                continue;
+            }
+            Polygon polygon = polygons.get(plane);
+            if (polygon != null) {
+                polygon.isValid = false;
+            }
+        }
+    }
+
+    /** Same as {@link Plane#isPoseInPolygon(Pose)}, without the JNI call once the plane is cached. */
+    public boolean isPoseInPolygon(Plane plane, Pose pose) {
+        return isPointInPolygon(plane, pose.tx(), pose.ty(), pose.tz());
+    }
+
+    /** Returns true if the projection of the world point on the plane is inside its polygon. */
+    public boolean isPointInPolygon(Plane plane, float x, float y, float z) {
+        return getPolygon(plane).contains(x, y, z);
+    }
+
+    /**
+     * Finds the edge of the plane polygon closest to the projection of the world point.
+     *
+     * @param outEdge receives the closest point of the edge followed by the horizontal normal of the
+     *     edge pointing to the inside of the polygon, both in world space
+     * @return the distance from the projected point to the edge, or a negative value if the polygon
+     *     has no edge
+     */
+    public float findNearestEdge(Plane plane, float x, float y, float z, float[] outEdge) {
+        return getPolygon(plane).findNearestEdge(x, y, z, outEdge);
+    }
+
+    /** Returns true if the plane is tracking, without the JNI call once the plane is cached. */
+    public boolean isTracking(Plane plane) {
+        return getPolygon(plane).isTracking;
+    }
+
+    /**
+     * Writes the center of the plane and its normal, the y axis of its center pose, into the
+     * vectors, without the JNI calls of {@link Plane#getCenterPose()} once the plane is cached.
+     */
+    public void getCenterAndNormal(Plane plane, Vector3 outCenter, Vector3 outNormal) {
+        getPolygon(plane).getCenterAndNormal(outCenter, outNormal);
+    }
+
+    /** Writes the rotation of the center pose of the plane into {@code outRotation}, as x, y, z, w. */
+    public void getCenterRotation(Plane plane, float[] outRotation) {
+        Polygon polygon = getPolygon(plane);
+        // The cached rotation is conjugated.
+        outRotation[0] = -polygon.qx;
+        outRotation[1] = -polygon.qy;
+        outRotation[2] = -polygon.qz;
+        outRotation[3] = polygon.qw;
+    }
+
+    public void clear() {
+        polygons.clear();
+    }
+
+    private Polygon getPolygon(Plane plane) {
+        Polygon polygon = polygons.get(plane);
+        if (polygon == null) {
+            polygon = new Polygon();
+            polygons.put(plane, polygon);
+        }
+        if (!polygon.isValid) {
+            polygon.snapshot(plane);
+        }
+        return polygon;
+    }
+}
@@ -20,6 +20,8 @@ import android.gesture.Gesture;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.google.ar.sceneform.FrameTime;
+import com.google.ar.sceneform.Node;
 import com.google.ar.sceneform.math.Quaternion;
 import com.google.ar.sceneform.math.Vector3;
 
@@ -45,9 +47,21 @@ public class RotationController extends TransformationController<TwistGesture> {
   @Nullable
   private BaseSurroundingsListener surroundingsListener = null;
 
+  private static final float SPRING_FREQUENCY = 32.0f;
+
+  private final MotionSystem.Motion rotationMotion;
+  private final Quaternion targetRotation = new Quaternion();
+
+  @SuppressWarnings("initialization") // Suppress @UnderInitialization warning.
   public RotationController(
       BaseTransformableNode transformableNode, BaseGestureRecognizer<TwistGesture> gestureRecognizer) {
     super(transformableNode, gestureRecognizer);
+    rotationMotion =
+        transformableNode
+            .getTransformationSystem()
+            .getMotionSystem()
+            .createMotion(transformableNode, MotionSystem.Channel.ROTATION);
+    rotationMotion.setAngularFrequency(SPRING_FREQUENCY);
   }
 
   // ---------------------------------------------------------------------------------------
@@ -83,6 +97,32 @@ public class RotationController extends TransformationController<TwistGesture> {
   // Other
   // ---------------------------------------------------------------------------------------
 
+  @Override
+  public void onUpdated(Node node, FrameTime frameTime) {
+    if (!updateMotions(frameTime, rotationMotion.isActive()) && !isTransforming()) {
+      sleep();
+    }
+  }
+
+  @Override
+  public void onDeactivated(Node node) {
+    super.onDeactivated(node);
+    // The motion system must not keep writing into a node removed from the scene.
+    rotationMotion.cancel();
+  }
+
+  /**
+   * Sets the stiffness of the spring the node follows the twist with, in radians per second. The
+   * node covers most of the rotation in about {@code 4 / frequency} seconds.
+   */
+  public void setSpringFrequency(float frequency) {
+    rotationMotion.setAngularFrequency(frequency);
+  }
+
+  public float getSpringFrequency() {
+    return rotationMotion.getAngularFrequency();
+  }
+
   @Override
   public boolean canStartTransformation(TwistGesture gesture) {
     boolean selected = getTransformableNode().isSelected();
@@ -96,10 +136,14 @@ public class RotationController extends TransformationController<TwistGesture> {
   public void onContinueTransformation(TwistGesture gesture) {
     float rotationAmount = -gesture.getDeltaRotationDegrees() * settings.rotationRateDegrees;
     Quaternion rotationDelta = new Quaternion(Vector3.up(), rotationAmount);
-    Quaternion localrotation = getTransformableNode().getLocalRotation();
-    localrotation = Quaternion.multiply(localrotation, rotationDelta);
+    // Twists accumulate on the rotation the node is heading to.
     BaseTransformableNode baseTransformableNode = getTransformableNode();
-    baseTransformableNode.setLocalRotation(localrotation);
+    if (rotationMotion.isActive()) {
+      rotationMotion.getTarget(targetRotation);
+    } else {
+      targetRotation.set(baseTransformableNode.getLocalRotation());
+    }
+    rotationMotion.setTarget(Quaternion.multiply(targetRotation, rotationDelta).normalized());
 
     if (null != listener) {
       listener.onMovementStart(baseTransformableNode);
@@ -22,16 +22,15 @@ import androidx.annotation.Nullable;
 
 import com.google.ar.sceneform.FrameTime;
 import com.google.ar.sceneform.Node;
-import com.google.ar.sceneform.math.MathHelper;
 import com.google.ar.sceneform.math.Vector3;
 
-import static java.lang.StrictMath.abs;
-import static java.lang.StrictMath.max;
-
 /**
  * Manipulates the Scale of a {@link BaseTransformableNode} using a Pinch {@link
  * PinchGestureRecognizer}. Applies a tunable elastic bounce-back when scaling the {@link
  * BaseTransformableNode} beyond the min/max scale.
+ *
+ * <p>The scale is submitted to the {@link MotionSystem} of the transformation system, which smooths
+ * the pinch and the bounce-back. The controller sleeps once it has nothing left to update.
  */
 public class ScaleController extends TransformationController<PinchGesture> {
 
@@ -61,18 +60,27 @@ public class ScaleController extends TransformationController<PinchGesture> {
   private float currentScaleRatio = 0f;
 
   private static final float ELASTIC_RATIO_LIMIT = 0.8f;
-  private static final float LERP_SPEED = 8.0f;
+  private static final float SPRING_FREQUENCY = 16.0f;
+
+  private final MotionSystem.Motion scaleMotion;
+  private boolean isBouncingBack = false;
 
   @Nullable
   private InteractionListener listener = null;
   @Nullable
   private BaseSurroundingsListener surroundingsListener = null;
 
-  private boolean canUpdate = false;
-
+  @SuppressWarnings("initialization") // Suppress @UnderInitialization warning.
   public ScaleController(
       BaseTransformableNode transformableNode, BaseGestureRecognizer<PinchGesture> gestureRecognizer) {
     super(transformableNode, gestureRecognizer);
+    scaleMotion =
+        transformableNode
+            .getTransformationSystem()
+            .getMotionSystem()
+            .createMotion(transformableNode, MotionSystem.Channel.SCALE);
+    scaleMotion.setAngularFrequency(SPRING_FREQUENCY);
+    scaleMotion.setOnMotionFinishedListener(motion -> onBounceBackFinished());
   }
 
   // ---------------------------------------------------------------------------------------
@@ -121,47 +129,56 @@ public class ScaleController extends TransformationController<PinchGesture> {
 
   @Override
   public void onUpdated(Node node, FrameTime frameTime) {
-    if (isTransforming() || !canUpdate || !isEnabled()) {
-      return;
+    if (!updateMotions(frameTime, scaleMotion.isActive()) && !isTransforming()) {
+      sleep();
     }
+  }
 
-    float t = MathHelper.clamp(frameTime.getDeltaSeconds() * LERP_SPEED, 0, 1);
-    currentScaleRatio = MathHelper.lerp(currentScaleRatio, getClampedScaleRatio(), t);
-    float finalScaleValue = getFinalScale();
-
-    BaseTransformableNode baseTransformableNode = getTransformableNode();
-
-    if (getElasticDelta() == 0f && almostEqual(baseTransformableNode.getLocalScale().x, finalScaleValue, 0.01f)) {
-      canUpdate = false;
-      if (null != listener) {
-        listener.onMovementEnd(baseTransformableNode);
-      }
+  @Override
+  public void onDeactivated(Node node) {
+    super.onDeactivated(node);
+    // The motion system must not keep writing into a node removed from the scene. A bounce back,
+    // possibly started by the gesture cancelled above, ends on its target right away.
+    scaleMotion.cancel();
+    if (isBouncingBack) {
+      isBouncingBack = false;
+      float scaleValue = getFinalScale();
+      getTransformableNode().setLocalScale(new Vector3(scaleValue, scaleValue, scaleValue));
     }
+  }
+
+  /**
+   * Sets the stiffness of the spring the scale follows the pinch and bounces back with, in radians
+   * per second. The scale covers most of the distance to its target in about {@code 4 / frequency}
+   * seconds.
+   */
+  public void setSpringFrequency(float frequency) {
+    scaleMotion.setAngularFrequency(frequency);
+  }
 
-    Vector3 finalScale = new Vector3(finalScaleValue, finalScaleValue, finalScaleValue);
-    baseTransformableNode.setLocalScale(finalScale);
+  public float getSpringFrequency() {
+    return scaleMotion.getAngularFrequency();
   }
 
   @Override
   public boolean canStartTransformation(PinchGesture gesture) {
     BaseTransformableNode baseTransformableNode = getTransformableNode();
-    canUpdate = baseTransformableNode.isSelected();
-    if (canUpdate) {
+    boolean canStart = baseTransformableNode.isSelected();
+    if (canStart) {
+      isBouncingBack = false;
       if (null != listener) {
         listener.onMovementStart(baseTransformableNode);
       }
     }
 
-    return canUpdate;
+    return canStart;
   }
 
   @Override
   public void onContinueTransformation(PinchGesture gesture) {
     currentScaleRatio += gesture.gapDeltaInches() * settings.sensitivity;
 
-    float finalScaleValue = getFinalScale();
-    Vector3 finalScale = new Vector3(finalScaleValue, finalScaleValue, finalScaleValue);
-    getTransformableNode().setLocalScale(finalScale);
+    setTargetScale(getFinalScale());
 
     if (currentScaleRatio < -ELASTIC_RATIO_LIMIT
         || currentScaleRatio > (1.0f + ELASTIC_RATIO_LIMIT)) {
@@ -175,11 +192,31 @@ public class ScaleController extends TransformationController<PinchGesture> {
 
   @Override
   public void onEndTransformation(PinchGesture gesture) {
+    // Bounces back within the limits.
+    currentScaleRatio = getClampedScaleRatio();
+    setTargetScale(getFinalScale());
+    isBouncingBack = true;
+
     if (listener != null) {
       listener.onMovementEnd(getTransformableNode());
     }
   }
 
+  private void onBounceBackFinished() {
+    if (!isBouncingBack) {
+      return;
+    }
+
+    isBouncingBack = false;
+    if (null != listener) {
+      listener.onMovementEnd(getTransformableNode());
+    }
+  }
+
+  private void setTargetScale(float scaleValue) {
+    scaleMotion.setTarget(scaleValue, scaleValue, scaleValue);
+  }
+
   private float getScaleDelta() {
     float scaleDelta = settings.maxScale - settings.minScale;
 
@@ -212,8 +249,4 @@ public class ScaleController extends TransformationController<PinchGesture> {
 
     return (1.0f - (1.0f / ((Math.abs(overRatio) * settings.elasticity) + 1.0f))) * Math.signum(overRatio);
   }
-
-  private boolean almostEqual(Float value1, Float value2, Float equalityRatio) {
-    return (abs(value1) < 1e-4 && abs(value2) < 1e-4) || abs(value1-value2) / max(abs(value1), abs(value2)) < equalityRatio;
-  }
 }
@@ -0,0 +1,439 @@
+/*
+ * Copyright 2018 Google LLC All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.ux;
+
+import androidx.annotation.Nullable;
+import com.google.ar.sceneform.Camera;
+import com.google.ar.sceneform.collision.Box;
+import com.google.ar.sceneform.collision.CollisionShape;
+import com.google.ar.sceneform.collision.Sphere;
+import com.google.ar.sceneform.math.Matrix;
+import com.google.ar.sceneform.math.Vector3;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Screen-space acceleration structure for picking the active {@link BaseTransformableNode}s of a
+ * {@link TransformationSystem}.
+ *
+ * <p>The collision shape of every node is bounded by a sphere which is projected to a circle on the
+ * screen, and the circles are binned into a uniform grid of square cells. Point picks and rectangle
+ * or lasso selections then only visit the nodes binned in the cells they touch instead of every
+ * node of the scene.
+ *
+ * <p>The grid is invalidated every frame by {@link TransformationSystem#updatePickingGrid(Camera,
+ * int, int)} and rebuilt by the first query of the frame, so frames without picking cost nothing.
+ */
+public class ScreenPickingGrid {
+  private static final float CELL_SIZE_PIXELS = 64.0f;
+  private static final float MIN_DEPTH = 0.01f;
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final ArrayList<BaseTransformableNode> nodes = new ArrayList<>();
+  private final Matrix viewProjectionMatrix = new Matrix();
+
+  @Nullable private Camera camera;
+  private int width;
+  private int height;
+  private boolean isDirty = true;
+
+  // Per node data, indexed like nodes. The local bounds are cached for the collision shape they
+  // were computed from, the shape getters allocate.
+  private CollisionShape[] boundedShapes = new CollisionShape[INITIAL_CAPACITY];
+  private float[] localBounds = new float[INITIAL_CAPACITY * 4];
+  private float[] screenX = new float[INITIAL_CAPACITY];
+  private float[] screenY = new float[INITIAL_CAPACITY];
+  private float[] screenRadius = new float[INITIAL_CAPACITY];
+  private float[] depth = new float[INITIAL_CAPACITY];
+  private boolean[] isVisible = new boolean[INITIAL_CAPACITY];
+  private int[] queryStamps = new int[INITIAL_CAPACITY];
+  private int queryStamp = 0;
+
+  // Cells are stored row by row, the nodes of cell c are cellItems[cellStart[c]..cellStart[c+1]).
+  private int columns;
+  private int rows;
+  private int[] cellStart = new int[1];
+  private int[] cellCursor = new int[1];
+  private int[] cellItems = new int[INITIAL_CAPACITY];
+
+  /**
+   * Sets the camera and the size in pixels of the view used for the current frame, and schedules a
+   * rebuild of the grid.
+   */
+  public void invalidate(@Nullable Camera camera, int width, int height) {
+    this.camera = camera;
+    this.width = width;
+    this.height = height;
+    isDirty = true;
+  }
+
+  /** Returns true once the grid was given a camera and a view size to project the nodes with. */
+  boolean hasCamera() {
+    return camera != null && width > 0 && height > 0;
+  }
+
+  /** Returns the number of nodes tracked by the grid. */
+  public int getNodeCount() {
+    return nodes.size();
+  }
+
+  /**
+   * Returns the node closest to the camera whose projected bounds contain the screen point, or
+   * null if there is none.
+   */
+  @Nullable
+  public BaseTransformableNode pick(float x, float y) {
+    rebuildIfNeeded();
+    if (x < 0.0f || y < 0.0f || x >= width || y >= height) {
+      return null;
+    }
+
+    int cell = rowOf(y) * columns + columnOf(x);
+    int closest = -1;
+    for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+      int item = cellItems[i];
+      float dx = x - screenX[item];
+      float dy = y - screenY[item];
+      float radius = screenRadius[item];
+      if (dx * dx + dy * dy <= radius * radius && (closest < 0 || depth[item] < depth[closest])) {
+        closest = item;
+      }
+    }
+
+    return closest < 0 ? null : nodes.get(closest);
+  }
+
+  /**
+   * Adds to {@code outNodes} the nodes whose projected center lies inside the screen rectangle.
+   *
+   * @return the number of nodes added
+   */
+  public int pickRect(
+      float left,
+      float top,
+      float right,
+      float bottom,
+      List<? super BaseTransformableNode> outNodes) {
+    rebuildIfNeeded();
+    float minX = Math.min(left, right);
+    float maxX = Math.max(left, right);
+    float minY = Math.min(top, bottom);
+    float maxY = Math.max(top, bottom);
+    return pickArea(minX, minY, maxX, maxY, null, 0, outNodes);
+  }
+
+  /**
+   * Adds to {@code outNodes} the nodes whose projected center lies inside the closed polygon drawn
+   * on the screen, following the even-odd rule.
+   *
+   * @param points the vertices of the polygon, as consecutive x and y screen coordinates
+   * @param pointCount the number of vertices to read from {@code points}
+   * @return the number of nodes added
+   */
+  public int pickLasso(
+      float[] points, int pointCount, List<? super BaseTransformableNode> outNodes) {
+    rebuildIfNeeded();
+    if (pointCount < 3) {
+      return 0;
+    }
+
+    float minX = Float.MAX_VALUE;
+    float minY = Float.MAX_VALUE;
+    float maxX = -Float.MAX_VALUE;
+    float maxY = -Float.MAX_VALUE;
+    for (int i = 0; i < pointCount; i++) {
+      float x = points[i * 2];
+      float y = points[i * 2 + 1];
+      minX = Math.min(minX, x);
+      maxX = Math.max(maxX, x);
+      minY = Math.min(minY, y);
+      maxY = Math.max(maxY, y);
+    }
+
+    return pickArea(minX, minY, maxX, maxY, points, pointCount, outNodes);
+  }
+
+  void add(BaseTransformableNode node) {
+    int index = nodes.size();
+    ensureCapacity(index + 1);
+    nodes.add(node);
+    boundedShapes[index] = null;
+    isDirty = true;
+  }
+
+  void remove(BaseTransformableNode node) {
+    int index = nodes.indexOf(node);
+    if (index < 0) {
+      return;
+    }
+
+    // Move the last node into the hole, the order of the nodes doesn't matter.
+    int last = nodes.size() - 1;
+    nodes.set(index, nodes.get(last));
+    nodes.remove(last);
+    boundedShapes[index] = boundedShapes[last];
+    System.arraycopy(localBounds, last * 4, localBounds, index * 4, 4);
+    boundedShapes[last] = null;
+    isDirty = true;
+  }
+
+  private int pickArea(
+      float minX,
+      float minY,
+      float maxX,
+      float maxY,
+      @Nullable float[] polygon,
+      int polygonPointCount,
+      List<? super BaseTransformableNode> outNodes) {
+    if (maxX < 0.0f || maxY < 0.0f || minX >= width || minY >= height) {
+      return 0;
+    }
+
+    // A node spanning several cells is binned in each of them, stamp it to report it once.
+    nextQueryStamp();
+
+    int added = 0;
+    int minColumn = columnOf(minX);
+    int maxColumn = columnOf(maxX);
+    int maxRow = rowOf(maxY);
+    for (int row = rowOf(minY); row <= maxRow; row++) {
+      for (int column = minColumn; column <= maxColumn; column++) {
+        int cell = row * columns + column;
+        for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+          int item = cellItems[i];
+          if (queryStamps[item] == queryStamp) {
+            continue;
+          }
+          queryStamps[item] = queryStamp;
+
+          float x = screenX[item];
+          float y = screenY[item];
+          if (x < minX || x > maxX || y < minY || y > maxY) {
+            continue;
+          }
+          if (polygon != null && !isInsidePolygon(x, y, polygon, polygonPointCount)) {
+            continue;
+          }
+
+          outNodes.add(nodes.get(item));
+          added++;
+        }
+      }
+    }
+
+    return added;
+  }
+
+  private void rebuildIfNeeded() {
+    if (!isDirty) {
+      return;
+    }
+    isDirty = false;
+
+    columns = Math.max(1, (int) Math.ceil(width / CELL_SIZE_PIXELS));
+    rows = Math.max(1, (int) Math.ceil(height / CELL_SIZE_PIXELS));
+    int cellCount = columns * rows;
+    if (cellStart.length < cellCount + 1) {
+      cellStart = new int[cellCount + 1];
+      cellCursor = new int[cellCount + 1];
+    }
+    Arrays.fill(cellStart, 0, cellCount + 1, 0);
+
+    Camera camera = this.camera;
+    int nodeCount = nodes.size();
+    if (camera == null || width <= 0 || height <= 0) {
+      Arrays.fill(isVisible, 0, nodeCount, false);
+      return;
+    }
+
+    Matrix projectionMatrix = camera.getProjectionMatrix();
+    Matrix.multiply(projectionMatrix, camera.getViewMatrix(), viewProjectionMatrix);
+    // Screen pixels per meter at a depth of one meter.
+    float pixelsPerMeter =
+        Math.max(
+            Math.abs(projectionMatrix.data[0]) * width, Math.abs(projectionMatrix.data[5]) * height)
+            * 0.5f;
+
+    // Count the nodes of every cell, shifted by one so that the prefix sum gives the cell starts.
+    for (int i = 0; i < nodeCount; i++) {
+      isVisible[i] = project(i, viewProjectionMatrix.data, pixelsPerMeter);
+      if (!isVisible[i]) {
+        continue;
+      }
+
+      int maxColumn = columnOf(screenX[i] + screenRadius[i]);
+      int maxRow = rowOf(screenY[i] + screenRadius[i]);
+      for (int row = rowOf(screenY[i] - screenRadius[i]); row <= maxRow; row++) {
+        for (int column = columnOf(screenX[i] - screenRadius[i]); column <= maxColumn; column++) {
+          cellStart[row * columns + column + 1]++;
+        }
+      }
+    }
+
+    for (int cell = 1; cell <= cellCount; cell++) {
+      cellStart[cell] += cellStart[cell - 1];
+    }
+    if (cellItems.length < cellStart[cellCount]) {
+      cellItems = new int[Math.max(cellStart[cellCount], cellItems.length * 2)];
+    }
+    System.arraycopy(cellStart, 0, cellCursor, 0, cellCount);
+
+    for (int i = 0; i < nodeCount; i++) {
+      if (!isVisible[i]) {
+        continue;
+      }
+
+      int maxColumn = columnOf(screenX[i] + screenRadius[i]);
+      int maxRow = rowOf(screenY[i] + screenRadius[i]);
+      for (int row = rowOf(screenY[i] - screenRadius[i]); row <= maxRow; row++) {
+        for (int column = columnOf(screenX[i] - screenRadius[i]); column <= maxColumn; column++) {
+          cellItems[cellCursor[row * columns + column]++] = i;
+        }
+      }
+    }
+  }
+
+  /** Projects the bounds of the node at {@code index}. Returns false if they are off screen. */
+  private boolean project(int index, float[] viewProjection, float pixelsPerMeter) {
+    BaseTransformableNode node = nodes.get(index);
+    CollisionShape shape = node.getCollisionShape();
+    if (shape != boundedShapes[index]) {
+      boundedShapes[index] = shape;
+      updateLocalBounds(index, shape);
+    }
+    if (shape == null) {
+      return false;
+    }
+
+    float localX = localBounds[index * 4];
+    float localY = localBounds[index * 4 + 1];
+    float localZ = localBounds[index * 4 + 2];
+    float localRadius = localBounds[index * 4 + 3];
+
+    float[] model = node.getWorldModelMatrix().data;
+    float worldX = model[0] * localX + model[4] * localY + model[8] * localZ + model[12];
+    float worldY = model[1] * localX + model[5] * localY + model[9] * localZ + model[13];
+    float worldZ = model[2] * localX + model[6] * localY + model[10] * localZ + model[14];
+    float maxScaleSquared =
+        Math.max(
+            model[0] * model[0] + model[1] * model[1] + model[2] * model[2],
+            Math.max(
+                model[4] * model[4] + model[5] * model[5] + model[6] * model[6],
+                model[8] * model[8] + model[9] * model[9] + model[10] * model[10]));
+    float worldRadius = localRadius * (float) Math.sqrt(maxScaleSquared);
+
+    float clipX =
+        viewProjection[0] * worldX
+            + viewProjection[4] * worldY
+            + viewProjection[8] * worldZ
+            + viewProjection[12];
+    float clipY =
+        viewProjection[1] * worldX
+            + viewProjection[5] * worldY
+            + viewProjection[9] * worldZ
+            + viewProjection[13];
+    float clipW =
+        viewProjection[3] * worldX
+            + viewProjection[7] * worldY
+            + viewProjection[11] * worldZ
+            + viewProjection[15];
+    if (clipW < MIN_DEPTH) {
+      return false;
+    }
+
+    float x = (clipX / clipW + 1.0f) * 0.5f * width;
+    float y = (1.0f - clipY / clipW) * 0.5f * height;
+    float radius = worldRadius * pixelsPerMeter / clipW;
+    if (x + radius < 0.0f || y + radius < 0.0f || x - radius >= width || y - radius >= height) {
+      return false;
+    }
+
+    screenX[index] = x;
+    screenY[index] = y;
+    screenRadius[index] = radius;
+    depth[index] = clipW;
+    return true;
+  }
+
+  private void updateLocalBounds(int index, @Nullable CollisionShape shape) {
+    Vector3 center;
+    float radius;
+    if (shape instanceof Box) {
+      Box box = (Box) shape;
+      center = box.getCenter();
+      radius = box.getExtents().length();
+    } else if (shape instanceof Sphere) {
+      Sphere sphere = (Sphere) shape;
+      center = sphere.getCenter();
+      radius = sphere.getRadius();
+    } else {
+      center = Vector3.zero();
+      radius = 0.0f;
+    }
+
+    localBounds[index * 4] = center.x;
+    localBounds[index * 4 + 1] = center.y;
+    localBounds[index * 4 + 2] = center.z;
+    localBounds[index * 4 + 3] = radius;
+  }
+
+  private int columnOf(float x) {
+    return Math.max(0, Math.min(columns - 1, (int) (x / CELL_SIZE_PIXELS)));
+  }
+
+  private int rowOf(float y) {
+    return Math.max(0, Math.min(rows - 1, (int) (y / CELL_SIZE_PIXELS)));
+  }
+
+  private void nextQueryStamp() {
+    queryStamp++;
+    if (queryStamp == Integer.MAX_VALUE) {
+      Arrays.fill(queryStamps, 0);
+      queryStamp = 1;
+    }
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (screenX.length >= capacity) {
+      return;
+    }
+
+    int newCapacity = Math.max(capacity, screenX.length * 2);
+    boundedShapes = Arrays.copyOf(boundedShapes, newCapacity);
+    localBounds = Arrays.copyOf(localBounds, newCapacity * 4);
+    screenX = Arrays.copyOf(screenX, newCapacity);
+    screenY = Arrays.copyOf(screenY, newCapacity);
+    screenRadius = Arrays.copyOf(screenRadius, newCapacity);
+    depth = Arrays.copyOf(depth, newCapacity);
+    isVisible = Arrays.copyOf(isVisible, newCapacity);
+    queryStamps = Arrays.copyOf(queryStamps, newCapacity);
+  }
+
+  private static boolean isInsidePolygon(float x, float y, float[] polygon, int pointCount) {
+    boolean isInside = false;
+    for (int i = 0, j = pointCount - 1; i < pointCount; j = i++) {
+      float xi = polygon[i * 2];
+      float yi = polygon[i * 2 + 1];
+      float xj = polygon[j * 2];
+      float yj = polygon[j * 2 + 1];
+      if ((yi > y) != (yj > y) && x < (xj - xi) * (y - yi) / (yj - yi) + xi) {
+        isInside = !isInside;
+      }
+    }
+    return isInside;
+  }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2018 Google LLC All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.ux;
+
+import com.google.ar.core.Plane;
+import com.google.ar.core.Pose;
+import com.google.ar.sceneform.math.Quaternion;
+import com.google.ar.sceneform.math.Vector3;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Snaps the pose of a dragged {@link BaseTransformableNode}, owned by a {@link
+ * TransformationSystem} and used by {@link TranslationControllerWithPlaneChange} when snapping is
+ * enabled.
+ *
+ * <p>Snaps are applied in this order, each of them refining the previous ones:
+ *
+ * <ul>
+ *   <li>grid: the position is rounded to a grid of {@link #getGridSize()} in the space of the
+ *       plane, disabled by default;
+ *   <li>edge: the bounds of the node are moved against the nearest edge of the plane polygon;
+ *   <li>wall: the back of the node is moved against the nearest wall and turned away from it;
+ *   <li>node: the sides of the bounds of the node are aligned with, or moved against, the sides of
+ *       the bounds of the nearby nodes.
+ * </ul>
+ *
+ * <p>A snap only applies within {@link #getSnapDistance()}. Nearby nodes are found through the
+ * {@link FootprintHash} of the transformation system, so the cost of a snap doesn't grow with the
+ * number of nodes of the scene.
+ */
+public class SnappingEngine {
+  public static final int SNAP_NONE = 0;
+  public static final int SNAP_GRID = 1;
+  public static final int SNAP_EDGE = 1 << 1;
+  public static final int SNAP_WALL = 1 << 2;
+  public static final int SNAP_NODE = 1 << 3;
+
+  public static final float DEFAULT_SNAP_DISTANCE_METERS = 0.05f;
+
+  private final FootprintHash footprintHash;
+  private float gridSize = 0.0f;
+  private float snapDistance = DEFAULT_SNAP_DISTANCE_METERS;
+  private boolean isEdgeSnapEnabled = true;
+  private boolean isWallSnapEnabled = true;
+  private boolean isNodeSnapEnabled = true;
+
+  private final float[] bounds = new float[6];
+  private final float[] otherBounds = new float[6];
+  private final float[] edge = new float[6];
+  private final float[] point = new float[3];
+  private final float[] planePoint = new float[3];
+  private final Vector3 wallNormal = new Vector3();
+  private final ArrayList<BaseTransformableNode> nearbyNodes = new ArrayList<>();
+
+  SnappingEngine(FootprintHash footprintHash) {
+    this.footprintHash = footprintHash;
+  }
+
+  /** Sets the size in meters of the grid of the planes, 0 by default which disables grid snaps. */
+  public void setGridSize(float gridSize) {
+    this.gridSize = Math.max(0.0f, gridSize);
+  }
+
+  public float getGridSize() {
+    return gridSize;
+  }
+
+  /**
+   * Sets the largest distance in meters a snap moves the node, {@link
+   * #DEFAULT_SNAP_DISTANCE_METERS} by default.
+   */
+  public void setSnapDistance(float snapDistance) {
+    this.snapDistance = Math.max(0.0f, snapDistance);
+  }
+
+  public float getSnapDistance() {
+    return snapDistance;
+  }
+
+  public void setEdgeSnapEnabled(boolean enabled) {
+    isEdgeSnapEnabled = enabled;
+  }
+
+  public boolean isEdgeSnapEnabled() {
+    return isEdgeSnapEnabled;
+  }
+
+  public void setWallSnapEnabled(boolean enabled) {
+    isWallSnapEnabled = enabled;
+  }
+
+  public boolean isWallSnapEnabled() {
+    return isWallSnapEnabled;
+  }
+
+  public void setNodeSnapEnabled(boolean enabled) {
+    isNodeSnapEnabled = enabled;
+  }
+
+  public boolean isNodeSnapEnabled() {
+    return isNodeSnapEnabled;
+  }
+
+  /**
+   * Snaps the desired pose of the node dragged on the plane, in place.
+   *
+   * @param position the desired world position of the node, snapped in place
+   * @param rotation the desired world rotation of the node, changed in place by wall snaps
+   * @return the snaps that were applied, as a combination of the {@code SNAP_} flags
+   */
+  public int snap(
+      BaseTransformableNode node,
+      Plane plane,
+      DetectedARPlanes detectedPlanes,
+      Vector3 position,
+      Quaternion rotation) {
+    int snaps = SNAP_NONE;
+    if (gridSize > 0.0f) {
+      snapToGrid(plane, position);
+      snaps |= SNAP_GRID;
+    }
+    if (isEdgeSnapEnabled && snapToEdge(node, plane, detectedPlanes, position, rotation)) {
+      snaps |= SNAP_EDGE;
+    }
+    if (isWallSnapEnabled && snapToWall(node, detectedPlanes.getWallPlanes(), position, rotation)) {
+      snaps |= SNAP_WALL;
+    }
+    if (isNodeSnapEnabled && snapToNodes(node, position, rotation)) {
+      snaps |= SNAP_NODE;
+    }
+    return snaps;
+  }
+
+  private void snapToGrid(Plane plane, Vector3 position) {
+    Pose centerPose = plane.getCenterPose();
+    point[0] = position.x;
+    point[1] = position.y;
+    point[2] = position.z;
+    centerPose.inverse().transformPoint(point, 0, planePoint, 0);
+    planePoint[0] = Math.round(planePoint[0] / gridSize) * gridSize;
+    planePoint[2] = Math.round(planePoint[2] / gridSize) * gridSize;
+    centerPose.transformPoint(planePoint, 0, point, 0);
+    position.set(point[0], point[1], point[2]);
+  }
+
+  private boolean snapToEdge(
+      BaseTransformableNode node,
+      Plane plane,
+      DetectedARPlanes detectedPlanes,
+      Vector3 position,
+      Quaternion rotation) {
+    PlanePolygonCache polygonCache = detectedPlanes.getPolygonCache();
+    // The distance to the edge is unsigned, the snap would push a position outside the polygon,
+    // as allowed on the first floor plane, further out.
+    if (!polygonCache.isPointInPolygon(plane, position.x, position.y, position.z)) {
+      return false;
+    }
+
+    float distance = polygonCache.findNearestEdge(plane, position.x, position.y, position.z, edge);
+    if (distance < 0.0f) {
+      return false;
+    }
+
+    // Gap between the bounds and the edge, measured along the inner normal of the edge.
+    footprintHash.computeBounds(node, position, rotation, bounds);
+    float nx = edge[3];
+    float nz = edge[5];
+    float gap = distance + centerOffset(bounds, position, nx, nz) - halfSize(bounds, nx, nz);
+    if (Math.abs(gap) > snapDistance) {
+      return false;
+    }
+
+    position.set(position.x - nx * gap, position.y, position.z - nz * gap);
+    return true;
+  }
+
+  private boolean snapToWall(
+      BaseTransformableNode node, List<Plane> walls, Vector3 position, Quaternion rotation) {
+    Plane closestWall = null;
+    float closestGap = Float.MAX_VALUE;
+    for (int i = 0; i < walls.size(); i++) {
+      Plane wall = walls.get(i);
+      Pose centerPose = wall.getCenterPose();
+      float[] normal = centerPose.getYAxis();
+      float dx = position.x - centerPose.tx();
+      float dz = position.z - centerPose.tz();
+
+      // The node must be in front of the wall, and not past its sides.
+      float[] side = centerPose.getXAxis();
+      float sideOffset = dx * side[0] + dz * side[2];
+      if (Math.abs(sideOffset) > wall.getExtentX() * 0.5f + snapDistance) {
+        continue;
+      }
+
+      float distance = dx * normal[0] + dz * normal[2];
+      if (distance < 0.0f) {
+        continue;
+      }
+
+      footprintHash.computeBounds(node, position, rotation, bounds);
+      float gap =
+          distance
+              + centerOffset(bounds, position, normal[0], normal[2])
+              - halfSize(bounds, normal[0], normal[2]);
+      if (Math.abs(gap) <= snapDistance && Math.abs(gap) < Math.abs(closestGap)) {
+        closestWall = wall;
+        closestGap = gap;
+        wallNormal.set(normal[0], 0.0f, normal[2]);
+      }
+    }
+
+    if (closestWall == null) {
+      return false;
+    }
+
+    // Faces away from the wall, then measures the bounds again with the new rotation.
+    Vector3 forward = wallNormal.normalized();
+    rotation.set(Quaternion.lookRotation(forward, Vector3.up()));
+    Pose centerPose = closestWall.getCenterPose();
+    float distance =
+        (position.x - centerPose.tx()) * forward.x + (position.z - centerPose.tz()) * forward.z;
+    footprintHash.computeBounds(node, position, rotation, bounds);
+    float gap =
+        distance
+            + centerOffset(bounds, position, forward.x, forward.z)
+            - halfSize(bounds, forward.x, forward.z);
+    position.set(position.x - forward.x * gap, position.y, position.z - forward.z * gap);
+    return true;
+  }
+
+  private boolean snapToNodes(BaseTransformableNode node, Vector3 position, Quaternion rotation) {
+    footprintHash.computeBounds(node, position, rotation, bounds);
+    nearbyNodes.clear();
+    footprintHash.query(
+        bounds[0] - snapDistance,
+        bounds[1],
+        bounds[2] - snapDistance,
+        bounds[3] + snapDistance,
+        bounds[4],
+        bounds[5] + snapDistance,
+        node,
+        nearbyNodes);
+
+    float offsetX = Float.MAX_VALUE;
+    float offsetZ = Float.MAX_VALUE;
+    for (int i = 0; i < nearbyNodes.size(); i++) {
+      footprintHash.getBounds(nearbyNodes.get(i), otherBounds);
+      offsetX = closestOffset(offsetX, bounds[0], bounds[3], otherBounds[0], otherBounds[3]);
+      offsetZ = closestOffset(offsetZ, bounds[2], bounds[5], otherBounds[2], otherBounds[5]);
+    }
+    nearbyNodes.clear();
+
+    boolean hasSnapped = false;
+    if (Math.abs(offsetX) <= snapDistance) {
+      position.set(position.x + offsetX, position.y, position.z);
+      hasSnapped = true;
+    }
+    if (Math.abs(offsetZ) <= snapDistance) {
+      position.set(position.x, position.y, position.z + offsetZ);
+      hasSnapped = true;
+    }
+    return hasSnapped;
+  }
+
+  /**
+   * Returns the smallest of {@code offset} and of the offsets that put a side of {@code [min, max]}
+   * against or in line with a side of {@code [otherMin, otherMax]}.
+   */
+  private static float closestOffset(
+      float offset, float min, float max, float otherMin, float otherMax) {
+    offset = smallest(offset, otherMax - min);
+    offset = smallest(offset, otherMin - max);
+    offset = smallest(offset, otherMin - min);
+    return smallest(offset, otherMax - max);
+  }
+
+  private static float smallest(float a, float b) {
+    return Math.abs(b) < Math.abs(a) ? b : a;
+  }
+
+  /** Returns the offset from the position to the center of the bounds along the direction. */
+  private static float centerOffset(
+      float[] bounds, Vector3 position, float directionX, float directionZ) {
+    return ((bounds[0] + bounds[3]) * 0.5f - position.x) * directionX
+        + ((bounds[2] + bounds[5]) * 0.5f - position.z) * directionZ;
+  }
+
+  /** Returns the half size of the bounds along the horizontal direction. */
+  private static float halfSize(float[] bounds, float directionX, float directionZ) {
+    return (bounds[3] - bounds[0]) * 0.5f * Math.abs(directionX)
+        + (bounds[5] - bounds[2]) * 0.5f * Math.abs(directionZ);
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2018 Google LLC All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.ux;
+
+import android.util.Log;
+import android.view.MotionEvent;
+import android.view.ViewConfiguration;
+import androidx.annotation.Nullable;
+import com.google.ar.sceneform.HitTestResult;
+import com.google.ar.sceneform.math.Vector3;
+
+/**
+ * Gesture for when the user taps the touch screen with a single finger.
+ *
+ * <p>A tap has no duration: it starts and finishes when the finger is lifted, so listeners only
+ * receive {@link BaseGestureRecognizer.OnGestureStartedListener#onGestureStarted}.
+ */
+public class TapGesture extends BaseGesture<TapGesture> {
+  private static final String TAG = TapGesture.class.getSimpleName();
+
+  /** Interface definition for callbacks to be invoked by a {@link TapGesture}. */
+  public interface OnGestureEventListener extends BaseGesture.OnGestureEventListener<TapGesture> {}
+
+  private final Vector3 position = new Vector3();
+  private final float slopPixelsSquared;
+  private int pointerId = MotionEvent.INVALID_POINTER_ID;
+  private long downTime;
+  @Nullable private MotionEvent motionEvent;
+
+  private static final float SLOP_INCHES = 0.1f;
+  private static final boolean TAP_GESTURE_DEBUG = false;
+
+  public TapGesture(
+      GesturePointersUtility gesturePointersUtility,
+      HitTestResult hitTestResult,
+      MotionEvent motionEvent) {
+    this(gesturePointersUtility);
+    init(hitTestResult, motionEvent);
+  }
+
+  /** Creates an uninitialized gesture for the pool of {@link TapGestureRecognizer}. */
+  TapGesture(GesturePointersUtility gesturePointersUtility) {
+    super(gesturePointersUtility);
+
+    float slopPixels = gesturePointersUtility.inchesToPixels(SLOP_INCHES);
+    slopPixelsSquared = slopPixels * slopPixels;
+  }
+
+  /** Starts tracking the pointer that went down in the given motion event. */
+  void init(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    pointerId = motionEvent.getPointerId(motionEvent.getActionIndex());
+    GesturePointersUtility.motionEventToPosition(motionEvent, pointerId, position);
+    downTime = motionEvent.getEventTime();
+    targetNode = hitTestResult.getNode();
+    if (TAP_GESTURE_DEBUG) {
+      debugLog("Created: " + pointerId);
+    }
+  }
+
+  /** Writes the screen position of the tap into {@code outPosition}. */
+  public void getPosition(Vector3 outPosition) {
+    checkNotRecycled();
+    outPosition.set(position);
+  }
+
+  /**
+   * Returns the motion event that completed the tap. Only valid while the listeners are notified,
+   * the event belongs to the caller of {@link TransformationSystem#onTouch}.
+   */
+  @Nullable
+  public MotionEvent getMotionEvent() {
+    checkNotRecycled();
+    return motionEvent;
+  }
+
+  @Override
+  protected boolean isUsingRetainedPointerId() {
+    return gesturePointersUtility.isPointerIdRetained(pointerId);
+  }
+
+  @Override
+  protected boolean canStart(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    int action = motionEvent.getActionMasked();
+
+    // The pointer was claimed by another gesture, or a second finger went down.
+    if (gesturePointersUtility.isPointerIdRetained(pointerId)
+        || action == MotionEvent.ACTION_CANCEL
+        || action == MotionEvent.ACTION_POINTER_DOWN) {
+      cancel();
+      return false;
+    }
+
+    if (motionEvent.getEventTime() - downTime >= ViewConfiguration.getLongPressTimeout()) {
+      cancel();
+      return false;
+    }
+
+    int index = motionEvent.findPointerIndex(pointerId);
+    if (index < 0) {
+      cancel();
+      return false;
+    }
+
+    float dx = motionEvent.getX(index) - position.x;
+    float dy = motionEvent.getY(index) - position.y;
+    if (dx * dx + dy * dy >= slopPixelsSquared) {
+      cancel();
+      return false;
+    }
+
+    return action == MotionEvent.ACTION_UP;
+  }
+
+  @Override
+  protected void onStart(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    debugLog("Started: " + pointerId);
+    this.motionEvent = motionEvent;
+    complete();
+  }
+
+  @Override
+  protected boolean updateGesture(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    return false;
+  }
+
+  @Override
+  protected void reset() {
+    super.reset();
+    pointerId = MotionEvent.INVALID_POINTER_ID;
+    position.setZero();
+    downTime = 0;
+    motionEvent = null;
+  }
+
+  @Override
+  protected void onCancel() {
+    debugLog("Cancelled: " + pointerId);
+  }
+
+  @Override
+  protected void onFinish() {
+    debugLog("Finished: " + pointerId);
+  }
+
+  @Override
+  void writeState(GestureState state) {
+    state.values[0] = position.x;
+    state.values[1] = position.y;
+    state.setMotionEvent(motionEvent);
+  }
+
+  @Override
+  void readState(GestureState state) {
+    position.set(state.values[0], state.values[1], 0.0f);
+    motionEvent = state.motionEvent;
+  }
+
+  @Override
+  protected TapGesture getSelf() {
+    return this;
+  }
+
+  private static void debugLog(String log) {
+    if (TAP_GESTURE_DEBUG) {
+      Log.d(TAG, "TapGesture:[" + log + "]");
+    }
+  }
+}
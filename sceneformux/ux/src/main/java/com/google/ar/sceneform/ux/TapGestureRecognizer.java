@@ -0,0 +1,50 @@
+/*
+ * Copyright 2018 Google LLC All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.ux;
+
+import android.view.MotionEvent;
+import com.google.ar.sceneform.HitTestResult;
+
+/** Gesture Recognizer for when the user taps the touch screen with a single finger. */
+public class TapGestureRecognizer extends BaseGestureRecognizer<TapGesture> {
+  /** Interface definition for a callbacks to be invoked when a {@link TapGesture} starts. */
+  public interface OnGestureStartedListener
+      extends BaseGestureRecognizer.OnGestureStartedListener<TapGesture> {}
+
+  public TapGestureRecognizer(GesturePointersUtility gesturePointersUtility) {
+    super(gesturePointersUtility);
+  }
+
+  @Override
+  protected void tryCreateGestures(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    // Taps are single finger gestures, they can only begin with the first finger down.
+    if (motionEvent.getActionMasked() != MotionEvent.ACTION_DOWN) {
+      return;
+    }
+
+    TapGesture gesture = obtainGesture();
+    if (gesture == null) {
+      gesture = new TapGesture(gesturePointersUtility);
+    }
+    gesture.init(hitTestResult, motionEvent);
+    gestures.add(gesture);
+  }
+
+  @Override
+  TapGesture createFrameCopy() {
+    return new TapGesture(gesturePointersUtility);
+  }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2018 Google LLC All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.ux;
+
+import com.google.ar.sceneform.FrameTime;
+import java.util.ArrayList;
+
+/**
+ * Runs per-frame work in ordered phases, owned by {@link BaseArFragment} which ticks it at every
+ * scene update.
+ *
+ * <p>Subscribers run in the order of the {@link Phase phases}, then in the order they subscribed.
+ * A subscriber with a rate divisor of {@code n} only runs every {@code n} frames and receives the
+ * time elapsed since it last ran. Subscribers with the same divisor are spread over the frames.
+ * Idle subscriptions are skipped until they are made busy again.
+ *
+ * <p>The time spent in each phase is measured, see {@link #getPhaseNanos(Phase)}.
+ *
+ * <p>Must only be used on the thread that updates the scene.
+ */
+public class TickScheduler {
+  /** Phases of a frame, in the order they run. */
+  public enum Phase {
+    /** Touch events and gesture recognition. */
+    INPUT,
+    /** Controllers and animations moving the nodes. */
+    SIMULATION,
+    /** Work depending on the final position of the nodes, such as screen-space picking. */
+    LAYOUT,
+    /** Anything that must run last. */
+    LATE
+  }
+
+  /** Per-frame work run by a {@link TickScheduler}. */
+  public interface Subscriber {
+    /**
+     * @param frameTime time of the current frame
+     * @param deltaSeconds time elapsed since the subscriber last ran, longer than the frame delta
+     *     when its rate divisor is greater than 1 or when it was idle
+     */
+    void onTick(FrameTime frameTime, float deltaSeconds);
+  }
+
+  /** Registration of a {@link Subscriber}, used to change how it is scheduled. */
+  public final class Subscription {
+    private final Phase phase;
+    private final Subscriber subscriber;
+    private int rateDivisor;
+    private int frameOffset;
+    private boolean isIdle = false;
+    private boolean isCancelled = false;
+    private float pendingSeconds = 0.0f;
+
+    private Subscription(Phase phase, Subscriber subscriber, int rateDivisor) {
+      this.phase = phase;
+      this.subscriber = subscriber;
+      setRateDivisor(rateDivisor);
+    }
+
+    public Phase getPhase() {
+      return phase;
+    }
+
+    public TickScheduler getScheduler() {
+      return TickScheduler.this;
+    }
+
+    /** Runs the subscriber every {@code rateDivisor} frames. Values smaller than 1 mean 1. */
+    public void setRateDivisor(int rateDivisor) {
+      this.rateDivisor = Math.max(1, rateDivisor);
+      frameOffset = nextFrameOffset++ % this.rateDivisor;
+    }
+
+    public int getRateDivisor() {
+      return rateDivisor;
+    }
+
+    /**
+     * Skips the subscriber while idle. The time spent idle is not reported to the subscriber, its
+     * next delta starts at the frame it is made busy again.
+     */
+    public void setIdle(boolean idle) {
+      if (isIdle && !idle) {
+        pendingSeconds = 0.0f;
+      }
+      isIdle = idle;
+    }
+
+    public boolean isIdle() {
+      return isIdle;
+    }
+
+    /** Removes the subscriber, it won't run anymore, not even later in the current frame. */
+    public void cancel() {
+      if (isCancelled) {
+        return;
+      }
+      isCancelled = true;
+      hasCancelledSubscriptions = true;
+    }
+
+    public boolean isCancelled() {
+      return isCancelled;
+    }
+  }
+
+  private static final float AVERAGE_WEIGHT = 0.05f;
+
+  private static final Phase[] PHASES = Phase.values();
+
+  @SuppressWarnings("unchecked")
+  private final ArrayList<Subscription>[] subscriptions = new ArrayList[PHASES.length];
+
+  private final long[] phaseNanos = new long[PHASES.length];
+  private final float[] averagePhaseNanos = new float[PHASES.length];
+  private long frameCount = 0;
+  private int nextFrameOffset = 0;
+  private boolean hasCancelledSubscriptions = false;
+
+  public TickScheduler() {
+    for (int i = 0; i < subscriptions.length; i++) {
+      subscriptions[i] = new ArrayList<>();
+    }
+  }
+
+  /**
+   * Subscribes to run at every frame in {@code phase}.
+   *
+   * @return the subscription, used to change the rate, make it idle or cancel it
+   */
+  public Subscription subscribe(Phase phase, Subscriber subscriber) {
+    return subscribe(phase, 1, subscriber);
+  }
+
+  /**
+   * Subscribes to run every {@code rateDivisor} frames in {@code phase}. A subscriber added while
+   * the scheduler ticks first runs at the next frame.
+   */
+  public Subscription subscribe(Phase phase, int rateDivisor, Subscriber subscriber) {
+    Subscription subscription = new Subscription(phase, subscriber, rateDivisor);
+    subscriptions[phase.ordinal()].add(subscription);
+    return subscription;
+  }
+
+  /** Runs the subscribers due at this frame, phase after phase. */
+  public void tick(FrameTime frameTime) {
+    float deltaSeconds = frameTime.getDeltaSeconds();
+
+    for (int p = 0; p < PHASES.length; p++) {
+      long startNanos = System.nanoTime();
+
+      ArrayList<Subscription> phaseSubscriptions = subscriptions[p];
+      // Subscribers added during the phase wait for the next frame.
+      int count = phaseSubscriptions.size();
+      for (int i = 0; i < count; i++) {
+        Subscription subscription = phaseSubscriptions.get(i);
+        if (subscription.isCancelled || subscription.isIdle) {
+          continue;
+        }
+
+        subscription.pendingSeconds += deltaSeconds;
+        if ((frameCount + subscription.frameOffset) % subscription.rateDivisor != 0) {
+          continue;
+        }
+
+        float subscriberSeconds = subscription.pendingSeconds;
+        subscription.pendingSeconds = 0.0f;
+        subscription.subscriber.onTick(frameTime, subscriberSeconds);
+      }
+
+      long nanos = System.nanoTime() - startNanos;
+      phaseNanos[p] = nanos;
+      averagePhaseNanos[p] += (nanos - averagePhaseNanos[p]) * AVERAGE_WEIGHT;
+    }
+
+    frameCount++;
+    removeCancelledSubscriptions();
+  }
+
+  /** Returns the time spent running the subscribers of {@code phase} during the last frame. */
+  public long getPhaseNanos(Phase phase) {
+    return phaseNanos[phase.ordinal()];
+  }
+
+  /** Returns the time spent in {@code phase} per frame, averaged over the last frames. */
+  public long getAveragePhaseNanos(Phase phase) {
+    return (long) averagePhaseNanos[phase.ordinal()];
+  }
+
+  /** Returns the number of subscriptions of {@code phase}, idle ones included. */
+  public int getSubscriptionCount(Phase phase) {
+    return subscriptions[phase.ordinal()].size();
+  }
+
+  /** Returns the number of frames ticked so far. */
+  public long getFrameCount() {
+    return frameCount;
+  }
+
+  private void removeCancelledSubscriptions() {
+    if (!hasCancelledSubscriptions) {
+      return;
+    }
+
+    hasCancelledSubscriptions = false;
+    for (int p = 0; p < subscriptions.length; p++) {
+      ArrayList<Subscription> phaseSubscriptions = subscriptions[p];
+      int kept = 0;
+      for (int i = 0; i < phaseSubscriptions.size(); i++) {
+        Subscription subscription = phaseSubscriptions.get(i);
+        if (!subscription.isCancelled) {
+          phaseSubscriptions.set(kept++, subscription);
+        }
+      }
+      while (phaseSubscriptions.size() > kept) {
+        phaseSubscriptions.remove(phaseSubscriptions.size() - 1);
+      }
+    }
+  }
+}
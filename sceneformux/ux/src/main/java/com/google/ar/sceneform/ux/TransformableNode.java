@@ -26,6 +26,7 @@ public class TransformableNode extends BaseTransformableNode {
   private TransformationController<DragGesture> translationController;
   private TransformationController<PinchGesture> scaleController;
   private TransformationController<TwistGesture> rotationController;
+  private TransformationController<FlingGesture> flingController;
 
   private final DetectedARPlanes detectedARPlanes;
 
@@ -46,6 +47,12 @@ public class TransformableNode extends BaseTransformableNode {
 
     rotationController = new RotationController(this, transformationSystem.getTwistRecognizer());
     addTransformationController(rotationController);
+
+    // Flinging is opt-in, enable it with getFlingController().setEnabled(true).
+    flingController =
+        new FlingController(this, transformationSystem.getFlingRecognizer(), detectedARPlanes);
+    flingController.setEnabled(false);
+    addTransformationController(flingController);
   }
 
   public TransformableNode(@NonNull TransformableNode other) {
@@ -55,9 +62,11 @@ public class TransformableNode extends BaseTransformableNode {
     this.translationController = other.translationController.copyFor(this);
     this.rotationController = other.rotationController.copyFor(this);
     this.scaleController = other.scaleController.copyFor(this);
+    this.flingController = other.flingController.copyFor(this);
     addTransformationController(translationController);
     addTransformationController(rotationController);
     addTransformationController(scaleController);
+    addTransformationController(flingController);
     setTransformableNodeListener(other.transformableNodeListener);
   }
 
@@ -91,6 +100,16 @@ public class TransformableNode extends BaseTransformableNode {
     this.rotationController = rotationController;
   }
 
+  /** Returns the controller that keeps this node sliding after a fling gesture. */
+  public @NonNull TransformationController<FlingGesture> getFlingController() {
+    return flingController;
+  }
+
+  /** Set the controller that keeps this node sliding after a fling gesture. */
+  public void setFlingController(@NonNull TransformationController<FlingGesture> flingController) {
+    this.flingController = flingController;
+  }
+
   public DetectedARPlanes getDetectedARPlanes() {
     return detectedARPlanes;
   }
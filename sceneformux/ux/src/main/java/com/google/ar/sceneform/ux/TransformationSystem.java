@@ -15,14 +15,23 @@
  */
 package com.google.ar.sceneform.ux;
 
+import android.os.Trace;
 import android.util.DisplayMetrics;
 import android.view.MotionEvent;
 
 import androidx.annotation.Nullable;
 
+import com.google.ar.core.Anchor;
+import com.google.ar.sceneform.Camera;
 import com.google.ar.sceneform.HitTestResult;
+import com.google.ar.sceneform.Node;
+import com.google.ar.sceneform.math.Vector3;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 
 /**
  * Coordinates which {@link BaseTransformableNode} is currently selected. Also, detects various
@@ -30,19 +39,85 @@ import java.util.ArrayList;
  *
  * <p>{@link #onTouch(HitTestResult, MotionEvent)} must be called for gestures to be detected. By
  * default, this is done automatically by {@link ArFragment}.
+ *
+ * <p>When frame synchronized touch is enabled, touch events are queued on arrival and dispatched
+ * in order by {@link #processQueuedTouches()} at the start of the next scene update, so that all
+ * gesture processing happens at a predictable point of the frame.
+ *
+ * <p>Recognizers process each touch event in decreasing order of priority. When a gesture claims
+ * pointers by retaining them, the gestures of the other recognizers that are waiting on those
+ * pointers are cancelled, so that they stop being evaluated.
+ *
+ * <p>Several nodes can be selected at once with {@link #selectNodes(Collection)}, for instance the
+ * nodes found by {@link #selectNodesInRect} or {@link #selectNodesInLasso} through the {@link
+ * ScreenPickingGrid}. The first of them is the node returned by {@link #getSelectedNode()}. When
+ * group transforms are enabled, the selected nodes are dragged, scaled and rotated together by the
+ * {@link GroupTransformController}.
+ *
+ * <p>When the gesture input thread is enabled, touch events are classified by the recognizers on a
+ * dedicated thread, and only the resulting gesture events are handed back to the frame thread by
+ * {@link #processQueuedTouches()}.
  */
 public class TransformationSystem {
+  /** Priority of the drag recognizer. */
+  public static final int DRAG_PRIORITY = 300;
+  /** Priority of the two finger recognizer, and of the pinch and twist recognizers. */
+  public static final int TWO_FINGER_PRIORITY = 200;
+  /** Priority of the fling recognizer. */
+  public static final int FLING_PRIORITY = 100;
+  /** Priority of the tap, double tap and long press recognizers. */
+  public static final int TAP_PRIORITY = 50;
+  /** Priority of the recognizers added without one. */
+  public static final int DEFAULT_PRIORITY = 0;
+
+  private static final int TOUCH_QUEUE_CAPACITY = 64;
+  private static final String PROCESS_QUEUED_TOUCHES_TRACE = "TransformationSystem.processTouches";
+
   private final GesturePointersUtility gesturePointersUtility;
 
   private final DragGestureRecognizer dragGestureRecognizer;
   private final PinchGestureRecognizer pinchGestureRecognizer;
   private final TwistGestureRecognizer twistGestureRecognizer;
+  private final FlingGestureRecognizer flingGestureRecognizer;
+  private final TwoFingerGestureRecognizer twoFingerGestureRecognizer;
+  private final TapGestureRecognizer tapGestureRecognizer;
+  private final DoubleTapGestureRecognizer doubleTapGestureRecognizer;
+  private final LongPressGestureRecognizer longPressGestureRecognizer;
+  private boolean isUnifiedTwoFingerGesturesEnabled = true;
 
   private final ArrayList<BaseGestureRecognizer<?>> recognizers = new ArrayList<>();
 
   private SelectionVisualizer selectionVisualizer;
 
+  private boolean isFrameSynchronizedTouchEnabled = false;
+  private final MotionEvent[] queuedMotionEvents = new MotionEvent[TOUCH_QUEUE_CAPACITY];
+  private final HitTestResult[] queuedHitTestResults = new HitTestResult[TOUCH_QUEUE_CAPACITY];
+  private int queueHead = 0;
+  private int queueSize = 0;
+
+  @Nullable private GestureInputThread gestureInputThread;
+
+  private final ScreenPickingGrid pickingGrid = new ScreenPickingGrid();
+  private final FootprintHash footprintHash = new FootprintHash();
+  private final SnappingEngine snappingEngine = new SnappingEngine(footprintHash);
+  private final OverlapResolver overlapResolver = new OverlapResolver(footprintHash);
+  private final HitTestCache hitTestCache = new HitTestCache();
+  private final MotionSystem motionSystem = new MotionSystem();
+  @Nullable private TickScheduler tickScheduler;
+  @Nullable private TickScheduler.Subscription motionTickSubscription;
+  @Nullable private TickScheduler.Subscription groupTickSubscription;
+  private final GroupTransformController groupTransformController;
+  // Number of anchor nodes sharing each anchor, for the anchors shared by a group.
+  private final HashMap<Anchor, Integer> anchorReferences = new HashMap<>();
+  private final AnchorReusePolicy anchorReusePolicy = new AnchorReusePolicy();
+  private final AnchorManager anchorManager;
+  private final ArrayList<BaseTransformableNode> pickedNodes = new ArrayList<>();
+  private final Vector3 tapPosition = new Vector3();
+
   @Nullable private BaseTransformableNode selectedNode;
+  private final ArrayList<BaseTransformableNode> selectedNodes = new ArrayList<>();
+  private final List<BaseTransformableNode> unmodifiableSelectedNodes =
+      Collections.unmodifiableList(selectedNodes);
 
   @Nullable public SelectionListener selectionListener = null;
 
@@ -54,13 +129,50 @@ public class TransformationSystem {
     gesturePointersUtility = new GesturePointersUtility(displayMetrics);
 
     dragGestureRecognizer = new DragGestureRecognizer(gesturePointersUtility);
-    addGestureRecognizer(dragGestureRecognizer);
+    addGestureRecognizer(dragGestureRecognizer, DRAG_PRIORITY);
 
+    // Pinches and twists are recognized together by the two finger recognizer, the pinch and
+    // twist recognizers only dispatch them unless unified two finger gestures are disabled.
     pinchGestureRecognizer = new PinchGestureRecognizer(gesturePointersUtility);
-    addGestureRecognizer(pinchGestureRecognizer);
+    pinchGestureRecognizer.setUntargetedGestureNodeProvider(this::getSelectedNode);
+    pinchGestureRecognizer.setPriority(TWO_FINGER_PRIORITY);
 
     twistGestureRecognizer = new TwistGestureRecognizer(gesturePointersUtility);
-    addGestureRecognizer(twistGestureRecognizer);
+    twistGestureRecognizer.setUntargetedGestureNodeProvider(this::getSelectedNode);
+    twistGestureRecognizer.setPriority(TWO_FINGER_PRIORITY);
+
+    twoFingerGestureRecognizer =
+        new TwoFingerGestureRecognizer(
+            gesturePointersUtility, pinchGestureRecognizer, twistGestureRecognizer);
+    addGestureRecognizer(twoFingerGestureRecognizer, TWO_FINGER_PRIORITY);
+
+    flingGestureRecognizer = new FlingGestureRecognizer(gesturePointersUtility);
+    addGestureRecognizer(flingGestureRecognizer, FLING_PRIORITY);
+
+    tapGestureRecognizer = new TapGestureRecognizer(gesturePointersUtility);
+    addGestureRecognizer(tapGestureRecognizer, TAP_PRIORITY);
+
+    doubleTapGestureRecognizer = new DoubleTapGestureRecognizer(gesturePointersUtility);
+    addGestureRecognizer(doubleTapGestureRecognizer, TAP_PRIORITY);
+
+    longPressGestureRecognizer = new LongPressGestureRecognizer(gesturePointersUtility);
+    addGestureRecognizer(longPressGestureRecognizer, TAP_PRIORITY);
+
+    anchorManager = new AnchorManager(this);
+
+    // Added before the listeners of the nodes, so that the group claims its gestures first.
+    groupTransformController = new GroupTransformController(this);
+    dragGestureRecognizer.addOnGestureStartedListener(groupTransformController::onDragStarted);
+    pinchGestureRecognizer.addOnGestureStartedListener(groupTransformController::onPinchStarted);
+    twistGestureRecognizer.addOnGestureStartedListener(groupTransformController::onTwistStarted);
+
+    // Taps select the node under them through the picking grid instead of the tap listeners of the
+    // nodes, which rely on physics hit tests.
+    tapGestureRecognizer.addOnGestureStartedListener(this::onTapStarted);
+
+    for (int i = 0; i < TOUCH_QUEUE_CAPACITY; i++) {
+      queuedHitTestResults[i] = new HitTestResult();
+    }
   }
 
   /**
@@ -69,14 +181,14 @@ public class TransformationSystem {
    * removed and the new one is applied immediately.
    */
   public void setSelectionVisualizer(SelectionVisualizer selectionVisualizer) {
-    if (selectedNode != null) {
-      this.selectionVisualizer.removeSelectionVisual(selectedNode);
+    for (int i = 0; i < selectedNodes.size(); i++) {
+      this.selectionVisualizer.removeSelectionVisual(selectedNodes.get(i));
     }
 
     this.selectionVisualizer = selectionVisualizer;
 
-    if (selectedNode != null) {
-      this.selectionVisualizer.applySelectionVisual(selectedNode);
+    for (int i = 0; i < selectedNodes.size(); i++) {
+      this.selectionVisualizer.applySelectionVisual(selectedNodes.get(i));
     }
   }
 
@@ -120,18 +232,118 @@ public class TransformationSystem {
     return twistGestureRecognizer;
   }
 
+  /**
+   * Gets the gesture recognizer for determining when the user releases a drag motion on the touch
+   * screen while it is still moving fast.
+   */
+  public FlingGestureRecognizer getFlingRecognizer() {
+    return flingGestureRecognizer;
+  }
+
+  /** Gets the gesture recognizer for determining when the user taps the touch screen. */
+  public TapGestureRecognizer getTapRecognizer() {
+    return tapGestureRecognizer;
+  }
+
+  /**
+   * Gets the gesture recognizer for determining when the user taps the touch screen twice in a
+   * row.
+   */
+  public DoubleTapGestureRecognizer getDoubleTapRecognizer() {
+    return doubleTapGestureRecognizer;
+  }
+
+  /**
+   * Gets the gesture recognizer for determining when the user keeps a finger pressed on the touch
+   * screen without moving it.
+   */
+  public LongPressGestureRecognizer getLongPressRecognizer() {
+    return longPressGestureRecognizer;
+  }
+
+  /**
+   * Gets the gesture recognizer for determining when the user moves two fingers on the touch
+   * screen. It drives the gestures of the pinch and twist recognizers while unified two finger
+   * gestures are enabled.
+   */
+  public TwoFingerGestureRecognizer getTwoFingerRecognizer() {
+    return twoFingerGestureRecognizer;
+  }
+
+  /**
+   * Enables or disables unified two finger gestures, enabled by default. When enabled, pinches and
+   * twists are recognized by the {@link TwoFingerGestureRecognizer} and can happen at the same
+   * time. When disabled, the pinch and twist recognizers process touch events on their own and the
+   * first of the two gestures to start prevents the other. Must not be changed while a gesture is
+   * in progress.
+   */
+  public void setUnifiedTwoFingerGesturesEnabled(boolean enabled) {
+    if (enabled == isUnifiedTwoFingerGesturesEnabled) {
+      return;
+    }
+    checkGestureInputThreadDisabled();
+
+    isUnifiedTwoFingerGesturesEnabled = enabled;
+    if (enabled) {
+      int index = recognizers.indexOf(pinchGestureRecognizer);
+      recognizers.remove(pinchGestureRecognizer);
+      recognizers.remove(twistGestureRecognizer);
+      recognizers.add(index, twoFingerGestureRecognizer);
+    } else {
+      int index = recognizers.indexOf(twoFingerGestureRecognizer);
+      recognizers.remove(twoFingerGestureRecognizer);
+      recognizers.add(index, twistGestureRecognizer);
+      recognizers.add(index, pinchGestureRecognizer);
+    }
+  }
+
+  public boolean isUnifiedTwoFingerGesturesEnabled() {
+    return isUnifiedTwoFingerGesturesEnabled;
+  }
+
   /**
    * Adds a gesture recognizer to this transformation system. Touch events will be dispatched to the
-   * recognizer when {@link #onTouch(HitTestResult, MotionEvent)} is called.
+   * recognizer when {@link #onTouch(HitTestResult, MotionEvent)} is called. Gestures without a
+   * target node are routed to the selected node.
    */
   public void addGestureRecognizer(BaseGestureRecognizer<?> gestureRecognizer) {
-    recognizers.add(gestureRecognizer);
+    addGestureRecognizer(gestureRecognizer, DEFAULT_PRIORITY);
+  }
+
+  /**
+   * Adds a gesture recognizer with the given priority. Recognizers with a higher priority process
+   * each touch event first, and therefore get the first chance to claim its pointers. Recognizers
+   * with the same priority process events in the order they were added.
+   */
+  public void addGestureRecognizer(BaseGestureRecognizer<?> gestureRecognizer, int priority) {
+    checkGestureInputThreadDisabled();
+    gestureRecognizer.setPriority(priority);
+    int index = recognizers.size();
+    while (index > 0 && recognizers.get(index - 1).getPriority() < priority) {
+      index--;
+    }
+    recognizers.add(index, gestureRecognizer);
+    gestureRecognizer.setUntargetedGestureNodeProvider(this::getSelectedNode);
   }
 
   /**
-   * Gets the currently selected node. Only the currently selected node can be transformed. Nodes
+   * Enables the gesture pool leak check on every recognizer of this transformation system.
+   *
+   * @see BaseGestureRecognizer#setPoolLeakCheckEnabled(boolean)
+   */
+  public void setGesturePoolLeakCheckEnabled(boolean enabled) {
+    for (int i = 0; i < recognizers.size(); i++) {
+      recognizers.get(i).setPoolLeakCheckEnabled(enabled);
+    }
+    pinchGestureRecognizer.setPoolLeakCheckEnabled(enabled);
+    twistGestureRecognizer.setPoolLeakCheckEnabled(enabled);
+    twoFingerGestureRecognizer.setPoolLeakCheckEnabled(enabled);
+  }
+
+  /**
+   * Gets the currently selected node. Only the currently selected nodes can be transformed. Nodes
    * are selected automatically when they are tapped, or when the user begins to translate the node
-   * with a drag gesture.
+   * with a drag gesture. When several nodes are selected, this is the first of them.
    */
   @Nullable
   public BaseTransformableNode getSelectedNode() {
@@ -155,6 +367,8 @@ public class TransformationSystem {
 
     if (node != null) {
       selectedNode = node;
+      selectedNodes.add(node);
+      node.isSelected = true;
 
       if (null!=selectionListener) {
         selectionListener.onSelect(selectedNode);
@@ -170,34 +384,485 @@ public class TransformationSystem {
     return true;
   }
 
-  /** Dispatches touch events to the gesture recognizers contained by this transformation system. */
+  /**
+   * Replaces the selection with the given nodes if none of the currently selected nodes is actively
+   * being transformed. The first node becomes the selected node returned by {@link
+   * #getSelectedNode()}, an empty collection deselects every node.
+   *
+   * @see BaseTransformableNode#isTransforming
+   * @return true if the nodes were successfully selected
+   */
+  public boolean selectNodes(Collection<? extends BaseTransformableNode> nodes) {
+    BaseTransformableNode formerSelectedNode = selectedNode;
+
+    if (!deselectNode()) {
+      return false;
+    }
+
+    for (BaseTransformableNode node : nodes) {
+      if (node == null || node.isSelected) {
+        continue;
+      }
+
+      selectedNodes.add(node);
+      node.isSelected = true;
+
+      if (null!=selectionListener) {
+        selectionListener.onSelect(node);
+      }
+
+      selectionVisualizer.applySelectionVisual(node);
+    }
+
+    selectedNode = selectedNodes.isEmpty() ? null : selectedNodes.get(0);
+
+    if (formerSelectedNode!=selectedNode && null!=selectionListener) {
+      selectionListener.onSelectionChanged(formerSelectedNode, selectedNode);
+    }
+
+    return true;
+  }
+
+  /** Returns the selected nodes, starting with {@link #getSelectedNode()}. */
+  public List<BaseTransformableNode> getSelectedNodes() {
+    return unmodifiableSelectedNodes;
+  }
+
+  /** Returns true if the node is one of the selected nodes. */
+  public boolean isNodeSelected(BaseTransformableNode node) {
+    return node.isSelected;
+  }
+
+  /**
+   * Gets the screen-space grid used to pick nodes without physics hit tests. It tracks every active
+   * {@link BaseTransformableNode} created with this transformation system.
+   */
+  public ScreenPickingGrid getPickingGrid() {
+    return pickingGrid;
+  }
+
+  /**
+   * Gets the spatial hash of the world bounds of every active {@link BaseTransformableNode}
+   * created with this transformation system.
+   */
+  public FootprintHash getFootprintHash() {
+    return footprintHash;
+  }
+
+  /** Gets the engine snapping the nodes dragged by the controllers that enable snapping. */
+  public SnappingEngine getSnappingEngine() {
+    return snappingEngine;
+  }
+
+  /**
+   * Gets the resolver keeping the nodes dragged by the controllers in non-overlap mode out of the
+   * other nodes.
+   */
+  public OverlapResolver getOverlapResolver() {
+    return overlapResolver;
+  }
+
+  /**
+   * Gets the cache shared by the controllers and listeners that hit test the ARCore frame at the
+   * same screen point during the same frame.
+   */
+  public HitTestCache getHitTestCache() {
+    return hitTestCache;
+  }
+
+  /**
+   * Gets the system that moves the nodes towards the targets submitted by the transformation
+   * controllers.
+   */
+  public MotionSystem getMotionSystem() {
+    return motionSystem;
+  }
+
+  /** Gets the controller that transforms the selected nodes together. */
+  public GroupTransformController getGroupTransformController() {
+    return groupTransformController;
+  }
+
+  /**
+   * Enables or disables group transforms, disabled by default.
+   *
+   * @see GroupTransformController#setEnabled(boolean)
+   */
+  public void setGroupTransformEnabled(boolean enabled) {
+    groupTransformController.setEnabled(enabled);
+  }
+
+  public boolean isGroupTransformEnabled() {
+    return groupTransformController.isEnabled();
+  }
+
+  /**
+   * Sets the scheduler that runs the per-frame updates of the transformation controllers and of
+   * the motion system, in its {@link TickScheduler.Phase#SIMULATION} phase. Without a scheduler,
+   * the controllers are updated by their node. {@link BaseArFragment} sets its own scheduler.
+   */
+  public void setTickScheduler(@Nullable TickScheduler tickScheduler) {
+    if (motionTickSubscription != null) {
+      motionTickSubscription.cancel();
+      motionTickSubscription = null;
+    }
+    if (groupTickSubscription != null) {
+      groupTickSubscription.cancel();
+      groupTickSubscription = null;
+    }
+
+    this.tickScheduler = tickScheduler;
+    if (tickScheduler != null) {
+      groupTickSubscription =
+          tickScheduler.subscribe(
+              TickScheduler.Phase.SIMULATION,
+              (frameTime, deltaSeconds) -> groupTransformController.update());
+      motionTickSubscription =
+          tickScheduler.subscribe(
+              TickScheduler.Phase.SIMULATION,
+              (frameTime, deltaSeconds) -> motionSystem.update(frameTime));
+    }
+  }
+
+  @Nullable
+  public TickScheduler getTickScheduler() {
+    return tickScheduler;
+  }
+
+  /**
+   * Gets the policy deciding whether the controllers keep the anchor of a node they moved or
+   * create a new one.
+   */
+  public AnchorReusePolicy getAnchorReusePolicy() {
+    return anchorReusePolicy;
+  }
+
+  /**
+   * Gets the manager sharing anchors between the nodes placed with {@link
+   * AnchorManager#place}, within a budget of anchors.
+   */
+  public AnchorManager getAnchorManager() {
+    return anchorManager;
+  }
+
+  /**
+   * Counts one more anchor node using the anchor. Anchors shared by several anchor nodes are only
+   * detached once all of them released it.
+   */
+  void retainAnchor(Anchor anchor) {
+    Integer count = anchorReferences.get(anchor);
+    anchorReferences.put(anchor, count == null ? 1 : count + 1);
+  }
+
+  /**
+   * Releases an anchor no longer used by an anchor node, and detaches it if no other anchor node
+   * uses it. Anchors that were never retained are detached right away.
+   */
+  void releaseAnchor(Anchor anchor) {
+    Integer count = anchorReferences.get(anchor);
+    if (count != null && count > 1) {
+      anchorReferences.put(anchor, count - 1);
+      return;
+    }
+
+    anchorReferences.remove(anchor);
+    anchorReusePolicy.onAnchorDetached(anchor);
+    anchor.detach();
+  }
+
+  /**
+   * Sets the camera and the view size used by the picking grid for the current frame. {@link
+   * BaseArFragment} calls this at every scene update, the grid is only rebuilt when it is queried.
+   */
+  public void updatePickingGrid(@Nullable Camera camera, int width, int height) {
+    pickingGrid.invalidate(camera, width, height);
+  }
+
+  /**
+   * Selects the node closest to the camera whose projected bounds contain the screen point, or
+   * deselects the selected nodes if there is none.
+   *
+   * @see #selectNode(BaseTransformableNode)
+   * @return true if the selection was successfully changed
+   */
+  public boolean selectNodeAt(float x, float y) {
+    return selectNode(pickingGrid.pick(x, y));
+  }
+
+  /**
+   * Returns the node under the tap, found through the picking grid. Before the grid has a camera,
+   * falls back to the transformable node hit by the tap.
+   */
+  @Nullable
+  BaseTransformableNode findTappedNode(TapGesture gesture) {
+    if (pickingGrid.hasCamera()) {
+      gesture.getPosition(tapPosition);
+      return pickingGrid.pick(tapPosition.x, tapPosition.y);
+    }
+
+    Node node = gesture.getTargetNode();
+    while (node != null && !(node instanceof BaseTransformableNode)) {
+      node = node.getParent();
+    }
+    return (BaseTransformableNode) node;
+  }
+
+  /**
+   * Selects the nodes whose projected center lies inside the screen rectangle.
+   *
+   * @see #selectNodes(Collection)
+   * @return true if the selection was successfully changed
+   */
+  public boolean selectNodesInRect(float left, float top, float right, float bottom) {
+    pickedNodes.clear();
+    pickingGrid.pickRect(left, top, right, bottom, pickedNodes);
+    try {
+      return selectNodes(pickedNodes);
+    } finally {
+      pickedNodes.clear();
+    }
+  }
+
+  /**
+   * Selects the nodes whose projected center lies inside the polygon drawn on the screen.
+   *
+   * @param points the vertices of the polygon, as consecutive x and y screen coordinates
+   * @param pointCount the number of vertices to read from {@code points}
+   * @see #selectNodes(Collection)
+   * @return true if the selection was successfully changed
+   */
+  public boolean selectNodesInLasso(float[] points, int pointCount) {
+    pickedNodes.clear();
+    pickingGrid.pickLasso(points, pointCount, pickedNodes);
+    try {
+      return selectNodes(pickedNodes);
+    } finally {
+      pickedNodes.clear();
+    }
+  }
+
+  /**
+   * Dispatches touch events to the gesture recognizers contained by this transformation system.
+   * When frame synchronized touch is enabled, a copy of the event is queued instead and dispatched
+   * by the next call to {@link #processQueuedTouches()}.
+   */
   public void onTouch(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    if (gestureInputThread != null) {
+      gestureInputThread.postTouch(hitTestResult, motionEvent);
+      return;
+    }
+
+    if (!isFrameSynchronizedTouchEnabled) {
+      dispatchTouch(hitTestResult, motionEvent);
+      return;
+    }
+
+    // Never drop or reorder events, flush synchronously if the frame didn't keep up.
+    if (queueSize == TOUCH_QUEUE_CAPACITY) {
+      processQueuedTouches();
+    }
+
+    int index = (queueHead + queueSize) % TOUCH_QUEUE_CAPACITY;
+    queuedMotionEvents[index] = MotionEvent.obtain(motionEvent);
+    queuedHitTestResults[index].set(hitTestResult);
+    queueSize++;
+  }
+
+  /**
+   * Enables or disables frame synchronized touch. Disabling it dispatches the events that are still
+   * queued.
+   *
+   * <p>{@link BaseArFragment} drains the queue at the start of every scene update. When using the
+   * transformation system without it, {@link #processQueuedTouches()} must be called every frame.
+   */
+  public void setFrameSynchronizedTouchEnabled(boolean enabled) {
+    if (!enabled) {
+      processQueuedTouches();
+    }
+    isFrameSynchronizedTouchEnabled = enabled;
+  }
+
+  public boolean isFrameSynchronizedTouchEnabled() {
+    return isFrameSynchronizedTouchEnabled;
+  }
+
+  /**
+   * Enables or disables the gesture input thread, disabled by default. When enabled, touch events
+   * are copied into a lock-free ring and classified by the gesture recognizers on a dedicated
+   * thread. The recognizers don't notify their listeners on that thread: the gestures that start,
+   * update or finish are handed back through a second lock-free ring, and {@link
+   * #processQueuedTouches()} notifies the listeners on the frame thread with frame copies of the
+   * gestures.
+   *
+   * <p>Only the recognizers of this package support the input thread. Recognizers must not be
+   * added, and unified two finger gestures must not be toggled, while it is enabled. Must not be
+   * changed while a gesture is in progress.
+   *
+   * @throws IllegalStateException if a recognizer doesn't support the gesture input thread
+   */
+  public void setGestureInputThreadEnabled(boolean enabled) {
+    if (enabled == (gestureInputThread != null)) {
+      return;
+    }
+
+    if (!enabled) {
+      GestureInputThread inputThread = gestureInputThread;
+      gestureInputThread = null;
+      inputThread.stop();
+      setInputThreadOnRecognizers(null);
+      return;
+    }
+
+    for (int i = 0; i < recognizers.size(); i++) {
+      checkSupportsGestureInputThread(recognizers.get(i));
+    }
+    checkSupportsGestureInputThread(pinchGestureRecognizer);
+    checkSupportsGestureInputThread(twistGestureRecognizer);
+    checkSupportsGestureInputThread(twoFingerGestureRecognizer);
+
+    processQueuedTouches();
+    GestureInputThread inputThread = new GestureInputThread(this);
+    setInputThreadOnRecognizers(inputThread);
+    gestureInputThread = inputThread;
+    inputThread.start();
+  }
+
+  public boolean isGestureInputThreadEnabled() {
+    return gestureInputThread != null;
+  }
+
+  /**
+   * Lets the gesture recognizers handle the timeouts that expired since the last touch event, such
+   * as a long press of a finger that doesn't move. {@link BaseArFragment} calls this at every
+   * scene update, after {@link #processQueuedTouches()}.
+   *
+   * @param uptimeMillis the current time, as returned by {@code SystemClock.uptimeMillis()}
+   */
+  public void checkGestureTimeouts(long uptimeMillis) {
+    if (gestureInputThread != null) {
+      gestureInputThread.postCheckTimeouts(uptimeMillis);
+      return;
+    }
+
+    dispatchTimeouts(uptimeMillis);
+  }
+
+  /**
+   * Dispatches the queued touch events in arrival order to the gesture recognizers. When the
+   * gesture input thread is enabled, notifies the listeners of the gestures it recognized instead.
+   */
+  public void processQueuedTouches() {
+    if (gestureInputThread != null) {
+      gestureInputThread.dispatchIntents();
+      return;
+    }
+
+    if (queueSize == 0) {
+      return;
+    }
+
+    Trace.beginSection(PROCESS_QUEUED_TOUCHES_TRACE);
+    try {
+      while (queueSize > 0) {
+        MotionEvent motionEvent = queuedMotionEvents[queueHead];
+        HitTestResult hitTestResult = queuedHitTestResults[queueHead];
+        queuedMotionEvents[queueHead] = null;
+        queueHead = (queueHead + 1) % TOUCH_QUEUE_CAPACITY;
+        queueSize--;
+
+        try {
+          dispatchTouch(hitTestResult, motionEvent);
+        } finally {
+          motionEvent.recycle();
+          hitTestResult.setNode(null);
+        }
+      }
+    } finally {
+      Trace.endSection();
+    }
+  }
+
+  /** Runs the recognizers on a touch event, on the gesture input thread when it is enabled. */
+  void dispatchTouch(HitTestResult hitTestResult, MotionEvent motionEvent) {
     for (int i = 0; i < recognizers.size(); i++) {
+      int claimCount = gesturePointersUtility.getClaimCount();
       recognizers.get(i).onTouch(hitTestResult, motionEvent);
+      if (claimCount != gesturePointersUtility.getClaimCount()) {
+        cancelPendingGestures(i);
+      }
+    }
+  }
+
+  void dispatchTimeouts(long uptimeMillis) {
+    for (int i = 0; i < recognizers.size(); i++) {
+      recognizers.get(i).checkTimeouts(uptimeMillis);
+    }
+  }
+
+  /** Cancels the gestures waiting on the pointers claimed by the recognizer at {@code index}. */
+  private void cancelPendingGestures(int index) {
+    for (int i = 0; i < recognizers.size(); i++) {
+      if (i != index) {
+        recognizers.get(i).cancelPendingGesturesOnRetainedPointers();
+      }
+    }
+  }
+
+  private void setInputThreadOnRecognizers(@Nullable GestureInputThread inputThread) {
+    for (int i = 0; i < recognizers.size(); i++) {
+      recognizers.get(i).setInputThread(inputThread);
+    }
+    pinchGestureRecognizer.setInputThread(inputThread);
+    twistGestureRecognizer.setInputThread(inputThread);
+    twoFingerGestureRecognizer.setInputThread(inputThread);
+  }
+
+  private static void checkSupportsGestureInputThread(BaseGestureRecognizer<?> recognizer) {
+    if (!recognizer.prepareInputThread()) {
+      throw new IllegalStateException(
+          recognizer.getClass().getSimpleName() + " doesn't support the gesture input thread.");
+    }
+  }
+
+  private void checkGestureInputThreadDisabled() {
+    if (gestureInputThread != null) {
+      throw new IllegalStateException(
+          "Gesture recognizers can't be changed while the gesture input thread is enabled.");
+    }
+  }
+
+  /** Selects the node picked under the tap. */
+  private void onTapStarted(TapGesture gesture) {
+    BaseTransformableNode node = findTappedNode(gesture);
+    if (node != null) {
+      selectNode(node);
     }
   }
 
   /**
-   * Deselects the currently selected node if the node is not currently transforming.
+   * Deselects the currently selected nodes if none of them is currently transforming.
    *
    * @see BaseTransformableNode#isTransforming
-   * @return true if the node was successfully deselected
+   * @return true if the nodes were successfully deselected
    */
   private boolean deselectNode() {
-    if (selectedNode == null) {
-      return true;
-    }
-
-    if (selectedNode.isTransforming()) {
-      return false;
+    for (int i = 0; i < selectedNodes.size(); i++) {
+      if (selectedNodes.get(i).isTransforming()) {
+        return false;
+      }
     }
 
-    selectionVisualizer.removeSelectionVisual(selectedNode);
+    for (int i = selectedNodes.size() - 1; i >= 0; i--) {
+      BaseTransformableNode node = selectedNodes.get(i);
+      node.isSelected = false;
+      selectionVisualizer.removeSelectionVisual(node);
 
-    if (null!=selectionListener) {
-      selectionListener.onDeselect(selectedNode);
+      if (null!=selectionListener) {
+        selectionListener.onDeselect(node);
+      }
     }
 
+    selectedNodes.clear();
     selectedNode = null;
 
     return true;
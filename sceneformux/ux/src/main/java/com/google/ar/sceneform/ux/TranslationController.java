@@ -31,7 +31,6 @@ import com.google.ar.sceneform.ArSceneView;
 import com.google.ar.sceneform.FrameTime;
 import com.google.ar.sceneform.Node;
 import com.google.ar.sceneform.Scene;
-import com.google.ar.sceneform.math.MathHelper;
 import com.google.ar.sceneform.math.Quaternion;
 import com.google.ar.sceneform.math.Vector3;
 import com.google.ar.sceneform.utilities.Preconditions;
@@ -43,6 +42,9 @@ import java.util.List;
  * Manipulates the position of a {@link BaseTransformableNode} using a {@link
  * DragGestureRecognizer}. If not selected, the {@link BaseTransformableNode} will become selected
  * when the {@link DragGesture} starts.
+ *
+ * <p>The node follows the drag through the {@link MotionSystem} of the transformation system, and
+ * the controller sleeps once it has nothing left to update.
  */
 public class TranslationController extends TransformationController<DragGesture> {
 
@@ -53,8 +55,15 @@ public class TranslationController extends TransformationController<DragGesture>
   private final DetectedARPlanes detectedPlanes;
 
   private final Vector3 initialForwardInLocal = new Vector3();
+  // Parent of the node initialForwardInLocal is expressed in.
+  @Nullable private Node initialForwardParent = null;
+  private final Vector3 gesturePosition = new Vector3();
+
+  private final MotionSystem.Motion positionMotion;
+  private final MotionSystem.Motion rotationMotion;
 
-  private boolean canUpdate = false;
+  private boolean isFrameCoalescingEnabled = false;
+  private boolean hasPendingDragUpdate = false;
 
   private EnumSet<Plane.Type> allowedPlaneTypes = EnumSet.allOf(Plane.Type.class);
 
@@ -63,14 +72,17 @@ public class TranslationController extends TransformationController<DragGesture>
   @Nullable
   private BaseSurroundingsListener surroundingsListener = null;
 
-  private static final float LERP_SPEED = 12.0f;
-  private static final float POSITION_LENGTH_THRESHOLD = 0.01f;
-  private static final float ROTATION_DOT_THRESHOLD = 0.99f;
-
+  @SuppressWarnings("initialization") // Suppress @UnderInitialization warning.
   public TranslationController(
       BaseTransformableNode transformableNode, BaseGestureRecognizer<DragGesture> gestureRecognizer, DetectedARPlanes detectedARPlanes) {
     super(transformableNode, gestureRecognizer);
     this.detectedPlanes = detectedARPlanes;
+
+    MotionSystem motionSystem = transformableNode.getTransformationSystem().getMotionSystem();
+    positionMotion = motionSystem.createMotion(transformableNode, MotionSystem.Channel.POSITION);
+    positionMotion.setOnMotionFinishedListener(motion -> desiredLocalPosition = null);
+    rotationMotion = motionSystem.createMotion(transformableNode, MotionSystem.Channel.ROTATION);
+    rotationMotion.setOnMotionFinishedListener(motion -> desiredLocalRotation = null);
   }
 
   // ---------------------------------------------------------------------------------------
@@ -120,14 +132,55 @@ public class TranslationController extends TransformationController<DragGesture>
   }
 
 
+  /**
+   * When enabled, drag updates are coalesced: the hit test runs once per rendered frame on the
+   * latest drag position instead of once per touch event.
+   */
+  public void setFrameCoalescingEnabled(boolean enabled) {
+    isFrameCoalescingEnabled = enabled;
+  }
+
+  public boolean isFrameCoalescingEnabled() {
+    return isFrameCoalescingEnabled;
+  }
+
   @Override
   public void onUpdated(Node node, FrameTime frameTime) {
-    if (canUpdate) {
-      updatePosition(frameTime);
-      updateRotation(frameTime);
+    if (hasPendingDragUpdate) {
+      hasPendingDragUpdate = false;
+      updateDesiredPose(gesturePosition.x, gesturePosition.y);
+    }
+
+    if (!updateMotions(frameTime, positionMotion.isActive() || rotationMotion.isActive())
+        && !super.isTransforming()) {
+      sleep();
     }
   }
 
+  @Override
+  public void onDeactivated(Node node) {
+    super.onDeactivated(node);
+    // The motion system must not keep writing into a node removed from the scene.
+    hasPendingDragUpdate = false;
+    positionMotion.cancel();
+    rotationMotion.cancel();
+    desiredLocalPosition = null;
+    desiredLocalRotation = null;
+  }
+
+  /**
+   * Sets the stiffness of the springs the node follows the drag with, in radians per second. The
+   * node covers most of the distance to the drag position in about {@code 4 / frequency} seconds.
+   */
+  public void setSpringFrequency(float frequency) {
+    positionMotion.setAngularFrequency(frequency);
+    rotationMotion.setAngularFrequency(frequency);
+  }
+
+  public float getSpringFrequency() {
+    return positionMotion.getAngularFrequency();
+  }
+
   @Override
   public boolean isTransforming() {
     // As long as the transformable node is still interpolating towards the final pose, this
@@ -151,13 +204,7 @@ public class TranslationController extends TransformationController<DragGesture>
       return false;
     }
 
-    Vector3 initialForwardInWorld = transformableNode.getForward();
-    Node parent = transformableNode.getParent();
-    if (parent != null) {
-      initialForwardInLocal.set(parent.worldToLocalDirection(initialForwardInWorld));
-    } else {
-      initialForwardInLocal.set(initialForwardInWorld);
-    }
+    setInitialForward(transformableNode.getForward());
 
     if (null != listener) {
       listener.onMovementStart(transformableNode);
@@ -168,6 +215,16 @@ public class TranslationController extends TransformationController<DragGesture>
 
   @Override
   public void onContinueTransformation(DragGesture gesture) {
+    gesture.getPredictedPosition(gesturePosition);
+    if (isFrameCoalescingEnabled) {
+      hasPendingDragUpdate = true;
+      return;
+    }
+
+    updateDesiredPose(gesturePosition.x, gesturePosition.y);
+  }
+
+  private void updateDesiredPose(float screenX, float screenY) {
     BaseTransformableNode transformableNode = getTransformableNode();
     Scene scene = getTransformableNode().getScene();
     if (scene == null) {
@@ -187,15 +244,15 @@ public class TranslationController extends TransformationController<DragGesture>
     @Nullable Plane lastArPlaneOld = lastArPlane;
 
     @Nullable Pose intersectionPose = null;
-    Vector3 position = gesture.getPosition();
-    List<HitResult> hitResultList = frame.hitTest(position.x, position.y);
+    HitTestCache hitTestCache = transformableNode.getTransformationSystem().getHitTestCache();
+    List<HitResult> hitResultList = hitTestCache.hitTest(frame, screenX, screenY);
     for (int i = 0; i < hitResultList.size(); i++) {
       HitResult hit = hitResultList.get(i);
       Trackable trackable = hit.getTrackable();
       Pose pose = hit.getHitPose();
       if (trackable instanceof Plane) {
         Plane plane = (Plane) trackable;
-        if (allowedPlaneTypes.contains(plane.getType()) && (detectedPlanes.floorPlanes.isFirstPlane(plane) || plane.isPoseInPolygon(pose))) {
+        if (allowedPlaneTypes.contains(plane.getType()) && (detectedPlanes.floorPlanes.isFirstPlane(plane) || detectedPlanes.isPoseInPolygon(plane, pose))) {
           intersectionPose = pose;
           lastArHitResult = hit;
           lastArPlane = plane;
@@ -209,7 +266,7 @@ public class TranslationController extends TransformationController<DragGesture>
     } else {
       Plane groundPlane = detectedPlanes.floorPlanes.getFirstPlane();
       if (groundPlane!=null) {
-        intersectionPose = PlaneIntersection.intersect(groundPlane, scene.getCamera().screenPointToRay(position.x, position.y), true, Float.MAX_VALUE);
+        intersectionPose = PlaneIntersection.intersect(groundPlane, scene.getCamera().screenPointToRay(screenX, screenY), true, Float.MAX_VALUE, detectedPlanes.getPolygonCache());
         if (intersectionPose!=null) {
           updateDesiredPositionAndRotation(intersectionPose);
           lastArPlane = groundPlane;
@@ -224,13 +281,19 @@ public class TranslationController extends TransformationController<DragGesture>
     if (null != listener) {
       listener.onMovementUpdate(transformableNode);
     }
-
-    canUpdate = true;
   }
 
   @Override
   public void onEndTransformation(DragGesture gesture) {
-    canUpdate = false;
+    // Apply the latest drag position before anchoring.
+    if (hasPendingDragUpdate) {
+      hasPendingDragUpdate = false;
+      updateDesiredPose(gesturePosition.x, gesturePosition.y);
+    }
+
+    // The node stops where it is, in the coordinate space of its new anchor.
+    positionMotion.cancel();
+    rotationMotion.cancel();
 
     Plane movementPlane = lastArPlane;
     if (movementPlane == null) {
@@ -239,7 +302,18 @@ public class TranslationController extends TransformationController<DragGesture>
 
     HitResult hitResult = lastArHitResult;
 
-    if (movementPlane.getTrackingState() == TrackingState.TRACKING) {
+    TransformationSystem transformationSystem = getTransformableNode().getTransformationSystem();
+    AnchorManager anchorManager = transformationSystem.getAnchorManager();
+    AnchorReusePolicy reusePolicy = transformationSystem.getAnchorReusePolicy();
+    if (anchorManager.isManaged(getTransformableNode())) {
+      // The anchor node is shared, the node joins the cluster it ended in instead.
+      anchorManager.reanchor(getTransformableNode(), movementPlane);
+      updateInitialForwardParent();
+    } else if (movementPlane.getTrackingState() == TrackingState.TRACKING
+        && !reusePolicy.tryReuse(
+            getAnchorNodeOrDie().getAnchor(),
+            movementPlane,
+            getTransformableNode().getWorldPosition())) {
 
       Anchor newAnchor;
       if (hitResult == null || hitResult.getTrackable() != lastArPlane) {
@@ -247,12 +321,13 @@ public class TranslationController extends TransformationController<DragGesture>
       } else {
         newAnchor = hitResult.createAnchor();
       }
+      reusePolicy.onAnchorCreated(newAnchor, movementPlane);
 
       AnchorNode anchorNode = getAnchorNodeOrDie();
 
       Anchor oldAnchor = anchorNode.getAnchor();
       if (oldAnchor != null) {
-        oldAnchor.detach();
+        getTransformableNode().getTransformationSystem().releaseAnchor(oldAnchor);
       }
 
       Vector3 worldPosition = getTransformableNode().getWorldPosition();
@@ -272,8 +347,7 @@ public class TranslationController extends TransformationController<DragGesture>
       // Temporarily set the node to the final world rotation so that we can accurately
       // determine the initialForwardInLocal in the new coordinate space.
       getTransformableNode().setWorldRotation(finalDesiredWorldRotation);
-      Vector3 initialForwardInWorld = getTransformableNode().getForward();
-      initialForwardInLocal.set(anchorNode.worldToLocalDirection(initialForwardInWorld));
+      setInitialForward(getTransformableNode().getForward());
 
       getTransformableNode().setWorldRotation(worldRotation);
       getTransformableNode().setWorldPosition(worldPosition);
@@ -288,6 +362,15 @@ public class TranslationController extends TransformationController<DragGesture>
   }
 
   private AnchorNode getAnchorNodeOrDie() {
+    AnchorNode managedAnchorNode =
+        getTransformableNode()
+            .getTransformationSystem()
+            .getAnchorManager()
+            .getAnchorNode(getTransformableNode());
+    if (managedAnchorNode != null) {
+      return managedAnchorNode;
+    }
+
     Node parent = getTransformableNode().getParent();
     if (!(parent instanceof AnchorNode)) {
       throw new IllegalStateException("TransformableNode must have an AnchorNode as a parent.");
@@ -306,46 +389,36 @@ public class TranslationController extends TransformationController<DragGesture>
     }
 
     desiredLocalRotation = calculateFinalDesiredLocalRotation(Preconditions.checkNotNull(desiredLocalRotation));
-  }
 
-  private void updatePosition(FrameTime frameTime) {
-    // Store in local variable for nullness static analysis.
-    Vector3 desiredLocalPosition = this.desiredLocalPosition;
-    if (desiredLocalPosition == null) {
-      return;
-    }
-
-    Vector3 localPosition = getTransformableNode().getLocalPosition();
-    float lerpFactor = MathHelper.clamp(frameTime.getDeltaSeconds() * LERP_SPEED, 0, 1);
-    localPosition = Vector3.lerp(localPosition, desiredLocalPosition, lerpFactor);
+    positionMotion.setTarget(Preconditions.checkNotNull(desiredLocalPosition));
+    rotationMotion.setTarget(desiredLocalRotation);
+  }
 
-    float lengthDiff = Math.abs(Vector3.subtract(desiredLocalPosition, localPosition).length());
-    if (lengthDiff <= POSITION_LENGTH_THRESHOLD) {
-      localPosition = desiredLocalPosition;
-      this.desiredLocalPosition = null;
+  /** Stores the forward direction of the node in the space of its current parent. */
+  private void setInitialForward(Vector3 initialForwardInWorld) {
+    Node parent = getTransformableNode().getParent();
+    initialForwardParent = parent;
+    if (parent != null) {
+      initialForwardInLocal.set(parent.worldToLocalDirection(initialForwardInWorld));
+    } else {
+      initialForwardInLocal.set(initialForwardInWorld);
     }
-
-    getTransformableNode().setLocalPosition(localPosition);
   }
 
-  private void updateRotation(FrameTime frameTime) {
-    // Store in local variable for nullness static analysis.
-    Quaternion desiredLocalRotation = this.desiredLocalRotation;
-    if (desiredLocalRotation == null) {
+  /**
+   * Expresses the initial forward direction in the space of the current parent of the node, which
+   * the {@link AnchorManager} changes when it moves the node to another cluster.
+   */
+  private void updateInitialForwardParent() {
+    Node formerParent = initialForwardParent;
+    if (getTransformableNode().getParent() == formerParent) {
       return;
     }
 
-    Quaternion localRotation = getTransformableNode().getLocalRotation();
-    float lerpFactor = MathHelper.clamp(frameTime.getDeltaSeconds() * LERP_SPEED, 0, 1);
-    localRotation = Quaternion.slerp(localRotation, desiredLocalRotation, lerpFactor);
-
-    float dot = Math.abs(dotQuaternion(localRotation, desiredLocalRotation));
-    if (dot >= ROTATION_DOT_THRESHOLD) {
-      localRotation = desiredLocalRotation;
-      this.desiredLocalRotation = null;
-    }
-
-    getTransformableNode().setLocalRotation(localRotation);
+    setInitialForward(
+        formerParent != null
+            ? formerParent.localToWorldDirection(initialForwardInLocal)
+            : new Vector3(initialForwardInLocal));
   }
 
   /**
@@ -354,6 +427,8 @@ public class TranslationController extends TransformationController<DragGesture>
    * node is respected.
    */
   private Quaternion calculateFinalDesiredLocalRotation(Quaternion desiredLocalRotation) {
+    updateInitialForwardParent();
+
     // Get a rotation just to the up direction.
     // Otherwise, the node will spin around as you rotate.
     Vector3 rotatedUp = Quaternion.rotateVector(desiredLocalRotation, Vector3.up());
@@ -366,8 +441,4 @@ public class TranslationController extends TransformationController<DragGesture>
 
     return desiredLocalRotation.normalized();
   }
-
-  private static float dotQuaternion(Quaternion lhs, Quaternion rhs) {
-    return lhs.x * rhs.x + lhs.y * rhs.y + lhs.z * rhs.z + lhs.w * rhs.w;
-  }
 }
@@ -32,6 +32,7 @@ import com.google.ar.sceneform.ArSceneView;
 import com.google.ar.sceneform.FrameTime;
 import com.google.ar.sceneform.Node;
 import com.google.ar.sceneform.Scene;
+import com.google.ar.sceneform.math.Matrix;
 import com.google.ar.sceneform.math.Quaternion;
 import com.google.ar.sceneform.math.Vector3;
 
@@ -42,6 +43,10 @@ import java.util.List;
  * Manipulates the position of a {@link BaseTransformableNode} using a {@link
  * DragGestureRecognizer}. If not selected, the {@link BaseTransformableNode} will become selected
  * when the {@link DragGesture} starts.
+ *
+ * <p>With plane raycasting enabled, drag updates intersect the camera ray with the floor planes of
+ * {@link DetectedARPlanes} in Java, and only fall back to an ARCore hit test periodically or when
+ * the drag moves to another plane.
  */
 public class TranslationControllerWithPlaneChange extends TransformationController<DragGesture> implements InfinitePlaneSettings {
 
@@ -54,8 +59,34 @@ public class TranslationControllerWithPlaneChange extends TransformationControll
     @Nullable
     private Quaternion desiredWorldRotation = null;
     private final DetectedARPlanes detectedPlanes;
+    private final Vector3 gesturePosition = new Vector3();
 
     private boolean canUpdate = false;
+    private boolean isFrameCoalescingEnabled = false;
+    private boolean hasPendingDragUpdate = false;
+    // Anchoring of the last drag, delayed in case a fling takes over.
+    @Nullable
+    private Plane pendingAnchorPlane = null;
+    @Nullable
+    private Pose pendingAnchorPose = null;
+
+    private boolean isSnappingEnabled = false;
+    private boolean isNonOverlapEnabled = false;
+
+    private boolean isPlaneRaycastEnabled = false;
+    private int hitTestInterval = DEFAULT_HIT_TEST_INTERVAL;
+    private int raycastsSinceHitTest = 0;
+    @Nullable
+    private Pose lastRaycastPose = null;
+    private final Vector3 rayOrigin = new Vector3();
+    private final Vector3 rayDirection = new Vector3();
+    private final Vector3 planePoint = new Vector3();
+    private final Vector3 planeNormal = new Vector3();
+    private final Vector3 raycastPoint = new Vector3();
+    private final float[] raycastTranslation = new float[3];
+    private final float[] raycastRotation = new float[4];
+    private final Matrix viewProjectionMatrix = new Matrix();
+    private final Matrix inverseViewProjectionMatrix = new Matrix();
 
     private EnumSet<Plane.Type> allowedPlaneTypes = EnumSet.allOf(Plane.Type.class);
     private Float infinitePlaneIntersectionMaximumDistance = Float.MAX_VALUE;
@@ -69,6 +100,8 @@ public class TranslationControllerWithPlaneChange extends TransformationControll
 
     private static final float ONE_DEGREE_IN_RADIANS = 0.0175f;
 
+    public static final int DEFAULT_HIT_TEST_INTERVAL = 10;
+
     public TranslationControllerWithPlaneChange(BaseTransformableNode transformableNode, BaseGestureRecognizer<DragGesture> gestureRecognizer, DetectedARPlanes detectedARPlanes) {
         super(transformableNode, gestureRecognizer);
         this.detectedPlanes = detectedARPlanes;
@@ -147,14 +180,100 @@ public class TranslationControllerWithPlaneChange extends TransformationControll
         return allowedPlaneTypes;
     }
 
+    /**
+     * When enabled, drag updates are coalesced: the hit test runs once per rendered frame on the
+     * latest drag position instead of once per touch event. Useful on high rate touch panels that
+     * deliver several events per frame.
+     */
+    public void setFrameCoalescingEnabled(boolean enabled) {
+        isFrameCoalescingEnabled = enabled;
+    }
+
+    public boolean isFrameCoalescingEnabled() {
+        return isFrameCoalescingEnabled;
+    }
+
+    /**
+     * When enabled, drag updates intersect the camera ray with the floor planes of {@link
+     * DetectedARPlanes} in Java instead of hit testing the ARCore frame. A hit test is still
+     * performed every {@link #getHitTestInterval()} updates, and whenever the ray reaches another
+     * plane than the one the node is on, so that the planes ARCore knows better, such as walls, are
+     * taken into account.
+     */
+    public void setPlaneRaycastEnabled(boolean enabled) {
+        isPlaneRaycastEnabled = enabled;
+    }
+
+    public boolean isPlaneRaycastEnabled() {
+        return isPlaneRaycastEnabled;
+    }
+
+    /**
+     * Sets how many drag updates may use plane raycasting between two ARCore hit tests, {@link
+     * #DEFAULT_HIT_TEST_INTERVAL} by default. Values smaller than 1 are clamped to 1.
+     */
+    public void setHitTestInterval(int interval) {
+        hitTestInterval = Math.max(1, interval);
+    }
+
+    public int getHitTestInterval() {
+        return hitTestInterval;
+    }
+
+    /**
+     * When enabled, the desired pose of the node is snapped by the {@link SnappingEngine} of the
+     * transformation system at every drag update: to the grid of the plane, against the edges of the
+     * plane and the walls, and along the bounds of the nearby nodes.
+     */
+    public void setSnappingEnabled(boolean enabled) {
+        isSnappingEnabled = enabled;
+    }
+
+    public boolean isSnappingEnabled() {
+        return isSnappingEnabled;
+    }
+
+    /**
+     * When enabled, the desired position of the node is moved by the {@link OverlapResolver} of the
+     * transformation system to the nearest spot where the node doesn't overlap other nodes, after
+     * snapping. The node stays where it is when there is no free spot close enough.
+     */
+    public void setNonOverlapEnabled(boolean enabled) {
+        isNonOverlapEnabled = enabled;
+    }
+
+    public boolean isNonOverlapEnabled() {
+        return isNonOverlapEnabled;
+    }
+
     @Override
     public void onUpdated(Node node, FrameTime frameTime) {
+        Plane anchorPlane = pendingAnchorPlane;
+        if (anchorPlane != null) {
+            Pose anchorPose = pendingAnchorPose;
+            cancelPendingAnchor();
+            anchor(anchorPlane, anchorPose);
+        }
+
+        if (hasPendingDragUpdate) {
+            hasPendingDragUpdate = false;
+            updateDesiredPose(gesturePosition.x, gesturePosition.y);
+        }
+
         if (canUpdate) {
             updatePosition();
             updateRotation();
+        } else if (getActiveGesture() == null && pendingAnchorPlane == null) {
+            sleep();
         }
     }
 
+    @Override
+    public void onDeactivated(Node node) {
+        super.onDeactivated(node);
+        cancelPendingAnchor();
+    }
+
     @Override
     public boolean isTransforming() {
         // As long as the transformable node is still interpolating towards the final pose, this
@@ -187,6 +306,17 @@ public class TranslationControllerWithPlaneChange extends TransformationControll
 
     @Override
     public void onContinueTransformation(DragGesture gesture) {
+        // With touch prediction, both the preview and the final pose follow the predicted point.
+        gesture.getPredictedPosition(gesturePosition);
+        if (isFrameCoalescingEnabled) {
+            hasPendingDragUpdate = true;
+            return;
+        }
+
+        updateDesiredPose(gesturePosition.x, gesturePosition.y);
+    }
+
+    private void updateDesiredPose(float screenX, float screenY) {
         BaseTransformableNode transformableNode = getTransformableNode();
         Scene scene = transformableNode.getScene();
         if (scene == null) {
@@ -209,26 +339,49 @@ public class TranslationControllerWithPlaneChange extends TransformationControll
         @Nullable Trackable predictiveTrackable = null;
         boolean isPredictivePoseApplicable = false;
 
-        Vector3 position = gesture.getPosition();
-        List<HitResult> hitResultList = frame.hitTest(position.x, position.y);
-        for (int i = 0; i < hitResultList.size(); i++) {
-            HitResult hit = hitResultList.get(i);
-            Trackable trackable = hit.getTrackable();
-            Pose pose = hit.getHitPose();
-            if (trackable instanceof Plane) {
-                Plane plane = (Plane) trackable;
-                boolean isPoseValid = detectedPlanes.floorPlanes.isFirstPlane(plane) || plane.isPoseInPolygon(pose);
-                if (isPoseValid) {
-                    predictivePose = pose;
-                    predictiveTrackable = plane;
-                }
+        // The raycast is only trusted while the drag stays on the plane of the last update.
+        @Nullable Plane raycastPlane = null;
+        if (isPlaneRaycastEnabled
+                && lastArPlane != null
+                && raycastsSinceHitTest < hitTestInterval
+                && allowedPlaneTypes.contains(Plane.Type.HORIZONTAL_UPWARD_FACING)) {
+            raycastPlane = raycastFloorPlanes(scene, screenX, screenY);
+            if (raycastPlane != lastArPlane) {
+                raycastPlane = null;
+            }
+        }
+
+        if (raycastPlane != null) {
+            raycastsSinceHitTest++;
+            intersectionPose = lastRaycastPose;
+            predictivePose = lastRaycastPose;
+            predictiveTrackable = raycastPlane;
+            isPredictivePoseApplicable = true;
+            lastArHitResult = null;
+        } else {
+            raycastsSinceHitTest = 0;
+            lastRaycastPose = null;
+
+            List<HitResult> hitResultList = transformableNode.getTransformationSystem().getHitTestCache().hitTest(frame, screenX, screenY);
+            for (int i = 0; i < hitResultList.size(); i++) {
+                HitResult hit = hitResultList.get(i);
+                Trackable trackable = hit.getTrackable();
+                Pose pose = hit.getHitPose();
+                if (trackable instanceof Plane) {
+                    Plane plane = (Plane) trackable;
+                    boolean isPoseValid = detectedPlanes.floorPlanes.isFirstPlane(plane) || detectedPlanes.isPoseInPolygon(plane, pose);
+                    if (isPoseValid) {
+                        predictivePose = pose;
+                        predictiveTrackable = plane;
+                    }
 
-                if (isPoseValid && allowedPlaneTypes.contains(plane.getType())) {
-                    intersectionPose = pose;
-                    lastArHitResult = hit;
-                    lastArPlane = plane;
-                    isPredictivePoseApplicable = true;
-                    break;
+                    if (isPoseValid && allowedPlaneTypes.contains(plane.getType())) {
+                        intersectionPose = pose;
+                        lastArHitResult = hit;
+                        lastArPlane = plane;
+                        isPredictivePoseApplicable = true;
+                        break;
+                    }
                 }
             }
         }
@@ -236,7 +389,7 @@ public class TranslationControllerWithPlaneChange extends TransformationControll
         if (intersectionPose == null) {
             Plane groundPlane = detectedPlanes.floorPlanes.getFirstPlane();
             if (groundPlane != null) {
-                intersectionPose = PlaneIntersection.intersect(groundPlane, scene.getCamera().screenPointToRay(position.x, position.y), true, infinitePlaneIntersectionMaximumDistance);
+                intersectionPose = PlaneIntersection.intersect(groundPlane, scene.getCamera().screenPointToRay(screenX, screenY), true, infinitePlaneIntersectionMaximumDistance, detectedPlanes.getPolygonCache());
                 if (intersectionPose != null) {
                     predictivePose = intersectionPose;
                     predictiveTrackable = groundPlane;
@@ -272,6 +425,21 @@ public class TranslationControllerWithPlaneChange extends TransformationControll
             if (transitionRotation != null) {
                 desiredWorldRotation = Quaternion.multiply(transitionRotation, transformableNode.getWorldRotation());
             }
+
+            if (isSnappingEnabled && lastArPlane != null) {
+                Quaternion snappedRotation = new Quaternion(desiredWorldRotation != null ? desiredWorldRotation : transformableNode.getWorldRotation());
+                int snaps = transformableNode.getTransformationSystem().getSnappingEngine().snap(transformableNode, lastArPlane, detectedPlanes, desiredWorldPosition, snappedRotation);
+                if ((snaps & SnappingEngine.SNAP_WALL) != 0) {
+                    desiredWorldRotation = snappedRotation;
+                }
+            }
+
+            if (isNonOverlapEnabled) {
+                Quaternion rotation = desiredWorldRotation != null ? desiredWorldRotation : transformableNode.getWorldRotation();
+                if (!transformableNode.getTransformationSystem().getOverlapResolver().resolve(transformableNode, desiredWorldPosition, rotation)) {
+                    desiredWorldPosition = transformableNode.getWorldPosition();
+                }
+            }
         }
 
         if (posePredictionListener != null) {
@@ -287,6 +455,12 @@ public class TranslationControllerWithPlaneChange extends TransformationControll
 
     @Override
     public void onEndTransformation(DragGesture gesture) {
+        // Apply the latest drag position before anchoring.
+        if (hasPendingDragUpdate) {
+            hasPendingDragUpdate = false;
+            updateDesiredPose(gesturePosition.x, gesturePosition.y);
+        }
+
         canUpdate = false;
 
         Plane movementPlane = lastArPlane;
@@ -295,45 +469,204 @@ public class TranslationControllerWithPlaneChange extends TransformationControll
         }
 
         HitResult hitResult = lastArHitResult;
+        @Nullable Pose anchorPose = null;
+        if (lastRaycastPose != null) {
+            anchorPose = lastRaycastPose;
+        } else if (hitResult != null && hitResult.getTrackable() == movementPlane) {
+            anchorPose = hitResult.getHitPose();
+        }
+
+        // update a last time as onUpdated may have not be called before
+        updatePosition();
+        updateRotation();
+
+        // A fling starting from the same touch event anchors the node once it comes to rest, so the
+        // node is only anchored at the next update if no fling took over.
+        if (isFlingEnabled()) {
+            pendingAnchorPlane = movementPlane;
+            pendingAnchorPose = anchorPose;
+            wakeUp();
+        } else {
+            anchor(movementPlane, anchorPose);
+        }
+
+        desiredWorldPosition = null;
+        desiredWorldRotation = null;
+        raycastsSinceHitTest = 0;
+        lastRaycastPose = null;
+
+        if (null != listener) {
+            listener.onMovementEnd(getTransformableNode());
+        }
+    }
+
+    /**
+     * Drops the anchoring of the last drag, called by the {@link FlingController} of the node when a
+     * fling takes over the end of the drag.
+     */
+    void cancelPendingAnchor() {
+        pendingAnchorPlane = null;
+        pendingAnchorPose = null;
+    }
+
+    private boolean isFlingEnabled() {
+        List<BaseTransformationController<?>> controllers = getTransformableNode().getTransformationControllers();
+        for (int i = 0; i < controllers.size(); i++) {
+            BaseTransformationController<?> controller = controllers.get(i);
+            if (controller instanceof FlingController && controller.isEnabled()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Anchors the node where the drag ended on {@code movementPlane}, keeping its anchor after a
+     * small move on the same plane.
+     *
+     * @param anchorPose the pose of the new anchor, or null to anchor at the center of the plane
+     */
+    private void anchor(Plane movementPlane, @Nullable Pose anchorPose) {
+        BaseTransformableNode transformableNode = getTransformableNode();
+        if (transformableNode.getScene() == null) {
+            return;
+        }
+
+        AnchorReusePolicy reusePolicy = transformableNode.getTransformationSystem().getAnchorReusePolicy();
+        AnchorManager anchorManager = transformableNode.getTransformationSystem().getAnchorManager();
+        if (anchorManager.isManaged(transformableNode)) {
+            // The anchor node is shared, the node joins the cluster it ended in instead.
+            anchorManager.reanchor(transformableNode, movementPlane);
+            return;
+        }
+
+        if (movementPlane.getTrackingState() != TrackingState.TRACKING
+                || reusePolicy.tryReuse(getAnchorNodeOrDie().getAnchor(), movementPlane, transformableNode.getWorldPosition())) {
+            return;
+        }
+
+        Anchor newAnchor = movementPlane.createAnchor(anchorPose != null ? anchorPose : movementPlane.getCenterPose());
+        reusePolicy.onAnchorCreated(newAnchor, movementPlane);
+
+        AnchorNode anchorNode = getAnchorNodeOrDie();
+
+        Anchor oldAnchor = anchorNode.getAnchor();
+        if (oldAnchor != null) {
+            transformableNode.getTransformationSystem().releaseAnchor(oldAnchor);
+        }
+
+        // get position and rotation before replacing the anchor
+        Vector3 worldPosition = transformableNode.getWorldPosition();
+        Quaternion worldRotation = transformableNode.getWorldRotation();
+
+        anchorNode.setAnchor(newAnchor);
+
+        // set position and rotation
+        transformableNode.setWorldPosition(worldPosition);
+        transformableNode.setWorldRotation(worldRotation);
+    }
 
-        if (movementPlane.getTrackingState() == TrackingState.TRACKING) {
+    /**
+     * Intersects the camera ray under the screen point with the tracked floor planes and returns
+     * the closest plane hit inside its polygon, or anywhere on the first floor plane which is
+     * considered infinite. The intersection is stored in {@link #lastRaycastPose}.
+     *
+     * <p>The planes are read from the {@link PlanePolygonCache}, so that only planes updated by
+     * ARCore since the last drag update cost JNI calls.
+     */
+    @Nullable
+    private Plane raycastFloorPlanes(Scene scene, float screenX, float screenY) {
+        lastRaycastPose = null;
+        if (!screenPointToRay(scene, screenX, screenY)) {
+            return null;
+        }
 
-            Anchor newAnchor;
-            if (hitResult == null || hitResult.getTrackable() != lastArPlane) {
-                newAnchor = movementPlane.createAnchor(movementPlane.getCenterPose());
-            } else {
-                newAnchor = hitResult.createAnchor();
+        PlanePolygonCache polygonCache = detectedPlanes.getPolygonCache();
+        @Nullable Plane closestPlane = null;
+        float closestDistanceSquared = Float.MAX_VALUE;
+
+        List<Plane> planes = detectedPlanes.floorPlanes.getPlanes();
+        for (int i = 0; i < planes.size(); i++) {
+            Plane plane = planes.get(i);
+            if (!polygonCache.isTracking(plane)) {
+                continue;
             }
 
-            AnchorNode anchorNode = getAnchorNodeOrDie();
+            polygonCache.getCenterAndNormal(plane, planePoint, planeNormal);
+            if (!PlaneIntersection.intersect(rayOrigin, rayDirection, planePoint, planeNormal, raycastPoint)) {
+                continue;
+            }
 
-            Anchor oldAnchor = anchorNode.getAnchor();
-            if (oldAnchor != null) {
-                oldAnchor.detach();
+            float dx = raycastPoint.x - rayOrigin.x;
+            float dy = raycastPoint.y - rayOrigin.y;
+            float dz = raycastPoint.z - rayOrigin.z;
+            float distanceSquared = dx * dx + dy * dy + dz * dz;
+            if (distanceSquared >= closestDistanceSquared) {
+                continue;
             }
 
-            // get position and rotation before replacing the anchor
-            BaseTransformableNode transformableNode = getTransformableNode();
-            Vector3 worldPosition = transformableNode.getWorldPosition();
-            Quaternion worldRotation = transformableNode.getWorldRotation();
+            if (!detectedPlanes.floorPlanes.isFirstPlane(plane)
+                    && !polygonCache.isPointInPolygon(plane, raycastPoint.x, raycastPoint.y, raycastPoint.z)) {
+                continue;
+            }
 
-            anchorNode.setAnchor(newAnchor);
+            closestDistanceSquared = distanceSquared;
+            closestPlane = plane;
+            raycastTranslation[0] = raycastPoint.x;
+            raycastTranslation[1] = raycastPoint.y;
+            raycastTranslation[2] = raycastPoint.z;
+        }
 
-            // set position and rotation
-            transformableNode.setWorldPosition(worldPosition);
-            transformableNode.setWorldRotation(worldRotation);
+        if (closestPlane != null) {
+            polygonCache.getCenterRotation(closestPlane, raycastRotation);
+            lastRaycastPose = new Pose(raycastTranslation, raycastRotation);
+        }
+        return closestPlane;
+    }
 
-            // update a last time as onUpdated may have not be called before
-            updatePosition();
-            updateRotation();
+    /**
+     * Same as {@link com.google.ar.sceneform.Camera#screenPointToRay(float, float)}, without
+     * allocations. Stores the ray into {@link #rayOrigin} and {@link #rayDirection}.
+     */
+    private boolean screenPointToRay(Scene scene, float screenX, float screenY) {
+        int width = scene.getView().getWidth();
+        int height = scene.getView().getHeight();
+        if (width <= 0 || height <= 0) {
+            return false;
         }
 
-        desiredWorldPosition = null;
-        desiredWorldRotation = null;
+        com.google.ar.sceneform.Camera camera = scene.getCamera();
+        Matrix.multiply(camera.getProjectionMatrix(), camera.getViewMatrix(), viewProjectionMatrix);
+        if (!Matrix.invert(viewProjectionMatrix, inverseViewProjectionMatrix)) {
+            return false;
+        }
 
-        if (null != listener) {
-            listener.onMovementEnd(getTransformableNode());
+        float ndcX = 2.0f * screenX / width - 1.0f;
+        float ndcY = 1.0f - 2.0f * screenY / height;
+        if (!unproject(ndcX, ndcY, -1.0f, rayOrigin) || !unproject(ndcX, ndcY, 1.0f, rayDirection)) {
+            return false;
+        }
+
+        rayDirection.set(rayDirection.x - rayOrigin.x, rayDirection.y - rayOrigin.y, rayDirection.z - rayOrigin.z);
+        float length = rayDirection.length();
+        if (length == 0.0f) {
+            return false;
         }
+        rayDirection.set(rayDirection.x / length, rayDirection.y / length, rayDirection.z / length);
+        return true;
+    }
+
+    private boolean unproject(float ndcX, float ndcY, float ndcZ, Vector3 outPoint) {
+        float[] m = inverseViewProjectionMatrix.data;
+        float w = m[3] * ndcX + m[7] * ndcY + m[11] * ndcZ + m[15];
+        if (w == 0.0f) {
+            return false;
+        }
+        outPoint.set(
+                (m[0] * ndcX + m[4] * ndcY + m[8] * ndcZ + m[12]) / w,
+                (m[1] * ndcX + m[5] * ndcY + m[9] * ndcZ + m[13]) / w,
+                (m[2] * ndcX + m[6] * ndcY + m[10] * ndcZ + m[14]) / w);
+        return true;
     }
 
     private void updatePosition() {
@@ -352,6 +685,11 @@ public class TranslationControllerWithPlaneChange extends TransformationControll
 
     @NonNull
     private AnchorNode getAnchorNodeOrDie() {
+        AnchorNode managedAnchorNode = getTransformableNode().getTransformationSystem().getAnchorManager().getAnchorNode(getTransformableNode());
+        if (managedAnchorNode != null) {
+            return managedAnchorNode;
+        }
+
         Node parent = getTransformableNode().getParent();
         if (!(parent instanceof AnchorNode)) {
             throw new IllegalStateException("TransformableNode must have an AnchorNode as a parent.");
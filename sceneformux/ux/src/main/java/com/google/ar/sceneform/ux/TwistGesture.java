@@ -17,7 +17,9 @@ package com.google.ar.sceneform.ux;
 
 import android.util.Log;
 import android.view.MotionEvent;
+import androidx.annotation.Nullable;
 import com.google.ar.sceneform.HitTestResult;
+import com.google.ar.sceneform.math.MathHelper;
 import com.google.ar.sceneform.math.Vector3;
 
 /** Gesture for when the user performs a two-finger twist motion on the touch screen. */
@@ -30,35 +32,69 @@ public class TwistGesture extends BaseGesture<TwistGesture> {
 
   private static final boolean TWIST_GESTURE_DEBUG = false;
 
-  private final int pointerId1;
-  private final int pointerId2;
-  private final Vector3 startPosition1;
-  private final Vector3 startPosition2;
-  private final Vector3 previousPosition1;
-  private final Vector3 previousPosition2;
+  private final Vector3 startPosition1 = new Vector3();
+  private final Vector3 startPosition2 = new Vector3();
+  private final Vector3 previousPosition1 = new Vector3();
+  private final Vector3 previousPosition2 = new Vector3();
+  private int pointerId1 = MotionEvent.INVALID_POINTER_ID;
+  private int pointerId2 = MotionEvent.INVALID_POINTER_ID;
+  @Nullable private TwoFingerGesture pair;
   private float deltaRotationDegrees;
 
   private static final float SLOP_ROTATION_DEGREES = 15.0f;
 
   public TwistGesture(
       GesturePointersUtility gesturePointersUtility, MotionEvent motionEvent, int pointerId2) {
+    this(gesturePointersUtility);
+    init(motionEvent, pointerId2);
+  }
+
+  /** Creates an uninitialized gesture for the pool of {@link TwistGestureRecognizer}. */
+  TwistGesture(GesturePointersUtility gesturePointersUtility) {
     super(gesturePointersUtility);
+  }
 
+  /**
+   * Starts tracking the pointer that went down in the given motion event together with {@code
+   * pointerId2}.
+   */
+  void init(MotionEvent motionEvent, int pointerId2) {
     pointerId1 = motionEvent.getPointerId(motionEvent.getActionIndex());
     this.pointerId2 = pointerId2;
-    startPosition1 = GesturePointersUtility.motionEventToPosition(motionEvent, pointerId1);
-    startPosition2 = GesturePointersUtility.motionEventToPosition(motionEvent, pointerId2);
-    previousPosition1 = new Vector3(startPosition1);
-    previousPosition2 = new Vector3(startPosition2);
+    GesturePointersUtility.motionEventToPosition(motionEvent, pointerId1, startPosition1);
+    GesturePointersUtility.motionEventToPosition(motionEvent, pointerId2, startPosition2);
+    previousPosition1.set(startPosition1);
+    previousPosition2.set(startPosition2);
     debugLog("Created");
   }
 
+  /**
+   * Makes this gesture a part of {@code pair}, which owns the pointers and computes the motion of
+   * this gesture. See {@link TwoFingerGestureRecognizer}.
+   */
+  void init(TwoFingerGesture pair) {
+    this.pair = pair;
+  }
+
   public float getDeltaRotationDegrees() {
+    checkNotRecycled();
     return deltaRotationDegrees;
   }
 
+  @Override
+  protected boolean isUsingRetainedPointerId() {
+    // The pointers of a part belong to its pair.
+    return pair == null
+        && (gesturePointersUtility.isPointerIdRetained(pointerId1)
+            || gesturePointersUtility.isPointerIdRetained(pointerId2));
+  }
+
   @Override
   protected boolean canStart(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    if (pair != null) {
+      return pair.isTwisting();
+    }
+
     if (gesturePointersUtility.isPointerIdRetained(pointerId1)
         || gesturePointersUtility.isPointerIdRetained(pointerId2)) {
       cancel();
@@ -84,21 +120,28 @@ public class TwistGesture extends BaseGesture<TwistGesture> {
       return false;
     }
 
-    Vector3 newPosition1 = GesturePointersUtility.motionEventToPosition(motionEvent, pointerId1);
-    Vector3 newPosition2 = GesturePointersUtility.motionEventToPosition(motionEvent, pointerId2);
-    Vector3 deltaPosition1 = Vector3.subtract(newPosition1, previousPosition1);
-    Vector3 deltaPosition2 = Vector3.subtract(newPosition2, previousPosition2);
-    previousPosition1.set(newPosition1);
-    previousPosition2.set(newPosition2);
+    int index1 = motionEvent.findPointerIndex(pointerId1);
+    int index2 = motionEvent.findPointerIndex(pointerId2);
+    float newX1 = motionEvent.getX(index1);
+    float newY1 = motionEvent.getY(index1);
+    float newX2 = motionEvent.getX(index2);
+    float newY2 = motionEvent.getY(index2);
+    boolean isFirstMoving = !isZero(newX1 - previousPosition1.x, newY1 - previousPosition1.y);
+    boolean isSecondMoving = !isZero(newX2 - previousPosition2.x, newY2 - previousPosition2.y);
+    previousPosition1.set(newX1, newY1, 0.0f);
+    previousPosition2.set(newX2, newY2, 0.0f);
 
     // Check that both fingers are moving.
-    if (Vector3.equals(deltaPosition1, Vector3.zero())
-        || Vector3.equals(deltaPosition2, Vector3.zero())) {
+    if (!isFirstMoving || !isSecondMoving) {
       return false;
     }
 
     float rotation =
-        calculateDeltaRotation(newPosition1, newPosition2, startPosition1, startPosition2);
+        calculateDeltaRotation(
+            newX1 - newX2,
+            newY1 - newY2,
+            startPosition1.x - startPosition2.x,
+            startPosition1.y - startPosition2.y);
     if (Math.abs(rotation) < SLOP_ROTATION_DEGREES) {
       return false;
     }
@@ -109,12 +152,24 @@ public class TwistGesture extends BaseGesture<TwistGesture> {
   @Override
   protected void onStart(HitTestResult hitTestResult, MotionEvent motionEvent) {
     debugLog("Started");
+    if (pair != null) {
+      return;
+    }
     gesturePointersUtility.retainPointerId(pointerId1);
     gesturePointersUtility.retainPointerId(pointerId2);
   }
 
   @Override
   protected boolean updateGesture(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    if (pair != null) {
+      // The pair ends this gesture when its pointers are released.
+      if (motionEvent.getActionMasked() != MotionEvent.ACTION_MOVE) {
+        return false;
+      }
+      deltaRotationDegrees = pair.getDeltaRotationDegrees();
+      return deltaRotationDegrees != 0.0f;
+    }
+
     int actionId = motionEvent.getPointerId(motionEvent.getActionIndex());
     int action = motionEvent.getActionMasked();
 
@@ -134,16 +189,39 @@ public class TwistGesture extends BaseGesture<TwistGesture> {
       return false;
     }
 
-    Vector3 newPosition1 = GesturePointersUtility.motionEventToPosition(motionEvent, pointerId1);
-    Vector3 newPosition2 = GesturePointersUtility.motionEventToPosition(motionEvent, pointerId2);
+    int index1 = motionEvent.findPointerIndex(pointerId1);
+    int index2 = motionEvent.findPointerIndex(pointerId2);
+    float newX1 = motionEvent.getX(index1);
+    float newY1 = motionEvent.getY(index1);
+    float newX2 = motionEvent.getX(index2);
+    float newY2 = motionEvent.getY(index2);
     deltaRotationDegrees =
-        calculateDeltaRotation(newPosition1, newPosition2, previousPosition1, previousPosition2);
-    previousPosition1.set(newPosition1);
-    previousPosition2.set(newPosition2);
-    debugLog("Update: " + deltaRotationDegrees);
+        calculateDeltaRotation(
+            newX1 - newX2,
+            newY1 - newY2,
+            previousPosition1.x - previousPosition2.x,
+            previousPosition1.y - previousPosition2.y);
+    previousPosition1.set(newX1, newY1, 0.0f);
+    previousPosition2.set(newX2, newY2, 0.0f);
+    if (TWIST_GESTURE_DEBUG) {
+      debugLog("Update: " + deltaRotationDegrees);
+    }
     return true;
   }
 
+  @Override
+  protected void reset() {
+    super.reset();
+    pointerId1 = MotionEvent.INVALID_POINTER_ID;
+    pointerId2 = MotionEvent.INVALID_POINTER_ID;
+    pair = null;
+    startPosition1.setZero();
+    startPosition2.setZero();
+    previousPosition1.setZero();
+    previousPosition2.setZero();
+    deltaRotationDegrees = 0.0f;
+  }
+
   @Override
   protected void onCancel() {
     debugLog("Cancelled");
@@ -152,10 +230,23 @@ public class TwistGesture extends BaseGesture<TwistGesture> {
   @Override
   protected void onFinish() {
     debugLog("Finished");
+    if (pair != null) {
+      return;
+    }
     gesturePointersUtility.releasePointerId(pointerId1);
     gesturePointersUtility.releasePointerId(pointerId2);
   }
 
+  @Override
+  void writeState(GestureState state) {
+    state.values[0] = deltaRotationDegrees;
+  }
+
+  @Override
+  void readState(GestureState state) {
+    deltaRotationDegrees = state.values[0];
+  }
+
   @Override
   protected TwistGesture getSelf() {
     return this;
@@ -167,16 +258,22 @@ public class TwistGesture extends BaseGesture<TwistGesture> {
     }
   }
 
-  private static float calculateDeltaRotation(
-      Vector3 currentPosition1,
-      Vector3 currentPosition2,
-      Vector3 previousPosition1,
-      Vector3 previousPosition2) {
-    Vector3 currentDirection = Vector3.subtract(currentPosition1, currentPosition2).normalized();
-    Vector3 previousDirection = Vector3.subtract(previousPosition1, previousPosition2).normalized();
-    float sign =
-        Math.signum(
-            previousDirection.x * currentDirection.y - previousDirection.y * currentDirection.x);
-    return Vector3.angleBetweenVectors(currentDirection, previousDirection) * sign;
+  private static boolean isZero(float x, float y) {
+    return MathHelper.almostEqualRelativeAndAbs(x, 0.0f)
+        && MathHelper.almostEqualRelativeAndAbs(y, 0.0f);
+  }
+
+  /**
+   * Returns the signed angle in degrees from the previous direction (second pointer to first
+   * pointer) to the current one. Directions don't need to be normalized.
+   */
+  static float calculateDeltaRotation(
+      float currentDirectionX,
+      float currentDirectionY,
+      float previousDirectionX,
+      float previousDirectionY) {
+    float cross = previousDirectionX * currentDirectionY - previousDirectionY * currentDirectionX;
+    float dot = previousDirectionX * currentDirectionX + previousDirectionY * currentDirectionY;
+    return (float) Math.toDegrees(Math.atan2(cross, dot));
   }
 }
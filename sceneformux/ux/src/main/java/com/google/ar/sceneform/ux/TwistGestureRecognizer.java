@@ -55,7 +55,17 @@ public class TwistGestureRecognizer extends BaseGestureRecognizer<TwistGesture>
         continue;
       }
 
-      gestures.add(new TwistGesture(gesturePointersUtility, motionEvent, pointerId));
+      TwistGesture gesture = obtainGesture();
+      if (gesture == null) {
+        gesture = new TwistGesture(gesturePointersUtility);
+      }
+      gesture.init(motionEvent, pointerId);
+      gestures.add(gesture);
     }
   }
+
+  @Override
+  TwistGesture createFrameCopy() {
+    return new TwistGesture(gesturePointersUtility);
+  }
 }
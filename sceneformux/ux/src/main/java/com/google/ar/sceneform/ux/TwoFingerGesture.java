@@ -0,0 +1,382 @@
+/*
+ * Copyright 2018 Google LLC All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.ux;
+
+import android.util.Log;
+import android.view.MotionEvent;
+import com.google.ar.sceneform.HitTestResult;
+import com.google.ar.sceneform.math.Vector3;
+
+/**
+ * Gesture for when the user moves two fingers on the touch screen. The gap, the rotation and the
+ * centroid of the two fingers are computed in a single pass per event.
+ *
+ * <p>The gesture starts once the fingers have either pinched or twisted past the slop, and both
+ * may then happen at the same time. As with {@link PinchGesture}, a pinch is only recognized while
+ * the fingers move along the axis between them. The pinch and the twist are also exposed as a {@link
+ * PinchGesture} and a {@link TwistGesture} driven by this gesture, which is how {@link
+ * TwoFingerGestureRecognizer} feeds the existing pinch and twist controllers.
+ */
+public class TwoFingerGesture extends BaseGesture<TwoFingerGesture> {
+  private static final String TAG = TwoFingerGesture.class.getSimpleName();
+
+  /** Interface definition for callbacks to be invoked by a {@link TwoFingerGesture}. */
+  public interface OnGestureEventListener
+      extends BaseGesture.OnGestureEventListener<TwoFingerGesture> {}
+
+  private final PinchGesture pinchGesture;
+  private final TwistGesture twistGesture;
+  private final Vector3 centroid = new Vector3();
+  private final Vector3 centroidDelta = new Vector3();
+  private final float pinchSlopPixels;
+  private int pointerId1 = MotionEvent.INVALID_POINTER_ID;
+  private int pointerId2 = MotionEvent.INVALID_POINTER_ID;
+  private float startGap;
+  private float startDirectionX;
+  private float startDirectionY;
+  private float previousX1;
+  private float previousY1;
+  private float previousX2;
+  private float previousY2;
+  private float gap;
+  private float gapDelta;
+  private float previousDirectionX;
+  private float previousDirectionY;
+  private float deltaRotationDegrees;
+  private float totalRotationDegrees;
+  private boolean isPinching;
+  private boolean isTwisting;
+
+  private static final float PINCH_SLOP_INCHES = 0.05f;
+  private static final float TWIST_SLOP_DEGREES = 15.0f;
+  private static final boolean TWO_FINGER_GESTURE_DEBUG = false;
+
+  public TwoFingerGesture(
+      GesturePointersUtility gesturePointersUtility, MotionEvent motionEvent, int pointerId2) {
+    this(gesturePointersUtility);
+    init(motionEvent, pointerId2);
+  }
+
+  /** Creates an uninitialized gesture for the pool of {@link TwoFingerGestureRecognizer}. */
+  TwoFingerGesture(GesturePointersUtility gesturePointersUtility) {
+    super(gesturePointersUtility);
+    pinchGesture = new PinchGesture(gesturePointersUtility);
+    twistGesture = new TwistGesture(gesturePointersUtility);
+    pinchSlopPixels = gesturePointersUtility.inchesToPixels(PINCH_SLOP_INCHES);
+  }
+
+  /**
+   * Starts tracking the pointer that went down in the given motion event together with {@code
+   * pointerId2}.
+   */
+  void init(MotionEvent motionEvent, int pointerId2) {
+    pointerId1 = motionEvent.getPointerId(motionEvent.getActionIndex());
+    this.pointerId2 = pointerId2;
+
+    int index1 = motionEvent.findPointerIndex(pointerId1);
+    int index2 = motionEvent.findPointerIndex(pointerId2);
+    float x1 = motionEvent.getX(index1);
+    float y1 = motionEvent.getY(index1);
+    float x2 = motionEvent.getX(index2);
+    float y2 = motionEvent.getY(index2);
+    previousDirectionX = x1 - x2;
+    previousDirectionY = y1 - y2;
+    startDirectionX = previousDirectionX;
+    startDirectionY = previousDirectionY;
+    startGap = length(previousDirectionX, previousDirectionY);
+    previousX1 = x1;
+    previousY1 = y1;
+    previousX2 = x2;
+    previousY2 = y2;
+    gap = startGap;
+    centroid.set((x1 + x2) * 0.5f, (y1 + y2) * 0.5f, 0.0f);
+
+    pinchGesture.init(this);
+    twistGesture.init(this);
+    debugLog("Created");
+  }
+
+  /** Returns the pinch part of this gesture. */
+  public PinchGesture getPinchGesture() {
+    checkNotRecycled();
+    return pinchGesture;
+  }
+
+  /** Returns the twist part of this gesture. */
+  public TwistGesture getTwistGesture() {
+    checkNotRecycled();
+    return twistGesture;
+  }
+
+  /** Returns true once the fingers have pinched past the slop. */
+  public boolean isPinching() {
+    return isPinching;
+  }
+
+  /** Returns true once the fingers have twisted past the slop. */
+  public boolean isTwisting() {
+    return isTwisting;
+  }
+
+  public float getGap() {
+    checkNotRecycled();
+    return gap;
+  }
+
+  public float getGapDelta() {
+    checkNotRecycled();
+    return gapDelta;
+  }
+
+  public float getDeltaRotationDegrees() {
+    checkNotRecycled();
+    return deltaRotationDegrees;
+  }
+
+  /** Writes the point halfway between the two fingers into {@code outCentroid}. */
+  public void getCentroid(Vector3 outCentroid) {
+    checkNotRecycled();
+    outCentroid.set(centroid);
+  }
+
+  /** Writes the motion of the centroid during the last update into {@code outCentroidDelta}. */
+  public void getCentroidDelta(Vector3 outCentroidDelta) {
+    checkNotRecycled();
+    outCentroidDelta.set(centroidDelta);
+  }
+
+  @Override
+  protected boolean isUsingRetainedPointerId() {
+    return gesturePointersUtility.isPointerIdRetained(pointerId1)
+        || gesturePointersUtility.isPointerIdRetained(pointerId2);
+  }
+
+  @Override
+  protected boolean canStart(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    if (gesturePointersUtility.isPointerIdRetained(pointerId1)
+        || gesturePointersUtility.isPointerIdRetained(pointerId2)) {
+      cancel();
+      return false;
+    }
+
+    int actionId = motionEvent.getPointerId(motionEvent.getActionIndex());
+    int action = motionEvent.getActionMasked();
+
+    if (action == MotionEvent.ACTION_CANCEL) {
+      cancel();
+      return false;
+    }
+
+    boolean touchEnded = action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_POINTER_UP;
+
+    if (touchEnded && (actionId == pointerId1 || actionId == pointerId2)) {
+      cancel();
+      return false;
+    }
+
+    if (action != MotionEvent.ACTION_MOVE) {
+      return false;
+    }
+
+    update(motionEvent);
+    return isPinching || isTwisting;
+  }
+
+  @Override
+  protected void onStart(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    debugLog("Started");
+    gesturePointersUtility.retainPointerId(pointerId1);
+    gesturePointersUtility.retainPointerId(pointerId2);
+  }
+
+  @Override
+  protected boolean updateGesture(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    int actionId = motionEvent.getPointerId(motionEvent.getActionIndex());
+    int action = motionEvent.getActionMasked();
+
+    if (action == MotionEvent.ACTION_CANCEL) {
+      cancel();
+      return false;
+    }
+
+    boolean touchEnded = action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_POINTER_UP;
+
+    if (touchEnded && (actionId == pointerId1 || actionId == pointerId2)) {
+      complete();
+      return false;
+    }
+
+    if (action != MotionEvent.ACTION_MOVE) {
+      return false;
+    }
+
+    return update(motionEvent);
+  }
+
+  @Override
+  protected void reset() {
+    super.reset();
+    pinchGesture.reset();
+    twistGesture.reset();
+    pointerId1 = MotionEvent.INVALID_POINTER_ID;
+    pointerId2 = MotionEvent.INVALID_POINTER_ID;
+    centroid.setZero();
+    centroidDelta.setZero();
+    startGap = 0.0f;
+    startDirectionX = 0.0f;
+    startDirectionY = 0.0f;
+    previousX1 = 0.0f;
+    previousY1 = 0.0f;
+    previousX2 = 0.0f;
+    previousY2 = 0.0f;
+    gap = 0.0f;
+    gapDelta = 0.0f;
+    previousDirectionX = 0.0f;
+    previousDirectionY = 0.0f;
+    deltaRotationDegrees = 0.0f;
+    totalRotationDegrees = 0.0f;
+    isPinching = false;
+    isTwisting = false;
+  }
+
+  @Override
+  protected void onCancel() {
+    debugLog("Cancelled");
+  }
+
+  @Override
+  protected void onFinish() {
+    debugLog("Finished");
+    gesturePointersUtility.releasePointerId(pointerId1);
+    gesturePointersUtility.releasePointerId(pointerId2);
+
+    // End the pinch and twist parts that are in progress the same way this gesture ended.
+    finishPart(pinchGesture);
+    finishPart(twistGesture);
+  }
+
+  @Override
+  void writeState(GestureState state) {
+    float[] values = state.values;
+    values[0] = gap;
+    values[1] = gapDelta;
+    values[2] = deltaRotationDegrees;
+    values[3] = centroid.x;
+    values[4] = centroid.y;
+    values[5] = centroidDelta.x;
+    values[6] = centroidDelta.y;
+    values[7] = isPinching ? 1.0f : 0.0f;
+    values[8] = isTwisting ? 1.0f : 0.0f;
+  }
+
+  @Override
+  void readState(GestureState state) {
+    float[] values = state.values;
+    gap = values[0];
+    gapDelta = values[1];
+    deltaRotationDegrees = values[2];
+    centroid.set(values[3], values[4], 0.0f);
+    centroidDelta.set(values[5], values[6], 0.0f);
+    isPinching = values[7] != 0.0f;
+    isTwisting = values[8] != 0.0f;
+  }
+
+  @Override
+  protected TwoFingerGesture getSelf() {
+    return this;
+  }
+
+  /** Computes gap, rotation and centroid of the pair. Returns true if any of them changed. */
+  private boolean update(MotionEvent motionEvent) {
+    int index1 = motionEvent.findPointerIndex(pointerId1);
+    int index2 = motionEvent.findPointerIndex(pointerId2);
+    float x1 = motionEvent.getX(index1);
+    float y1 = motionEvent.getY(index1);
+    float x2 = motionEvent.getX(index2);
+    float y2 = motionEvent.getY(index2);
+
+    // Like PinchGesture, a pinch only starts while both fingers move along the axis between them,
+    // so that the change of gap of a twist doesn't scale the node.
+    boolean isMotionAlongAxis =
+        isFingerMotionAlongAxis(x1 - previousX1, y1 - previousY1)
+            && isFingerMotionAlongAxis(x2 - previousX2, y2 - previousY2);
+    previousX1 = x1;
+    previousY1 = y1;
+    previousX2 = x2;
+    previousY2 = y2;
+
+    float directionX = x1 - x2;
+    float directionY = y1 - y2;
+    float newGap = length(directionX, directionY);
+    gapDelta = newGap - gap;
+    gap = newGap;
+
+    deltaRotationDegrees =
+        TwistGesture.calculateDeltaRotation(
+            directionX, directionY, previousDirectionX, previousDirectionY);
+    totalRotationDegrees += deltaRotationDegrees;
+    previousDirectionX = directionX;
+    previousDirectionY = directionY;
+
+    float centroidX = (x1 + x2) * 0.5f;
+    float centroidY = (y1 + y2) * 0.5f;
+    centroidDelta.set(centroidX - centroid.x, centroidY - centroid.y, 0.0f);
+    centroid.set(centroidX, centroidY, 0.0f);
+
+    if (!isPinching && isMotionAlongAxis && Math.abs(gap - startGap) >= pinchSlopPixels) {
+      isPinching = true;
+    }
+    if (!isTwisting && Math.abs(totalRotationDegrees) >= TWIST_SLOP_DEGREES) {
+      isTwisting = true;
+    }
+
+    if (TWO_FINGER_GESTURE_DEBUG) {
+      debugLog("Update: " + gapDelta + " " + deltaRotationDegrees + " " + centroidDelta);
+    }
+    return gapDelta != 0.0f
+        || deltaRotationDegrees != 0.0f
+        || centroidDelta.x != 0.0f
+        || centroidDelta.y != 0.0f;
+  }
+
+  private boolean isFingerMotionAlongAxis(float deltaX, float deltaY) {
+    return PinchGesture.isZero(deltaX, deltaY)
+        || PinchGesture.isMotionAlongAxis(
+            deltaX, deltaY, startDirectionX, startDirectionY, startGap);
+  }
+
+  private void finishPart(BaseGesture<?> part) {
+    if (!part.hasStarted() || part.hasFinished()) {
+      return;
+    }
+
+    if (wasCancelled()) {
+      part.cancel();
+    } else {
+      part.complete();
+    }
+  }
+
+  private static float length(float x, float y) {
+    return (float) Math.sqrt(x * x + y * y);
+  }
+
+  private static void debugLog(String log) {
+    if (TWO_FINGER_GESTURE_DEBUG) {
+      Log.d(TAG, "TwoFingerGesture:[" + log + "]");
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018 Google LLC All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.ux;
+
+import android.view.MotionEvent;
+import com.google.ar.sceneform.HitTestResult;
+
+/**
+ * Gesture Recognizer for when the user moves two fingers on the touch screen, replacing {@link
+ * PinchGestureRecognizer} and {@link TwistGestureRecognizer}.
+ *
+ * <p>Each pointer pair is tracked by a single {@link TwoFingerGesture}. Its pinch and twist parts
+ * are started through the listeners of the pinch and twist recognizers, so that controllers such
+ * as {@link ScaleController} and {@link RotationController} receive them unchanged, and a pinch
+ * and a twist of the same fingers can run at the same time.
+ */
+public class TwoFingerGestureRecognizer extends BaseGestureRecognizer<TwoFingerGesture> {
+  /** Interface definition for a callbacks to be invoked when a {@link TwoFingerGesture} starts. */
+  public interface OnGestureStartedListener
+      extends BaseGestureRecognizer.OnGestureStartedListener<TwoFingerGesture> {}
+
+  private final PinchGestureRecognizer pinchGestureRecognizer;
+  private final TwistGestureRecognizer twistGestureRecognizer;
+
+  public TwoFingerGestureRecognizer(
+      GesturePointersUtility gesturePointersUtility,
+      PinchGestureRecognizer pinchGestureRecognizer,
+      TwistGestureRecognizer twistGestureRecognizer) {
+    super(gesturePointersUtility);
+    this.pinchGestureRecognizer = pinchGestureRecognizer;
+    this.twistGestureRecognizer = twistGestureRecognizer;
+  }
+
+  @Override
+  public void onTouch(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    super.onTouch(hitTestResult, motionEvent);
+
+    // The pairs are up to date, let their pinch and twist parts start or update.
+    for (int i = 0; i < gestures.size(); i++) {
+      TwoFingerGesture gesture = gestures.get(i);
+      if (!gesture.hasStarted()) {
+        continue;
+      }
+
+      updatePart(gesture.getPinchGesture(), pinchGestureRecognizer, hitTestResult, motionEvent);
+      updatePart(gesture.getTwistGesture(), twistGestureRecognizer, hitTestResult, motionEvent);
+    }
+  }
+
+  @Override
+  protected void tryCreateGestures(HitTestResult hitTestResult, MotionEvent motionEvent) {
+    // Two finger gestures require at least two fingers to be touching.
+    if (motionEvent.getPointerCount() < 2) {
+      return;
+    }
+
+    int actionId = motionEvent.getPointerId(motionEvent.getActionIndex());
+    int action = motionEvent.getActionMasked();
+    boolean touchBegan =
+        action == MotionEvent.ACTION_DOWN || action == MotionEvent.ACTION_POINTER_DOWN;
+
+    if (!touchBegan || gesturePointersUtility.isPointerIdRetained(actionId)) {
+      return;
+    }
+
+    // Determine if there is another pointer Id that has not yet been retained.
+    for (int i = 0; i < motionEvent.getPointerCount(); i++) {
+      int pointerId = motionEvent.getPointerId(i);
+      if (pointerId == actionId) {
+        continue;
+      }
+
+      if (gesturePointersUtility.isPointerIdRetained(pointerId)) {
+        continue;
+      }
+
+      TwoFingerGesture gesture = obtainGesture();
+      if (gesture == null) {
+        gesture = new TwoFingerGesture(gesturePointersUtility);
+      }
+      gesture.init(motionEvent, pointerId);
+      gestures.add(gesture);
+    }
+  }
+
+  private static <T extends BaseGesture<T>> void updatePart(
+      T part,
+      BaseGestureRecognizer<T> recognizer,
+      HitTestResult hitTestResult,
+      MotionEvent motionEvent) {
+    // A part may have been cancelled by its controller while the pair goes on.
+    if (part.hasFinished()) {
+      return;
+    }
+
+    part.onTouch(hitTestResult, motionEvent);
+    if (part.justStarted()) {
+      recognizer.dispatchGestureStarted(part);
+    }
+  }
+
+  @Override
+  TwoFingerGesture createFrameCopy() {
+    return new TwoFingerGesture(gesturePointersUtility);
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2018 Google LLC All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.ar.sceneform.ux;
+
+import com.google.ar.sceneform.math.Vector3;
+
+/**
+ * Estimates the velocity of a single pointer from its most recent samples.
+ *
+ * <p>Samples are kept in a fixed size ring buffer and the velocity is the slope of a linear least
+ * squares fit of the samples that are at most {@link #HORIZON_MILLIS} older than the newest one.
+ * Adding samples and querying the velocity doesn't allocate.
+ */
+public class VelocityEstimator {
+  private static final int CAPACITY = 16;
+  private static final long HORIZON_MILLIS = 100;
+
+  private final long[] times = new long[CAPACITY];
+  private final float[] xs = new float[CAPACITY];
+  private final float[] ys = new float[CAPACITY];
+  private int newestIndex = -1;
+  private int count = 0;
+
+  private boolean isDirty = false;
+  private float velocityX = 0.0f;
+  private float velocityY = 0.0f;
+
+  /** Removes every sample. */
+  public void clear() {
+    newestIndex = -1;
+    count = 0;
+    isDirty = false;
+    velocityX = 0.0f;
+    velocityY = 0.0f;
+  }
+
+  /**
+   * Adds a sample. Samples must be added in chronological order, samples older than the newest one
+   * are ignored.
+   *
+   * @param timeMillis time of the sample, as returned by {@code MotionEvent#getEventTime()}
+   */
+  public void addSample(long timeMillis, float x, float y) {
+    if (count > 0 && timeMillis < times[newestIndex]) {
+      return;
+    }
+
+    newestIndex = (newestIndex + 1) % CAPACITY;
+    times[newestIndex] = timeMillis;
+    xs[newestIndex] = x;
+    ys[newestIndex] = y;
+    count = Math.min(count + 1, CAPACITY);
+    isDirty = true;
+  }
+
+  /**
+   * Replaces the samples by an estimate computed by another estimator, for the frame copies of the
+   * gestures recognized on the {@link GestureInputThread}.
+   */
+  void setEstimate(long newestTimeMillis, float velocityX, float velocityY, int sampleCount) {
+    clear();
+    if (sampleCount > 0) {
+      newestIndex = 0;
+      times[0] = newestTimeMillis;
+      count = Math.min(sampleCount, CAPACITY);
+    }
+    this.velocityX = velocityX;
+    this.velocityY = velocityY;
+  }
+
+  public int getSampleCount() {
+    return count;
+  }
+
+  /** Time of the newest sample in milliseconds, or 0 if there is none. */
+  public long getNewestSampleTime() {
+    return count > 0 ? times[newestIndex] : 0;
+  }
+
+  /** Velocity along x in pixels per second. */
+  public float getVelocityX() {
+    computeIfDirty();
+    return velocityX;
+  }
+
+  /** Velocity along y in pixels per second. */
+  public float getVelocityY() {
+    computeIfDirty();
+    return velocityY;
+  }
+
+  /** Writes the velocity in pixels per second into {@code outVelocity}. */
+  public void getVelocity(Vector3 outVelocity) {
+    computeIfDirty();
+    outVelocity.set(velocityX, velocityY, 0.0f);
+  }
+
+  private void computeIfDirty() {
+    if (!isDirty) {
+      return;
+    }
+    isDirty = false;
+    velocityX = 0.0f;
+    velocityY = 0.0f;
+
+    if (count < 2) {
+      return;
+    }
+
+    // Times and positions are taken relative to the newest sample to keep the sums small.
+    long newestTime = times[newestIndex];
+    float newestX = xs[newestIndex];
+    float newestY = ys[newestIndex];
+    int n = 0;
+    float sumT = 0.0f;
+    float sumTT = 0.0f;
+    float sumX = 0.0f;
+    float sumY = 0.0f;
+    float sumTX = 0.0f;
+    float sumTY = 0.0f;
+    for (int i = 0; i < count; i++) {
+      int index = (newestIndex - i + CAPACITY) % CAPACITY;
+      long age = newestTime - times[index];
+      if (age > HORIZON_MILLIS) {
+        break;
+      }
+      float t = -age / 1000.0f;
+      float x = xs[index] - newestX;
+      float y = ys[index] - newestY;
+      n++;
+      sumT += t;
+      sumTT += t * t;
+      sumX += x;
+      sumY += y;
+      sumTX += t * x;
+      sumTY += t * y;
+    }
+
+    float denominator = n * sumTT - sumT * sumT;
+    if (n < 2 || denominator <= 0.0f) {
+      return;
+    }
+
+    velocityX = (n * sumTX - sumT * sumX) / denominator;
+    velocityY = (n * sumTY - sumT * sumY) / denominator;
+  }
+}